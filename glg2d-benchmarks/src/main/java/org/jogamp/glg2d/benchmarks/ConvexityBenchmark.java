@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.Shape;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jogamp.glg2d.impl.AbstractShapeHelper;
+import org.jogamp.glg2d.impl.SimpleOrTesselatingVisitor;
+
+/**
+ * The convexity check in {@link SimpleOrTesselatingVisitor}, for shapes that
+ * pass it and shapes that fall back to the tesselator part way through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvexityBenchmark {
+  @Param({ "convex", "ellipse", "star", "text" })
+  public String shape;
+
+  protected Shape s;
+  protected CountingPathVisitor simple;
+  protected CountingTesselatorVisitor tesselated;
+  protected SimpleOrTesselatingVisitor visitor;
+
+  @Setup
+  public void setup() {
+    s = "convex".equals(shape) ? Shapes.regularPolygon(64, 100) : Shapes.get(shape);
+
+    simple = new CountingPathVisitor();
+    tesselated = new CountingTesselatorVisitor();
+    visitor = new SimpleOrTesselatingVisitor(simple, tesselated);
+  }
+
+  @Benchmark
+  public int classify() {
+    simple.reset();
+    tesselated.reset();
+    AbstractShapeHelper.visitShape(s, visitor);
+    return simple.vertices + tesselated.vertices;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.BasicStroke;
+
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.impl.SimplePathVisitor;
+
+/**
+ * Counts what it's given instead of drawing it. Curves are flattened by
+ * {@link SimplePathVisitor} into line segments first, so the counts include
+ * the flattened vertices.
+ */
+public class CountingPathVisitor extends SimplePathVisitor {
+  public int polygons;
+  public int contours;
+  public int vertices;
+
+  /**
+   * A running sum of the coordinates, so the work can't be optimized away.
+   */
+  public float checksum;
+
+  public void reset() {
+    polygons = contours = vertices = 0;
+    checksum = 0;
+  }
+
+  @Override
+  public void setGLContext(GLContext context) {
+    // nop
+  }
+
+  @Override
+  public void setStroke(BasicStroke stroke) {
+    // nop
+  }
+
+  @Override
+  public void beginPoly(int windingRule) {
+    polygons++;
+  }
+
+  @Override
+  public void moveTo(float[] vertex) {
+    contours++;
+    vertices++;
+    checksum += vertex[0] + vertex[1];
+  }
+
+  @Override
+  public void lineTo(float[] vertex) {
+    vertices++;
+    checksum += vertex[0] + vertex[1];
+  }
+
+  @Override
+  public void closeLine() {
+    // nop
+  }
+
+  @Override
+  public void endPoly() {
+    // nop
+  }
+}
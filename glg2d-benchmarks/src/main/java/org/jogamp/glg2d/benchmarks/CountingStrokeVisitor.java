@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.impl.BasicStrokeLineVisitor;
+
+/**
+ * Expands strokes into triangle strips like the GL visitors, but only counts
+ * the vertices.
+ */
+public class CountingStrokeVisitor extends BasicStrokeLineVisitor {
+  public int draws;
+  public int vertices;
+
+  public void reset() {
+    draws = vertices = 0;
+  }
+
+  @Override
+  public void setGLContext(GLContext context) {
+    // nop
+  }
+
+  @Override
+  protected void drawBuffer() {
+    FloatBuffer buf = vBuffer.getBuffer();
+    draws++;
+    vertices += buf.position() / 2;
+  }
+}
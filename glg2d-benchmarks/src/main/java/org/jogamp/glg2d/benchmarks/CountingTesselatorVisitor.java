@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.impl.AbstractTesselatorVisitor;
+
+/**
+ * Tesselates the polygons it's given and counts the triangle vertices.
+ */
+public class CountingTesselatorVisitor extends AbstractTesselatorVisitor {
+  public int polygons;
+  public int vertices;
+
+  public void reset() {
+    polygons = vertices = 0;
+  }
+
+  @Override
+  public void setGLContext(GLContext context) {
+    // nop
+  }
+
+  @Override
+  protected void endTess() {
+    polygons++;
+    vertices += vBuffer.getBuffer().position() / 2;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.Shape;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jogamp.glg2d.impl.AbstractShapeHelper;
+import org.jogamp.glg2d.impl.SimplePathVisitor;
+
+/**
+ * Curve flattening in {@link SimplePathVisitor}, adaptive against the old
+ * fixed number of steps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlatteningBenchmark {
+  @Param({ "ellipse", "curves", "text" })
+  public String shape;
+
+  @Param({ "0.1", "0.25", "1" })
+  public float tolerance;
+
+  @Param({ "1", "4" })
+  public float scale;
+
+  protected Shape s;
+  protected CountingPathVisitor adaptive;
+  protected CountingPathVisitor fixed;
+
+  @Setup
+  public void setup() {
+    s = Shapes.get(shape);
+
+    adaptive = new CountingPathVisitor();
+    adaptive.setCurveTolerance(tolerance);
+    adaptive.setTransformScale(scale);
+
+    fixed = new CountingPathVisitor();
+    fixed.setNumCurveSteps(SimplePathVisitor.CURVE_STEPS);
+  }
+
+  @Benchmark
+  public float adaptive() {
+    adaptive.reset();
+    AbstractShapeHelper.visitShape(s, adaptive);
+    return adaptive.checksum;
+  }
+
+  @Benchmark
+  public float fixedSteps() {
+    fixed.reset();
+    AbstractShapeHelper.visitShape(s, fixed);
+    return fixed.checksum;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.lwjgl.LWJGLException;
+import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.DisplayMode;
+import org.lwjgl.opengl.GL11;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+import org.jogamp.glg2d.GLG2DHeadlessListener;
+import org.jogamp.glg2d.GLG2DSimpleEventListener;
+import org.jogamp.glg2d.GLGraphics2D;
+import org.jogamp.glg2d.impl.shader.GLShaderGraphics2D;
+
+/**
+ * Paints whole frames of the {@link Scenes} through
+ * {@link GLG2DSimpleEventListener#display()} with each pipeline and prints one
+ * JSON object per scene and pipeline, e.g.
+ * 
+ * <pre>
+ * {"scene":"table","pipeline":"shader","width":1024,"height":768,"frames":300,"fps":212.4,"msPerFrame":4.708,"drawCallsPerFrame":401.0,"verticesPerFrame":5362.0}
+ * </pre>
+ * 
+ * <p>
+ * The draw call and vertex counts come from the {@link GLG2DFrameStats} of
+ * the graphics object, so they don't depend on the driver. The timings do, so
+ * run it on Mesa's llvmpipe (see README.txt) to get numbers that can be
+ * compared between machines and in CI.
+ * </p>
+ * 
+ * <p>
+ * Options: {@code -frames N}, {@code -warmup N}, {@code -size WxH},
+ * {@code -scenes a,b} and {@code -pipelines gl2,shader}.
+ * </p>
+ */
+public class FrameHarness {
+  public static final String[] PIPELINES = { "gl2", "shader" };
+
+  protected int frames = 300;
+  protected int warmup = 60;
+  protected int width = 1024;
+  protected int height = 768;
+  protected List<String> scenes = Arrays.asList(Scenes.NAMES);
+  protected List<String> pipelines = Arrays.asList(PIPELINES);
+
+  public static void main(String[] args) throws LWJGLException {
+    FrameHarness harness = new FrameHarness();
+    harness.parse(args);
+    harness.run(System.out);
+  }
+
+  protected void parse(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+
+      String value = args[++i];
+      if ("-frames".equals(arg)) {
+        frames = Integer.parseInt(value);
+      } else if ("-warmup".equals(arg)) {
+        warmup = Integer.parseInt(value);
+      } else if ("-size".equals(arg)) {
+        String[] size = value.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+      } else if ("-scenes".equals(arg)) {
+        scenes = Arrays.asList(value.split(","));
+      } else if ("-pipelines".equals(arg)) {
+        pipelines = Arrays.asList(value.split(","));
+      } else {
+        throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+  }
+
+  public void run(PrintStream out) throws LWJGLException {
+    Display.setDisplayMode(new DisplayMode(width, height));
+    Display.setTitle("GLG2D frame harness");
+    Display.create();
+    Display.setVSyncEnabled(false);
+
+    try {
+      System.err.println("GL_RENDERER: " + GL11.glGetString(GL11.GL_RENDERER));
+      System.err.println("GL_VERSION: " + GL11.glGetString(GL11.GL_VERSION));
+
+      for (String scene : scenes) {
+        for (String pipeline : pipelines) {
+          out.println(measure(Scenes.create(scene), pipeline));
+          out.flush();
+        }
+      }
+    } finally {
+      Display.destroy();
+    }
+  }
+
+  /**
+   * Paints the warmup frames, then times the measured ones and returns the
+   * result as a line of JSON.
+   */
+  protected String measure(Scenes.Scene scene, String pipeline) {
+    GLG2DHeadlessListener headless = new GLG2DHeadlessListener(scene.component);
+    headless.init(null);
+    headless.reshape(null, 0, 0, width, height);
+
+    HarnessListener listener = new HarnessListener(scene, pipeline);
+    listener.init();
+
+    long drawCalls = 0;
+    long vertices = 0;
+    long start = 0;
+    try {
+      for (int i = 0; i < warmup + frames; i++) {
+        if (i == warmup) {
+          start = System.nanoTime();
+        }
+
+        scene.advance(i);
+        scene.component.validate();
+
+        GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+        listener.display();
+
+        // wait for the GPU so the time is what the frame cost, not what was queued
+        GL11.glFinish();
+        Display.update();
+
+        if (i >= warmup) {
+          GLG2DFrameStats stats = listener.getFrameStats();
+          drawCalls += stats.getDrawCalls();
+          vertices += stats.getVertices();
+        }
+      }
+    } finally {
+      listener.dispose();
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    return String.format(Locale.ROOT,
+        "{\"scene\":\"%s\",\"pipeline\":\"%s\",\"width\":%d,\"height\":%d,\"frames\":%d,"
+            + "\"fps\":%.1f,\"msPerFrame\":%.3f,\"drawCallsPerFrame\":%.1f,\"verticesPerFrame\":%.1f}",
+        scene.name, pipeline, width, height, frames,
+        frames / seconds, seconds * 1000 / frames, drawCalls / (double) frames, vertices / (double) frames);
+  }
+
+  /**
+   * Paints a scene with the graphics object of the chosen pipeline.
+   */
+  protected static class HarnessListener extends GLG2DSimpleEventListener {
+    protected final String pipeline;
+
+    public HarnessListener(Scenes.Scene scene, String pipeline) {
+      super(scene.component);
+      this.pipeline = pipeline;
+    }
+
+    @Override
+    protected GLGraphics2D createGraphics2D() {
+      if ("gl2".equals(pipeline)) {
+        return new GLGraphics2D();
+      } else if ("shader".equals(pipeline)) {
+        return new GLShaderGraphics2D();
+      } else {
+        throw new IllegalArgumentException("Unknown pipeline: " + pipeline);
+      }
+    }
+
+    public GLG2DFrameStats getFrameStats() {
+      return g2d.getFrameStats();
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.Point;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.JViewport;
+import javax.swing.SwingConstants;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The Swing scenes painted by {@link FrameHarness}. Each one is a typical
+ * workload: lots of cells and grid lines, one huge polyline, lots of text and
+ * lots of small images. Scenes that scroll move a little every frame so the
+ * caches see some new content.
+ */
+public abstract class Scenes {
+  public static final String[] NAMES = { "table", "chart", "text", "icons" };
+
+  /**
+   * A scene is the component to paint and what to change between frames.
+   */
+  public static class Scene {
+    public final String name;
+    public final JComponent component;
+
+    public Scene(String name, JComponent component) {
+      this.name = name;
+      this.component = component;
+    }
+
+    /**
+     * Called before painting frame number {@code frame}.
+     */
+    public void advance(int frame) {
+    }
+  }
+
+  private static class ScrollingScene extends Scene {
+    private final JScrollPane scroll;
+    private final int step;
+
+    ScrollingScene(String name, JScrollPane scroll, int step) {
+      super(name, scroll);
+      this.scroll = scroll;
+      this.step = step;
+    }
+
+    @Override
+    public void advance(int frame) {
+      JViewport viewport = scroll.getViewport();
+      int range = viewport.getView().getHeight() - viewport.getHeight();
+      if (range > 0) {
+        viewport.setViewPosition(new Point(0, (frame * step) % range));
+      }
+    }
+  }
+
+  public static Scene create(String name) {
+    if ("table".equals(name)) {
+      return table();
+    } else if ("chart".equals(name)) {
+      return chart();
+    } else if ("text".equals(name)) {
+      return text();
+    } else if ("icons".equals(name)) {
+      return icons();
+    } else {
+      throw new IllegalArgumentException("Unknown scene: " + name);
+    }
+  }
+
+  /**
+   * A table of 100,000 rows and 12 columns scrolling a few rows per frame.
+   */
+  public static Scene table() {
+    JTable table = new JTable(new AbstractTableModel() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public int getRowCount() {
+        return 100000;
+      }
+
+      @Override
+      public int getColumnCount() {
+        return 12;
+      }
+
+      @Override
+      public Object getValueAt(int row, int column) {
+        return column == 0 ? Integer.valueOf(row) : Double.valueOf(row * 0.25 + column);
+      }
+    });
+    table.setShowGrid(true);
+    table.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
+    return new ScrollingScene("table", new JScrollPane(table), 3 * table.getRowHeight());
+  }
+
+  /**
+   * A line chart of a single 100,000 segment polyline.
+   */
+  public static Scene chart() {
+    final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, 100001);
+    Random random = new Random(1);
+    double y = 0;
+    path.moveTo(0, 0);
+    for (int i = 1; i <= 100000; i++) {
+      y += random.nextGaussian();
+      path.lineTo(i / 100000f, (float) (Math.sin(i * 0.001) * 0.4 + y * 0.002));
+    }
+
+    JComponent chart = new JComponent() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected void paintComponent(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setColor(Color.white);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+
+        g2d.setColor(Color.lightGray);
+        for (int x = 0; x < getWidth(); x += 50) {
+          g2d.drawLine(x, 0, x, getHeight());
+        }
+
+        g2d.translate(0, getHeight() / 2);
+        g2d.scale(getWidth(), getHeight() / 2);
+        g2d.setColor(Color.blue);
+        g2d.setStroke(new BasicStroke(0));
+        g2d.draw(path);
+      }
+    };
+    chart.setOpaque(true);
+    return new Scene("chart", chart);
+  }
+
+  /**
+   * A text area of 5,000 lines scrolling a line per frame.
+   */
+  public static Scene text() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      text.append(i).append(": The quick brown fox jumps over the lazy dog. Pack my box with five dozen liquor jugs.\n");
+    }
+
+    JTextArea area = new JTextArea(text.toString());
+    area.setLineWrap(false);
+    return new ScrollingScene("text", new JScrollPane(area), area.getFontMetrics(area.getFont()).getHeight());
+  }
+
+  /**
+   * A grid of 600 labelled 32x32 icons, with 60 different images.
+   */
+  public static Scene icons() {
+    ImageIcon[] images = new ImageIcon[60];
+    for (int i = 0; i < images.length; i++) {
+      BufferedImage img = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g = img.createGraphics();
+      g.setColor(Color.getHSBColor(i / (float) images.length, 0.7f, 0.9f));
+      g.fillRoundRect(2, 2, 28, 28, 8, 8);
+      g.setColor(Color.black);
+      g.drawString(Integer.toString(i), 8, 20);
+      g.dispose();
+      images[i] = new ImageIcon(img);
+    }
+
+    JPanel grid = new JPanel(new GridLayout(0, 30));
+    for (int i = 0; i < 600; i++) {
+      JLabel label = new JLabel("#" + i, images[i % images.length], SwingConstants.CENTER);
+      label.setVerticalTextPosition(SwingConstants.BOTTOM);
+      label.setHorizontalTextPosition(SwingConstants.CENTER);
+      grid.add(label);
+    }
+
+    grid.setPreferredSize(new Dimension(30 * 48, 20 * 52));
+    return new ScrollingScene("icons", new JScrollPane(grid), 4);
+  }
+}
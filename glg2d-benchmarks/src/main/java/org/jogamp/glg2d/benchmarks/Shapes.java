@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.util.Random;
+
+/**
+ * The shapes the benchmarks draw. They're built with a fixed seed so every run
+ * sees the same geometry.
+ */
+public final class Shapes {
+  private Shapes() {
+  }
+
+  /**
+   * Gets a shape by name, one of {@code rect}, {@code roundRect},
+   * {@code ellipse}, {@code star}, {@code curves}, {@code polyline} or
+   * {@code text}.
+   */
+  public static Shape get(String name) {
+    if ("rect".equals(name)) {
+      return new Rectangle2D.Float(10, 10, 200, 120);
+    } else if ("roundRect".equals(name)) {
+      return new RoundRectangle2D.Float(10, 10, 200, 120, 24, 24);
+    } else if ("ellipse".equals(name)) {
+      return new Ellipse2D.Float(10, 10, 400, 300);
+    } else if ("star".equals(name)) {
+      return star(12, 50, 200);
+    } else if ("curves".equals(name)) {
+      return randomCurves(200, 1000);
+    } else if ("polyline".equals(name)) {
+      return polyline(1000, 1000);
+    } else if ("text".equals(name)) {
+      return text("The quick brown fox jumps over the lazy dog");
+    } else {
+      throw new IllegalArgumentException("Unknown shape " + name);
+    }
+  }
+
+  /**
+   * A regular polygon, which is convex.
+   */
+  public static Shape regularPolygon(int sides, float radius) {
+    Path2D.Float path = new Path2D.Float();
+    for (int i = 0; i < sides; i++) {
+      double theta = 2 * Math.PI * i / sides;
+      float x = (float) (radius * Math.cos(theta));
+      float y = (float) (radius * Math.sin(theta));
+      if (i == 0) {
+        path.moveTo(x, y);
+      } else {
+        path.lineTo(x, y);
+      }
+    }
+
+    path.closePath();
+    return path;
+  }
+
+  /**
+   * A star, which is simple but not convex.
+   */
+  public static Shape star(int points, float inner, float outer) {
+    Path2D.Float path = new Path2D.Float();
+    for (int i = 0; i < points * 2; i++) {
+      double theta = Math.PI * i / points;
+      float r = i % 2 == 0 ? outer : inner;
+      float x = (float) (r * Math.cos(theta));
+      float y = (float) (r * Math.sin(theta));
+      if (i == 0) {
+        path.moveTo(x, y);
+      } else {
+        path.lineTo(x, y);
+      }
+    }
+
+    path.closePath();
+    return path;
+  }
+
+  /**
+   * A closed path of random cubic curves, which intersects itself.
+   */
+  public static Shape randomCurves(int segments, float size) {
+    Random random = new Random(42);
+    Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO);
+    path.moveTo(random.nextFloat() * size, random.nextFloat() * size);
+    for (int i = 0; i < segments; i++) {
+      path.curveTo(random.nextFloat() * size, random.nextFloat() * size, random.nextFloat() * size,
+          random.nextFloat() * size, random.nextFloat() * size, random.nextFloat() * size);
+    }
+
+    path.closePath();
+    return path;
+  }
+
+  /**
+   * An open zig-zag line, like a chart series.
+   */
+  public static Shape polyline(int points, float width) {
+    Random random = new Random(42);
+    Path2D.Float path = new Path2D.Float();
+    path.moveTo(0, 100);
+    for (int i = 1; i < points; i++) {
+      path.lineTo(i * width / points, 100 + (random.nextFloat() - 0.5f) * 100);
+    }
+
+    return path;
+  }
+
+  /**
+   * The outline of a string, many small contours with quadratic curves.
+   */
+  public static Shape text(String string) {
+    Font font = new Font(Font.SERIF, Font.PLAIN, 24);
+    GeneralPath path = new GeneralPath();
+    path.append(font.createGlyphVector(new FontRenderContext(null, true, true), string).getOutline(), false);
+    return path;
+  }
+}
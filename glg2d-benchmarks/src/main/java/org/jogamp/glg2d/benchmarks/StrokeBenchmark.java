@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jogamp.glg2d.impl.AbstractShapeHelper;
+import org.jogamp.glg2d.impl.BasicStrokeLineVisitor;
+
+/**
+ * Stroke expansion in {@link BasicStrokeLineVisitor} for each join and cap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrokeBenchmark {
+  @Param({ "polyline", "star", "ellipse" })
+  public String shape;
+
+  @Param({ "miter", "round", "bevel" })
+  public String join;
+
+  @Param({ "butt", "round", "square" })
+  public String cap;
+
+  protected Shape s;
+  protected CountingStrokeVisitor visitor;
+
+  @Setup
+  public void setup() {
+    s = Shapes.get(shape);
+
+    visitor = new CountingStrokeVisitor();
+    visitor.setStroke(new BasicStroke(4, toCap(cap), toJoin(join)));
+  }
+
+  @Benchmark
+  public int stroke() {
+    visitor.reset();
+    AbstractShapeHelper.visitShape(s, visitor);
+    return visitor.vertices;
+  }
+
+  static int toJoin(String join) {
+    if ("round".equals(join)) {
+      return BasicStroke.JOIN_ROUND;
+    } else if ("bevel".equals(join)) {
+      return BasicStroke.JOIN_BEVEL;
+    } else {
+      return BasicStroke.JOIN_MITER;
+    }
+  }
+
+  static int toCap(String cap) {
+    if ("round".equals(cap)) {
+      return BasicStroke.CAP_ROUND;
+    } else if ("square".equals(cap)) {
+      return BasicStroke.CAP_SQUARE;
+    } else {
+      return BasicStroke.CAP_BUTT;
+    }
+  }
+}
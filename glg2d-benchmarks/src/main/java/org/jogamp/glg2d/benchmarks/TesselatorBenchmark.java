@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.benchmarks;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jogamp.glg2d.VertexBuffer;
+import org.jogamp.glg2d.impl.PolygonTesselator;
+
+/**
+ * {@link PolygonTesselator} on its own, with the shapes already flattened.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TesselatorBenchmark {
+  @Param({ "star", "curves", "text" })
+  public String shape;
+
+  protected int windingRule;
+  protected float[][] contours;
+
+  protected PolygonTesselator tesselator;
+  protected VertexBuffer triangles;
+
+  @Setup
+  public void setup() {
+    Shape s = Shapes.get(shape);
+    PathIterator iterator = s.getPathIterator(null, 0.25);
+    windingRule = iterator.getWindingRule();
+
+    List<float[]> list = new ArrayList<float[]>();
+    float[] coords = new float[6];
+    float[] contour = new float[0];
+    int n = 0;
+    for (; !iterator.isDone(); iterator.next()) {
+      int type = iterator.currentSegment(coords);
+      if (type == PathIterator.SEG_MOVETO && n > 0) {
+        list.add(Arrays.copyOf(contour, n));
+        n = 0;
+      }
+
+      if (type != PathIterator.SEG_CLOSE) {
+        if (n + 2 > contour.length) {
+          contour = Arrays.copyOf(contour, Math.max(16, contour.length * 2));
+        }
+
+        contour[n++] = coords[0];
+        contour[n++] = coords[1];
+      }
+    }
+
+    if (n > 0) {
+      list.add(Arrays.copyOf(contour, n));
+    }
+
+    contours = list.toArray(new float[list.size()][]);
+    tesselator = new PolygonTesselator();
+    triangles = new VertexBuffer(1024);
+  }
+
+  @Benchmark
+  public int tesselate() {
+    triangles.clear();
+    tesselator.beginPolygon(windingRule);
+    for (float[] contour : contours) {
+      tesselator.moveTo(contour[0], contour[1]);
+      for (int i = 2; i < contour.length; i += 2) {
+        tesselator.lineTo(contour[i], contour[i + 1]);
+      }
+
+      tesselator.closeContour();
+    }
+
+    return tesselator.tesselate(triangles);
+  }
+}
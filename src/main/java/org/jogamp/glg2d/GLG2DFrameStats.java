@@ -0,0 +1,395 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts the work sent to OpenGL while one frame is painted. The
+ * {@code GLGraphics2D} owns one of these, starts it in {@code prePaint()} and
+ * publishes it in {@code postPaint()}. The getters return the last published
+ * frame, and the last {@link #HISTORY_SIZE} frames are kept for percentiles.
+ * 
+ * <p>
+ * The helpers, visitors and pipelines of a graphics object are handed its
+ * stats in {@code setG2D()} and report to them directly. Anything that isn't
+ * wired to a graphics object reports to {@link #DISCARD}. Recording only
+ * happens on the thread that owns the GL context, reading is safe from any
+ * thread, which is what the {@link GLG2DFrameStatsMBean} needs.
+ * </p>
+ * 
+ * <p>
+ * Nothing is put on the MBean server until {@link #register(String)} is
+ * called.
+ * </p>
+ */
+public class GLG2DFrameStats implements GLG2DFrameStatsMBean {
+  private static final Logger LOGGER = Logger.getLogger(GLG2DFrameStats.class.getName());
+
+  /**
+   * The number of frames kept for percentiles.
+   */
+  public static final int HISTORY_SIZE = 600;
+
+  public static final int DRAW_CALLS = 0;
+  public static final int VERTICES = 1;
+  public static final int PROGRAM_SWITCHES = 2;
+  public static final int TEXTURE_BINDS = 3;
+  public static final int TEXTURE_UPLOADS = 4;
+  public static final int TESSELATIONS = 5;
+  public static final int CONVEX_FILLS = 6;
+  public static final int STROKE_FALLBACKS = 7;
+  public static final int GLYPH_CACHE_HITS = 8;
+  public static final int GLYPH_CACHE_MISSES = 9;
+  public static final int FRAME_NANOS = 10;
+
+  private static final String[] COUNTER_NAMES = { "DrawCalls", "Vertices", "ProgramSwitches", "TextureBinds",
+      "TextureUploads", "Tesselations", "ConvexFills", "StrokeFallbacks", "GlyphCacheHits", "GlyphCacheMisses",
+      "FrameMillis" };
+
+  private static final int NUM_COUNTERS = COUNTER_NAMES.length;
+
+  /**
+   * Takes the reports of objects that aren't wired to a graphics object. It's
+   * never published or registered.
+   */
+  public static final GLG2DFrameStats DISCARD = new GLG2DFrameStats();
+
+  /**
+   * Program setup isn't part of any frame, so it's counted for the whole
+   * process, guarded by the class.
+   */
+  private static long programsCompiled;
+  private static long programsLoaded;
+  private static long programSetupNanos;
+
+  /**
+   * The counters of the frame being painted, only touched on the GL thread.
+   */
+  protected long[] current = new long[NUM_COUNTERS];
+  protected long frameStart;
+
+  /**
+   * The published frames, guarded by {@code this}.
+   */
+  protected long[] last = new long[NUM_COUNTERS];
+  protected long[][] history = new long[NUM_COUNTERS][HISTORY_SIZE];
+  protected long frameCount;
+
+  protected ObjectName objectName;
+
+  /**
+   * Resets the counters for a new frame.
+   */
+  public void begin() {
+    Arrays.fill(current, 0);
+    frameStart = System.nanoTime();
+  }
+
+  /**
+   * Publishes the frame.
+   */
+  public void end() {
+    current[FRAME_NANOS] = System.nanoTime() - frameStart;
+
+    synchronized (this) {
+      int slot = (int) (frameCount % HISTORY_SIZE);
+      for (int i = 0; i < NUM_COUNTERS; i++) {
+        last[i] = current[i];
+        history[i][slot] = current[i];
+      }
+
+      frameCount++;
+    }
+  }
+
+  /**
+   * Records one draw call of {@code numVertices} vertices.
+   */
+  public void recordDraw(int numVertices) {
+    current[DRAW_CALLS]++;
+    current[VERTICES] += numVertices;
+  }
+
+  public void recordProgramSwitch() {
+    current[PROGRAM_SWITCHES]++;
+  }
+
+  public void recordTextureBind() {
+    current[TEXTURE_BINDS]++;
+  }
+
+  public void recordTextureUpload() {
+    current[TEXTURE_UPLOADS]++;
+  }
+
+  public void recordTesselation() {
+    current[TESSELATIONS]++;
+  }
+
+  /**
+   * Records a fill that took the simple convex path and skipped the
+   * tesselator.
+   */
+  public void recordConvexFill() {
+    current[CONVEX_FILLS]++;
+  }
+
+  /**
+   * Records a stroke that couldn't be drawn directly and was filled from
+   * {@code Stroke.createStrokedShape}.
+   */
+  public void recordStrokeFallback() {
+    current[STROKE_FALLBACKS]++;
+  }
+
+  public void recordGlyphCacheHit() {
+    current[GLYPH_CACHE_HITS]++;
+  }
+
+  public void recordGlyphCacheMiss() {
+    current[GLYPH_CACHE_MISSES]++;
+  }
+
+  /**
+   * Records the time it took to get a new shader program ready.
+   * 
+   * @param fromBinaryCache
+   *          {@code true} if the program was loaded from a cached binary,
+   *          {@code false} if it was compiled and linked from source
+   */
+  public static synchronized void recordProgramSetup(boolean fromBinaryCache, long nanos) {
+    if (fromBinaryCache) {
+      programsLoaded++;
+    } else {
+      programsCompiled++;
+    }
+
+    programSetupNanos += nanos;
+  }
+
+  /**
+   * Registers this with the platform MBean server under
+   * {@code org.jogamp.glg2d:type=FrameStats,name=<name>}.
+   */
+  public void register(String name) {
+    unregister();
+    try {
+      ObjectName objName = new ObjectName("org.jogamp.glg2d:type=FrameStats,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objName);
+      objectName = objName;
+    } catch (JMException e) {
+      LOGGER.log(Level.WARNING, "Could not register frame stats", e);
+    }
+  }
+
+  public void unregister() {
+    if (objectName == null) {
+      return;
+    }
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      LOGGER.log(Level.WARNING, "Could not unregister frame stats", e);
+    }
+
+    objectName = null;
+  }
+
+  protected synchronized long getLast(int counter) {
+    return last[counter];
+  }
+
+  /**
+   * Gets a percentile, from 0 to 100, of a counter over the recent frames, or
+   * 0 if nothing was painted yet. Frame times are in milliseconds.
+   */
+  public double percentile(int counter, double percentile) {
+    long[] values;
+    synchronized (this) {
+      int size = (int) Math.min(frameCount, HISTORY_SIZE);
+      values = Arrays.copyOf(history[counter], size);
+    }
+
+    if (values.length == 0) {
+      return 0;
+    }
+
+    Arrays.sort(values);
+    int index = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * values.length) - 1;
+    double value = values[Math.max(index, 0)];
+    return counter == FRAME_NANOS ? value / 1e6 : value;
+  }
+
+  @Override
+  public double percentile(String counter, double percentile) {
+    for (int i = 0; i < NUM_COUNTERS; i++) {
+      if (COUNTER_NAMES[i].equalsIgnoreCase(counter)) {
+        return percentile(i, percentile);
+      }
+    }
+
+    throw new IllegalArgumentException("Unknown counter: " + counter + ", expected one of "
+        + Arrays.toString(COUNTER_NAMES));
+  }
+
+  @Override
+  public synchronized long getFrameCount() {
+    return frameCount;
+  }
+
+  @Override
+  public double getFrameMillis() {
+    return getLast(FRAME_NANOS) / 1e6;
+  }
+
+  @Override
+  public long getDrawCalls() {
+    return getLast(DRAW_CALLS);
+  }
+
+  @Override
+  public long getVertices() {
+    return getLast(VERTICES);
+  }
+
+  @Override
+  public long getProgramSwitches() {
+    return getLast(PROGRAM_SWITCHES);
+  }
+
+  @Override
+  public long getTextureBinds() {
+    return getLast(TEXTURE_BINDS);
+  }
+
+  @Override
+  public long getTextureUploads() {
+    return getLast(TEXTURE_UPLOADS);
+  }
+
+  @Override
+  public long getTesselations() {
+    return getLast(TESSELATIONS);
+  }
+
+  @Override
+  public long getConvexFills() {
+    return getLast(CONVEX_FILLS);
+  }
+
+  @Override
+  public long getStrokeFallbacks() {
+    return getLast(STROKE_FALLBACKS);
+  }
+
+  @Override
+  public long getGlyphCacheHits() {
+    return getLast(GLYPH_CACHE_HITS);
+  }
+
+  @Override
+  public long getGlyphCacheMisses() {
+    return getLast(GLYPH_CACHE_MISSES);
+  }
+
+  @Override
+  public long getProgramsCompiled() {
+    synchronized (GLG2DFrameStats.class) {
+      return programsCompiled;
+    }
+  }
+
+  @Override
+  public long getProgramsLoaded() {
+    synchronized (GLG2DFrameStats.class) {
+      return programsLoaded;
+    }
+  }
+
+  @Override
+  public double getProgramSetupMillis() {
+    synchronized (GLG2DFrameStats.class) {
+      return programSetupNanos / 1e6;
+    }
+  }
+
+  @Override
+  public double getFrameMillisP50() {
+    return percentile(FRAME_NANOS, 50);
+  }
+
+  @Override
+  public double getFrameMillisP95() {
+    return percentile(FRAME_NANOS, 95);
+  }
+
+  @Override
+  public double getFrameMillisP99() {
+    return percentile(FRAME_NANOS, 99);
+  }
+
+  @Override
+  public double getDrawCallsP50() {
+    return percentile(DRAW_CALLS, 50);
+  }
+
+  @Override
+  public double getDrawCallsP95() {
+    return percentile(DRAW_CALLS, 95);
+  }
+
+  @Override
+  public double getDrawCallsP99() {
+    return percentile(DRAW_CALLS, 99);
+  }
+
+  @Override
+  public double getVerticesP50() {
+    return percentile(VERTICES, 50);
+  }
+
+  @Override
+  public double getVerticesP95() {
+    return percentile(VERTICES, 95);
+  }
+
+  @Override
+  public double getVerticesP99() {
+    return percentile(VERTICES, 99);
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < NUM_COUNTERS - 1; i++) {
+      builder.append(COUNTER_NAMES[i]).append('=').append(last[i]).append(", ");
+    }
+
+    return builder.append("FrameMillis=").append(last[FRAME_NANOS] / 1e6).toString();
+  }
+}
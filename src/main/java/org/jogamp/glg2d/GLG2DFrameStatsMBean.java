@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d;
+
+/**
+ * The JMX view of {@link GLG2DFrameStats}. The counts are those of the last
+ * frame painted. The percentiles are over the last
+ * {@link GLG2DFrameStats#HISTORY_SIZE} frames.
+ */
+public interface GLG2DFrameStatsMBean {
+  long getFrameCount();
+
+  double getFrameMillis();
+
+  long getDrawCalls();
+
+  long getVertices();
+
+  long getProgramSwitches();
+
+  long getTextureBinds();
+
+  long getTextureUploads();
+
+  long getTesselations();
+
+  long getConvexFills();
+
+  long getStrokeFallbacks();
+
+  long getGlyphCacheHits();
+
+  long getGlyphCacheMisses();
+
+  /**
+   * Gets the number of shader programs compiled and linked from source since
+   * the process started.
+   */
+  long getProgramsCompiled();
+
+  /**
+   * Gets the number of shader programs loaded from the on-disk binary cache
+   * since the process started.
+   */
+  long getProgramsLoaded();
+
+  /**
+   * Gets the total time spent getting shader programs ready, from source or
+   * from the cache.
+   */
+  double getProgramSetupMillis();
+
+  double getFrameMillisP50();
+
+  double getFrameMillisP95();
+
+  double getFrameMillisP99();
+
+  double getDrawCallsP50();
+
+  double getDrawCallsP95();
+
+  double getDrawCallsP99();
+
+  double getVerticesP50();
+
+  double getVerticesP95();
+
+  double getVerticesP99();
+
+  /**
+   * Gets a percentile, from 0 to 100, of any counter over the recent frames.
+   * 
+   * @param counter
+   *          The name of the counter, e.g. {@code "TextureUploads"}, or
+   *          {@code "FrameMillis"}
+   */
+  double percentile(String counter, double percentile);
+}
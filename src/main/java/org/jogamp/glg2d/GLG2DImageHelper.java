@@ -38,4 +38,32 @@ public interface GLG2DImageHelper extends G2DDrawingHelper {
   void drawImage(RenderedImage img, AffineTransform xform);
 
   void drawImage(RenderableImage img, AffineTransform xform);
+
+  /**
+   * Marks the whole image as changed. Textures are cached by image identity,
+   * so an image that is modified after it's drawn must be invalidated. The
+   * next time it's drawn its existing texture is updated.
+   * 
+   * @param img
+   *          The modified image
+   */
+  void invalidate(Image img);
+
+  /**
+   * Marks part of the image as changed. The next time it's drawn only this
+   * part of its texture is uploaded again. Repeated calls before the next draw
+   * are combined.
+   * 
+   * @param img
+   *          The modified image
+   * @param x
+   *          The left of the changed region, in image pixels
+   * @param y
+   *          The top of the changed region, in image pixels
+   * @param width
+   *          The width of the changed region
+   * @param height
+   *          The height of the changed region
+   */
+  void invalidate(Image img, int x, int y, int width, int height);
 }
\ No newline at end of file
@@ -49,8 +49,11 @@ public class GLG2DRenderingHints {
    * <li>{@link #VALUE_CLEAR_TEXTURES_CACHE_DEFAULT}</li>
    * <li>{@link #VALUE_CLEAR_TEXTURES_CACHE_NEVER}</li>
    * <li>{@link #VALUE_CLEAR_TEXTURES_CACHE_EACH_PAINT}</li>
-   * <li>any integer for the maximum size of the cache</li>
+   * <li>any integer for the maximum number of textures in the cache, beyond
+   * which the least recently drawn are evicted</li>
    * </ul>
+   * 
+   * The cache is also bounded by {@link #KEY_TEXTURE_CACHE_BUDGET}.
    */
   public static final Key KEY_CLEAR_TEXTURES_CACHE = new RenderingHints.Key(keyId++) {
     public boolean isCompatibleValue(Object val) {
@@ -60,4 +63,135 @@ public class GLG2DRenderingHints {
           val instanceof Integer;
     }
   };
+
+  /**
+   * The maximum estimated texture memory, in bytes, used by cached images. When
+   * it's exceeded the least recently drawn textures are destroyed. The value is
+   * a positive {@code Integer}; the default is
+   * {@link #VALUE_TEXTURE_CACHE_BUDGET_DEFAULT}.
+   */
+  public static final Key KEY_TEXTURE_CACHE_BUDGET = new RenderingHints.Key(keyId++) {
+    public boolean isCompatibleValue(Object val) {
+      return val instanceof Integer && ((Integer) val).intValue() > 0;
+    }
+  };
+
+  /**
+   * The default texture cache budget, 64MB.
+   */
+  public static final Object VALUE_TEXTURE_CACHE_BUDGET_DEFAULT = Integer.valueOf(64 << 20);
+
+  /**
+   * The maximum distance, in device pixels, between a flattened curve and the
+   * real curve. Smaller values draw smoother curves with more vertices. The
+   * value is a positive {@code Number}; the default is
+   * {@link #VALUE_CURVE_TOLERANCE_DEFAULT}.
+   */
+  public static final Key KEY_CURVE_TOLERANCE = new RenderingHints.Key(keyId++) {
+    public boolean isCompatibleValue(Object val) {
+      return val instanceof Number && ((Number) val).floatValue() > 0;
+    }
+  };
+
+  /**
+   * The default curve tolerance, a quarter of a pixel.
+   */
+  public static final Object VALUE_CURVE_TOLERANCE_DEFAULT = Float.valueOf(0.25f);
+
+  /**
+   * The maximum number of bytes of triangles kept for complex shapes that are
+   * filled repeatedly. The value is an {@code Integer}; 0 disables the cache.
+   * The default is {@link #VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT}.
+   */
+  public static final Key KEY_SHAPE_MESH_CACHE_SIZE = new RenderingHints.Key(keyId++) {
+    public boolean isCompatibleValue(Object val) {
+      return val instanceof Integer && ((Integer) val).intValue() >= 0;
+    }
+  };
+
+  /**
+   * The default mesh cache size, 8MB.
+   */
+  public static final Object VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT = Integer.valueOf(8 << 20);
+
+  /**
+   * Draw text by tesselating the glyph outlines.
+   */
+  public static final Object VALUE_TEXT_RENDERING_MODE_OUTLINES = new Object();
+
+  /**
+   * Draw text as textured quads from a shared atlas of rasterized glyphs. Text
+   * that is rotated, sheared or too large falls back to outlines.
+   */
+  public static final Object VALUE_TEXT_RENDERING_MODE_GLYPH_ATLAS = new Object();
+
+  /**
+   * Use the default text rendering mode.
+   */
+  public static final Object VALUE_TEXT_RENDERING_MODE_DEFAULT = VALUE_TEXT_RENDERING_MODE_OUTLINES;
+
+  /**
+   * Specifies how the shader pipeline draws text. Values can be one of
+   * 
+   * <ul>
+   * <li>{@link #VALUE_TEXT_RENDERING_MODE_DEFAULT}</li>
+   * <li>{@link #VALUE_TEXT_RENDERING_MODE_OUTLINES}</li>
+   * <li>{@link #VALUE_TEXT_RENDERING_MODE_GLYPH_ATLAS}</li>
+   * </ul>
+   */
+  public static final Key KEY_TEXT_RENDERING_MODE = new RenderingHints.Key(keyId++) {
+    public boolean isCompatibleValue(Object val) {
+      return val == VALUE_TEXT_RENDERING_MODE_OUTLINES ||
+          val == VALUE_TEXT_RENDERING_MODE_GLYPH_ATLAS;
+    }
+  };
+
+  /**
+   * Images no larger than this in either dimension are packed into shared
+   * atlas textures so that consecutive draws of small images, like icons, can
+   * share one texture bind. The value is an {@code Integer}; 0 disables the
+   * atlas. The default is {@link #VALUE_IMAGE_ATLAS_MAX_SIZE_DEFAULT}.
+   */
+  public static final Key KEY_IMAGE_ATLAS_MAX_SIZE = new RenderingHints.Key(keyId++) {
+    public boolean isCompatibleValue(Object val) {
+      return val instanceof Integer && ((Integer) val).intValue() >= 0;
+    }
+  };
+
+  /**
+   * The default largest image in the atlas, 64 pixels.
+   */
+  public static final Object VALUE_IMAGE_ATLAS_MAX_SIZE_DEFAULT = Integer.valueOf(64);
+
+  /**
+   * Convert and upload images on the GL thread as soon as they're drawn.
+   */
+  public static final Object VALUE_ASYNC_TEXTURE_UPLOAD_OFF = new Object();
+
+  /**
+   * Prepare images that aren't cached yet on a background thread. They aren't
+   * drawn until they're ready, {@code drawImage} returns {@code false} and the
+   * {@code ImageObserver} is notified when the image can be drawn.
+   */
+  public static final Object VALUE_ASYNC_TEXTURE_UPLOAD_ON = new Object();
+
+  public static final Object VALUE_ASYNC_TEXTURE_UPLOAD_DEFAULT = VALUE_ASYNC_TEXTURE_UPLOAD_OFF;
+
+  /**
+   * Specifies whether images are turned into textures in the background. This
+   * has no effect when the texture cache is cleared each paint. Values can be
+   * one of
+   * 
+   * <ul>
+   * <li>{@link #VALUE_ASYNC_TEXTURE_UPLOAD_DEFAULT}</li>
+   * <li>{@link #VALUE_ASYNC_TEXTURE_UPLOAD_OFF}</li>
+   * <li>{@link #VALUE_ASYNC_TEXTURE_UPLOAD_ON}</li>
+   * </ul>
+   */
+  public static final Key KEY_ASYNC_TEXTURE_UPLOAD = new RenderingHints.Key(keyId++) {
+    public boolean isCompatibleValue(Object val) {
+      return val == VALUE_ASYNC_TEXTURE_UPLOAD_OFF ||
+          val == VALUE_ASYNC_TEXTURE_UPLOAD_ON;
+    }
+  };
 }
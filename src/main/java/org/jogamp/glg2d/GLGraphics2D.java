@@ -56,6 +56,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.LWJGLException;
 
 import org.jogamp.glg2d.impl.GLGraphicsConfiguration;
+import org.jogamp.glg2d.impl.GLStateCache;
 import org.jogamp.glg2d.impl.gl2.GL2ColorHelper;
 import org.jogamp.glg2d.impl.gl2.GL2ImageDrawer;
 import org.jogamp.glg2d.impl.gl2.GL2ShapeDrawer;
@@ -118,6 +119,20 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 	 */
 	protected RenderingHints hints;
 
+	/**
+	 * Registers the frame stats of every graphics object as an MBean on its
+	 * first paint when set to {@code true}. Otherwise call
+	 * {@code getFrameStats().register(name)}.
+	 */
+	public static final String FRAME_STATS_PROPERTY = "org.jogamp.glg2d.frameStats";
+
+	/**
+	 * Counts the work done for each frame.
+	 */
+	protected GLG2DFrameStats frameStats = new GLG2DFrameStats();
+
+	protected boolean frameStatsChecked;
+
 	public GLGraphics2D() {
 		hints = new RenderingHints(Collections.<Key, Object> emptyMap());
 		createDrawingHelpers();
@@ -192,6 +207,10 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 		return colorHelper;
 	}
 
+	public GLG2DImageHelper getImageHelper() {
+		return imageHelper;
+	}
+
 	protected void setCanvas() {
 		try{
 			if(!Display.isCurrent()) Display.makeCurrent();
@@ -207,8 +226,20 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 	 * as getting the viewport
 	 */
 	public void prePaint() {
+		if (!frameStatsChecked) {
+			frameStatsChecked = true;
+			if (Boolean.getBoolean(FRAME_STATS_PROPERTY)) {
+				frameStats.register(getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this)));
+			}
+		}
+
+		frameStats.begin();
+		GLStateCache.getGLStateCache().setFrameStats(frameStats);
 		canvasHeight = GLG2DUtils.getViewportHeight();
 		setCanvas();
+
+		// anyone could have changed the GL state since the last frame
+		GLStateCache.getGLStateCache().invalidate();
 		setDefaultState();
 	}
 
@@ -225,6 +256,17 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 
 	public void postPaint() {
 		// could glFlush here, but not necessary
+		GLStateCache.getGLStateCache().restoreDefaults();
+		GLStateCache.getGLStateCache().setFrameStats(GLG2DFrameStats.DISCARD);
+		frameStats.end();
+	}
+
+	/**
+	 * Gets the counters of the last frame painted and the percentiles of recent
+	 * frames. The helpers are handed these in {@code setG2D()}.
+	 */
+	public GLG2DFrameStats getFrameStats() {
+		return frameStats;
 	}
 
 	public GLContext getGLContext() {
@@ -239,6 +281,10 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 		for (G2DDrawingHelper helper : helpers) {
 			helper.dispose();
 		}
+
+		frameStats.unregister();
+
+		VertexArena.getDefault().trim();
 	}
 
 	@Override
@@ -546,12 +592,13 @@ public class GLGraphics2D extends Graphics2D implements Cloneable {
 	}
 
 	protected void scissor(boolean enable) {
+		GLStateCache state = GLStateCache.getGLStateCache();
 		if (enable) {
-			GL11.glScissor(clip.x, canvasHeight - clip.y - clip.height, Math.max(clip.width, 0), Math.max(clip.height, 0));
-			GL11.glEnable(GL11.GL_SCISSOR_TEST);
+			state.setScissor(clip.x, canvasHeight - clip.y - clip.height, Math.max(clip.width, 0), Math.max(clip.height, 0));
+			state.setEnabled(GL11.GL_SCISSOR_TEST, true);
 		} else {
 			clip = null;
-			GL11.glDisable(GL11.GL_SCISSOR_TEST);
+			state.setEnabled(GL11.GL_SCISSOR_TEST, false);
 		}
 	}
 
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A pool of direct float buffers, grouped in power-of-two size classes. Direct
+ * memory is only reclaimed when the garbage collector gets around to the
+ * buffer that owns it, so instead of dropping buffers we hand them back here
+ * and reuse them for the next shape or frame. Buffers that are larger than the
+ * biggest size class are never pooled.
+ * 
+ * <p>
+ * The arena keeps track of how much memory is checked out and the high-water
+ * mark of that number, so long running applications can see what they
+ * actually need.
+ * </p>
+ */
+public class VertexArena {
+  /**
+   * The smallest size class, in floats.
+   */
+  public static final int MIN_CLASS_SIZE = 1 << 8;
+
+  /**
+   * The largest size class, in floats. Larger requests are allocated exactly
+   * and dropped on release.
+   */
+  public static final int MAX_CLASS_SIZE = 1 << 22;
+
+  /**
+   * The maximum number of free buffers kept in each size class.
+   */
+  public static final int MAX_FREE_PER_CLASS = 8;
+
+  private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+  private static final int NUM_CLASSES = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_SHIFT + 1;
+
+  private static final VertexArena DEFAULT = new VertexArena();
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected Deque<FloatBuffer>[] freeLists = new Deque[NUM_CLASSES];
+
+  protected long bytesInUse;
+  protected long bytesPooled;
+  protected long highWaterMark;
+  protected long allocations;
+  protected long reuses;
+
+  /**
+   * Gets the arena used by {@link VertexBuffer}.
+   */
+  public static VertexArena getDefault() {
+    return DEFAULT;
+  }
+
+  public VertexArena() {
+    for (int i = 0; i < NUM_CLASSES; i++) {
+      freeLists[i] = new ArrayDeque<FloatBuffer>();
+    }
+  }
+
+  /**
+   * Gets a cleared buffer with at least {@code minFloats} capacity.
+   */
+  public synchronized FloatBuffer acquire(int minFloats) {
+    int sizeClass = sizeClass(minFloats);
+
+    FloatBuffer buffer = null;
+    if (sizeClass < NUM_CLASSES) {
+      buffer = freeLists[sizeClass].poll();
+    }
+
+    if (buffer == null) {
+      int capacity = sizeClass < NUM_CLASSES ? MIN_CLASS_SIZE << sizeClass : minFloats;
+      buffer = BufferUtils.createFloatBuffer(capacity);
+      allocations++;
+    } else {
+      bytesPooled -= bytes(buffer);
+      reuses++;
+    }
+
+    bytesInUse += bytes(buffer);
+    highWaterMark = Math.max(highWaterMark, bytesInUse);
+
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer from {@link #acquire(int)} to the arena. The buffer must
+   * not be used after this.
+   */
+  public synchronized void release(FloatBuffer buffer) {
+    if (buffer == null) {
+      return;
+    }
+
+    bytesInUse -= bytes(buffer);
+
+    int capacity = buffer.capacity();
+    int sizeClass = sizeClass(capacity);
+    if (sizeClass < NUM_CLASSES && MIN_CLASS_SIZE << sizeClass == capacity) {
+      Deque<FloatBuffer> free = freeLists[sizeClass];
+      if (free.size() < MAX_FREE_PER_CLASS) {
+        buffer.clear();
+        free.push(buffer);
+        bytesPooled += bytes(buffer);
+      }
+    }
+  }
+
+  /**
+   * Drops all pooled buffers so their memory can be reclaimed. Buffers that are
+   * still checked out are not affected.
+   */
+  public synchronized void trim() {
+    for (Deque<FloatBuffer> free : freeLists) {
+      free.clear();
+    }
+
+    bytesPooled = 0;
+  }
+
+  /**
+   * Resets the high-water mark to the memory currently in use.
+   */
+  public synchronized void resetHighWaterMark() {
+    highWaterMark = bytesInUse;
+  }
+
+  /**
+   * Gets the number of bytes in buffers that are currently checked out.
+   */
+  public synchronized long getBytesInUse() {
+    return bytesInUse;
+  }
+
+  /**
+   * Gets the number of bytes in free buffers waiting to be reused.
+   */
+  public synchronized long getBytesPooled() {
+    return bytesPooled;
+  }
+
+  /**
+   * Gets the largest number of bytes that were checked out at any one time.
+   */
+  public synchronized long getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  /**
+   * Gets the number of direct buffers created by the arena.
+   */
+  public synchronized long getAllocationCount() {
+    return allocations;
+  }
+
+  /**
+   * Gets the number of requests served from the pool.
+   */
+  public synchronized long getReuseCount() {
+    return reuses;
+  }
+
+  protected static int sizeClass(int numFloats) {
+    if (numFloats <= MIN_CLASS_SIZE) {
+      return 0;
+    }
+
+    int shift = 32 - Integer.numberOfLeadingZeros(numFloats - 1);
+    return shift - MIN_SHIFT;
+  }
+
+  private static long bytes(FloatBuffer buffer) {
+    return (long) buffer.capacity() * (Float.SIZE / Byte.SIZE);
+  }
+}
@@ -17,18 +17,29 @@ package org.jogamp.glg2d;
 
 import java.nio.FloatBuffer;
 
-import org.lwjgl.opengl.GL11;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
 
 /**
  * Wraps a simple {@code FloatBuffer} and makes it easier to push 2-D vertices
  * into the buffer and then draw them using any mode desired. The default
  * constructor uses a global buffer since drawing in OpenGL is not
  * multi-threaded.
+ * 
+ * <p>
+ * The storage comes from the {@link VertexArena}, so growing the buffer or
+ * calling {@link #release()} hands the old memory back for reuse instead of
+ * leaving it for the garbage collector.
+ * </p>
  */
 public class VertexBuffer {
   protected static VertexBuffer shared = new VertexBuffer(1024);
 
+  /**
+   * Stands in for the storage of released buffers.
+   */
+  protected static final FloatBuffer EMPTY = BufferUtils.createFloatBuffer(0);
+
   protected FloatBuffer buffer;
 
   protected int deviceBufferId;
@@ -59,7 +70,7 @@ public class VertexBuffer {
    *          The size of the buffer in number of vertices
    */
   public VertexBuffer(int capacity) {
-    this(BufferUtils.createFloatBuffer(capacity * 2));
+    this(VertexArena.getDefault().acquire(capacity * 2));
   }
 
   /**
@@ -106,14 +117,27 @@ public class VertexBuffer {
   }
 
   protected void ensureCapacity(int numNewFloats) {
-    if (buffer.capacity() <= buffer.position() + numNewFloats) {
-      FloatBuffer larger = BufferUtils.createFloatBuffer(buffer.position() * 2);
+    int position = buffer.position();
+    int required = position + numNewFloats;
+    if (buffer.capacity() < required) {
+      // grow geometrically, but always enough for this add
+      FloatBuffer larger = VertexArena.getDefault().acquire(Math.max(required, buffer.capacity() * 2));
       deviceBufferId = -deviceBufferId;
-      int position = buffer.position();
-      buffer.rewind();
+      buffer.flip();
       larger.put(buffer);
+      VertexArena.getDefault().release(buffer);
       buffer = larger;
-      buffer.position(position);
+    }
+  }
+
+  /**
+   * Returns the storage to the {@link VertexArena}. The buffer is empty
+   * afterwards and gets new storage when vertices are added.
+   */
+  public void release() {
+    if (buffer != EMPTY) {
+      VertexArena.getDefault().release(buffer);
+      buffer = EMPTY;
     }
   }
 
@@ -132,12 +156,18 @@ public class VertexBuffer {
   /**
    * Draws the vertices and rewinds the buffer to be ready to draw next time.
    * 
-   * @param gl
-   *          The graphics context to use to draw
    * @param mode
    *          The mode, e.g. {@code GL#GL_LINE_STRIP}
    */
   public void drawBuffer(int mode) {
+    drawBuffer(mode, GLG2DFrameStats.DISCARD);
+  }
+
+  /**
+   * Draws the vertices like {@link #drawBuffer(int)} and counts the draw call
+   * in {@code frameStats}.
+   */
+  public void drawBuffer(int mode, GLG2DFrameStats frameStats) {
     if (buffer.position() == 0) {
       return;
     }
@@ -149,6 +179,7 @@ public class VertexBuffer {
 
     GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
     GL11.glDrawArrays(mode, 0, count / 2);
+    frameStats.recordDraw(count / 2);
     GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
 
     buffer.position(count);
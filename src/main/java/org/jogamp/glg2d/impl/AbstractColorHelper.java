@@ -74,7 +74,8 @@ public abstract class AbstractColorHelper implements GLG2DColorHelper {
 
   @Override
   public void setComposite(Composite comp) {
-    GL11.glEnable(GL11.GL_BLEND);
+    GLStateCache state = GLStateCache.getGLStateCache();
+    state.setEnabled(GL11.GL_BLEND, true);
     if (comp instanceof AlphaComposite) {
       switch (((AlphaComposite) comp).getRule()) {
       /*
@@ -85,32 +86,32 @@ public abstract class AbstractColorHelper implements GLG2DColorHelper {
        */
       case AlphaComposite.SRC:
       case AlphaComposite.SRC_IN:
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ZERO);
+        state.setBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ZERO);
         break;
 
       case AlphaComposite.SRC_OVER:
       case AlphaComposite.SRC_ATOP:
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        state.setBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
         break;
 
       case AlphaComposite.SRC_OUT:
       case AlphaComposite.CLEAR:
-        GL11.glBlendFunc(GL11.GL_ZERO, GL11.GL_ZERO);
+        state.setBlendFunc(GL11.GL_ZERO, GL11.GL_ZERO);
         break;
 
       case AlphaComposite.DST:
       case AlphaComposite.DST_OVER:
-        GL11.glBlendFunc(GL11.GL_ZERO, GL11.GL_ONE);
+        state.setBlendFunc(GL11.GL_ZERO, GL11.GL_ONE);
         break;
 
       case AlphaComposite.DST_IN:
       case AlphaComposite.DST_ATOP:
-        GL11.glBlendFunc(GL11.GL_ZERO, GL11.GL_SRC_ALPHA);
+        state.setBlendFunc(GL11.GL_ZERO, GL11.GL_SRC_ALPHA);
         break;
 
       case AlphaComposite.DST_OUT:
       case AlphaComposite.XOR:
-        GL11.glBlendFunc(GL11.GL_ZERO, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        state.setBlendFunc(GL11.GL_ZERO, GL11.GL_ONE_MINUS_SRC_ALPHA);
         break;
       }
 
@@ -15,13 +15,19 @@
  */
 package org.jogamp.glg2d.impl;
 
+import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_ASYNC_TEXTURE_UPLOAD;
 import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_CLEAR_TEXTURES_CACHE;
+import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_IMAGE_ATLAS_MAX_SIZE;
+import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_TEXTURE_CACHE_BUDGET;
+import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_ASYNC_TEXTURE_UPLOAD_DEFAULT;
+import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_ASYNC_TEXTURE_UPLOAD_ON;
 import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_CLEAR_TEXTURES_CACHE_DEFAULT;
 import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_CLEAR_TEXTURES_CACHE_EACH_PAINT;
 import static org.jogamp.glg2d.impl.GLG2DNotImplemented.notImplemented;
 
 import java.awt.Color;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints.Key;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
@@ -33,7 +39,11 @@ import java.awt.image.renderable.RenderableImage;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,18 +51,46 @@ import org.jogamp.glg2d.GLG2DImageHelper;
 import org.jogamp.glg2d.GLG2DRenderingHints;
 import org.jogamp.glg2d.GLGraphics2D;
 
-import org.newdawn.slick.util.*;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GLContext;
 import org.newdawn.slick.opengl.*;
 
 public abstract class AbstractImageHelper implements GLG2DImageHelper {
   private static final Logger LOGGER = Logger.getLogger(AbstractImageHelper.class.getName());
 
+  /**
+   * The default budget for cached textures, from
+   * {@link GLG2DRenderingHints#VALUE_TEXTURE_CACHE_BUDGET_DEFAULT}.
+   */
+  public static final int DEFAULT_TEXTURE_CACHE_BYTES = ((Integer) GLG2DRenderingHints.VALUE_TEXTURE_CACHE_BUDGET_DEFAULT).intValue();
+
   /**
    * See {@link GLG2DRenderingHints#KEY_CLEAR_TEXTURES_CACHE}
    */
   protected TextureCache imageCache = new TextureCache();
   protected Object clearCachePolicy;
 
+  /**
+   * Small images are packed together, see
+   * {@link GLG2DRenderingHints#KEY_IMAGE_ATLAS_MAX_SIZE}.
+   */
+  protected ImageAtlas atlas = new ImageAtlas(this);
+
+  /**
+   * Parts of cached images that changed since they were uploaded.
+   */
+  protected Map<Image, Rectangle> dirtyRegions = new WeakHashMap<Image, Rectangle>();
+
+  protected TextureUploader uploader = new TextureUploader();
+
+  /**
+   * See {@link GLG2DRenderingHints#KEY_ASYNC_TEXTURE_UPLOAD}
+   */
+  protected AsyncTextureLoader asyncLoader = new AsyncTextureLoader(this);
+  protected boolean asyncUploads;
+
   protected GLGraphics2D g2d;
 
   protected abstract void begin(Texture texture, AffineTransform xform, Color bgcolor);
@@ -65,9 +103,11 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
   @Override
   public void setG2D(GLGraphics2D g2d) {
     this.g2d = g2d;
+    uploader.setFrameStats(g2d.getFrameStats());
 
     if (clearCachePolicy == VALUE_CLEAR_TEXTURES_CACHE_EACH_PAINT) {
       imageCache.clear();
+      atlas.clear();
     }
   }
 
@@ -85,17 +125,39 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
   public void setHint(Key key, Object value) {
     if (key == KEY_CLEAR_TEXTURES_CACHE) {
       clearCachePolicy = value;
+      if (value instanceof Number) {
+        imageCache.setMaxEntries(Math.max(((Number) value).intValue(), 1));
+      } else {
+        imageCache.setMaxEntries(Integer.MAX_VALUE);
+      }
+    } else if (key == KEY_ASYNC_TEXTURE_UPLOAD) {
+      asyncUploads = value == VALUE_ASYNC_TEXTURE_UPLOAD_ON;
+    } else if (key == KEY_TEXTURE_CACHE_BUDGET) {
+      imageCache.setMaxBytes(((Number) value).longValue());
+    } else if (key == KEY_IMAGE_ATLAS_MAX_SIZE) {
+      atlas.setMaxImageSize(((Number) value).intValue());
     }
   }
 
   @Override
   public void resetHints() {
     clearCachePolicy = VALUE_CLEAR_TEXTURES_CACHE_DEFAULT;
+    imageCache.setMaxEntries(Integer.MAX_VALUE);
+    imageCache.setMaxBytes(DEFAULT_TEXTURE_CACHE_BYTES);
+    asyncUploads = VALUE_ASYNC_TEXTURE_UPLOAD_DEFAULT == VALUE_ASYNC_TEXTURE_UPLOAD_ON;
+    atlas.setMaxImageSize(ImageAtlas.DEFAULT_MAX_IMAGE_SIZE);
   }
 
   @Override
   public void dispose() {
     imageCache.clear();
+    atlas.clear();
+    dirtyRegions.clear();
+    asyncLoader.dispose();
+  }
+
+  public ImageAtlas getAtlas() {
+    return atlas;
   }
 
   @Override
@@ -125,13 +187,21 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
   @Override
   public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2,
       int sy2, Color bgcolor, ImageObserver observer) {
+    ImageAtlas.Region region = getAtlasRegion(img);
+    if (region != null) {
+      drawFromAtlas(region, null, bgcolor, dx1, dy1, dx2, dy2, region.u(sx1), region.v(sy1), region.u(sx2),
+          region.v(sy2));
+      return true;
+    }
+
     Texture texture = getTexture(img, observer);
     if (texture == null) {
       return false;
     }
 
-    float height = texture.getHeight();
-    float width = texture.getWidth();
+    // source coordinates are in pixels of the image, not the padded texture
+    float width = texture.getTextureWidth();
+    float height = texture.getTextureHeight();
     begin(texture, null, bgcolor);
     applyTexture(texture, dx1, dy1, dx2, dy2, sx1 / width, sy1 / height, sx2 / width, sy2 / height);
     end(texture);
@@ -140,6 +210,13 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
   }
 
   protected boolean drawImage(Image img, AffineTransform xform, Color color, ImageObserver observer) {
+    ImageAtlas.Region region = getAtlasRegion(img);
+    if (region != null) {
+      drawFromAtlas(region, xform, color, 0, 0, region.width, region.height, region.u1, region.v1, region.u2,
+          region.v2);
+      return true;
+    }
+
     Texture texture = getTexture(img, observer);
     if (texture == null) {
       return false;
@@ -153,10 +230,64 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
   }
 
   protected void applyTexture(Texture texture) {
-    //float width = texture.getImageWidth();
-    //float height = texture.getHeight();
-    
-    applyTexture(texture, 0, 0, texture.getTextureWidth(), texture.getTextureHeight(), 0, 0, 1, 1);
+    // getWidth() and getHeight() are the fraction of the texture the image
+    // covers, 1 unless it was padded to a power of two
+    applyTexture(texture, 0, 0, texture.getImageWidth(), texture.getImageHeight(), 0, 0, texture.getWidth(),
+        texture.getHeight());
+  }
+
+  /**
+   * Draws part of an atlas page. Implementations may defer the draw so that
+   * consecutive draws from the same page are batched.
+   */
+  protected void drawFromAtlas(ImageAtlas.Region region, AffineTransform xform, Color bgcolor, float dx1,
+      float dy1, float dx2, float dy2, float sx1, float sy1, float sx2, float sy2) {
+    Texture texture = region.getTexture();
+    begin(texture, xform, bgcolor);
+    applyTexture(texture, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2);
+    end(texture);
+  }
+
+  /**
+   * Gets where the image is in the atlas, adding it if it's small enough.
+   * 
+   * @return the region, or {@code null} if the image should get its own
+   *         texture
+   */
+  protected ImageAtlas.Region getAtlasRegion(Image image) {
+    if (!atlas.accepts(image.getWidth(null), image.getHeight(null))) {
+      return null;
+    }
+
+    ImageAtlas.Region region = atlas.get(image);
+    if (region != null) {
+      Rectangle dirty = dirtyRegions.remove(image);
+      BufferedImage bufferedImage = dirty == null ? null : asBufferedImage(image);
+      if (bufferedImage != null) {
+        Rectangle rect = clip(dirty, bufferedImage);
+        if (!rect.isEmpty()) {
+          // deferred draws must see the old pixels
+          flushPendingDraws();
+          atlas.update(region, bufferedImage, rect.x, rect.y, rect.width, rect.height);
+        }
+      }
+    } else if (!imageCache.contains(image)) {
+      BufferedImage bufferedImage = asBufferedImage(image);
+      if (bufferedImage != null) {
+        // adding may repack a page that deferred draws still use
+        flushPendingDraws();
+        region = atlas.add(image, bufferedImage);
+      }
+    }
+
+    return region;
+  }
+
+  /**
+   * Draws anything that was deferred and may read from an atlas page.
+   */
+  protected void flushPendingDraws() {
+    // nop
   }
 
   /**
@@ -175,52 +306,176 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
    */
   protected Texture getTexture(Image image, ImageObserver observer) {
     Texture texture = imageCache.get(image);
-    if (texture == null) {
-      BufferedImage bufferedImage;
-      if (image instanceof BufferedImage && ((BufferedImage) image).getType() != BufferedImage.TYPE_CUSTOM) {
-        bufferedImage = (BufferedImage) image;
-      } else {
-        bufferedImage = toBufferedImage(image);
+    if (texture == null && useAsyncUpload()) {
+      texture = asyncLoader.load(image, observer);
+      if (texture != null) {
+        addToCache(image, texture);
       }
-
+    } else if (texture == null) {
+      BufferedImage bufferedImage = asBufferedImage(image);
       if (bufferedImage != null) {
         texture = create(bufferedImage);
-        addToCache(image, texture);
+        if (texture != null) {
+          addToCache(image, texture);
+        }
+      }
+    } else {
+      Rectangle dirty = dirtyRegions.remove(image);
+      if (dirty != null) {
+        updateTexture(texture, image, dirty);
       }
     }
 
     return texture;
   }
 
+  /**
+   * Checks if missing textures should be prepared in the background. Textures
+   * that are thrown away each paint would never be ready in time.
+   */
+  protected boolean useAsyncUpload() {
+    return asyncUploads && clearCachePolicy != VALUE_CLEAR_TEXTURES_CACHE_EACH_PAINT;
+  }
+
+  @Override
+  public void invalidate(Image img) {
+    invalidate(img, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void invalidate(Image img, int x, int y, int width, int height) {
+    // images we haven't uploaded yet will be read in full anyway
+    if (!imageCache.contains(img) && atlas.get(img) == null) {
+      return;
+    }
+
+    Rectangle rect = new Rectangle(x, y, width, height);
+    Rectangle dirty = dirtyRegions.get(img);
+    if (dirty == null) {
+      dirtyRegions.put(img, rect);
+    } else {
+      dirty.add(rect);
+    }
+  }
+
+  /**
+   * Uploads the changed part of the image into its existing texture.
+   */
+  protected void updateTexture(Texture texture, Image image, Rectangle dirty) {
+    BufferedImage bufferedImage = asBufferedImage(image);
+    if (bufferedImage == null) {
+      return;
+    }
+
+    Rectangle rect = clip(dirty, bufferedImage);
+    if (!rect.isEmpty()) {
+      GLStateCache.getGLStateCache().bindTexture(texture);
+      uploader.upload(bufferedImage, rect.x, rect.y, rect.width, rect.height, rect.x, rect.y, texture.hasAlpha());
+    }
+  }
+
+  private static Rectangle clip(Rectangle dirty, BufferedImage image) {
+    return dirty.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+  }
+
+  /**
+   * Creates the texture ourselves and uploads the image's pixels without
+   * redrawing it first, like Slick would.
+   */
   protected Texture create(BufferedImage image) {
-    // we'll assume the image is complete and can be rendered
-	Texture t;
-	  try{
-		  t = BufferedImageUtil.getTexture(image.toString(),image);
-	  } catch (java.io.IOException e) { 
-		  e.printStackTrace(); 
-		  t = null;
-	  }
-	  return t;
+    int width = image.getWidth();
+    int height = image.getHeight();
+    boolean alpha = image.getColorModel().hasAlpha();
+
+    Texture texture = allocateTexture(image.toString(), width, height, alpha);
+    uploader.upload(image, 0, 0, width, height, 0, 0, alpha);
+    return texture;
+  }
+
+  /**
+   * Creates an empty texture for an image of this size and leaves it bound.
+   * The texture has the exact size of the image if the context supports it.
+   */
+  protected Texture allocateTexture(String name, int width, int height, boolean alpha) {
+    int texWidth = width;
+    int texHeight = height;
+    if (!isNonPowerOfTwoSupported()) {
+      texWidth = powerOfTwo(width);
+      texHeight = powerOfTwo(height);
+    }
+
+    TextureImpl texture = new TextureImpl(name, GL11.GL_TEXTURE_2D, GL11.glGenTextures());
+    texture.setWidth(width);
+    texture.setHeight(height);
+    texture.setTextureWidth(texWidth);
+    texture.setTextureHeight(texHeight);
+    texture.setAlpha(alpha);
+
+    GLStateCache.getGLStateCache().bindTexture(texture);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+    GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, alpha ? GL11.GL_RGBA8 : GL11.GL_RGB8, texWidth, texHeight, 0,
+        GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+    return texture;
+  }
+
+  /**
+   * Checks if the current context can use textures that aren't a power of two
+   * in size.
+   */
+  protected boolean isNonPowerOfTwoSupported() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    return caps.OpenGL20 || caps.GL_ARB_texture_non_power_of_two;
+  }
+
+  private static int powerOfTwo(int size) {
+    int pot = 1;
+    while (pot < size) {
+      pot <<= 1;
+    }
+
+    return pot;
   }
 
   protected void destroy(Texture texture) {
+    GLStateCache.getGLStateCache().textureDeleted(texture.getTextureID());
     texture.release();
   }
 
   protected void addToCache(Image image, Texture texture) {
-    if (clearCachePolicy instanceof Number) {
-      int maxSize = ((Number) clearCachePolicy).intValue();
-      if (imageCache.size() > maxSize) {
-        if (LOGGER.isLoggable(Level.FINE)) {
-          LOGGER.fine("Clearing texture cache with size " + imageCache.size());
-        }
+    imageCache.put(image, texture);
+  }
 
-        imageCache.clear();
-      }
-    }
+  /**
+   * Estimates the memory used by the texture, including any padding to a
+   * power of two.
+   */
+  protected long estimateBytes(Texture texture) {
+    int bytesPerPixel = texture.hasAlpha() ? 4 : 3;
+    return (long) texture.getTextureWidth() * texture.getTextureHeight() * bytesPerPixel;
+  }
 
-    imageCache.put(image, texture);
+  /**
+   * Estimates the memory saved by not padding the texture to a power of two.
+   */
+  protected long estimateSavedBytes(Texture texture) {
+    int bytesPerPixel = texture.hasAlpha() ? 4 : 3;
+    long padded = (long) powerOfTwo(texture.getImageWidth()) * powerOfTwo(texture.getImageHeight());
+    return (padded - (long) texture.getTextureWidth() * texture.getTextureHeight()) * bytesPerPixel;
+  }
+
+  public TextureCache getTextureCache() {
+    return imageCache;
+  }
+
+  protected BufferedImage asBufferedImage(Image image) {
+    if (image instanceof BufferedImage && ((BufferedImage) image).getType() != BufferedImage.TYPE_CUSTOM) {
+      return (BufferedImage) image;
+    } else {
+      return toBufferedImage(image);
+    }
   }
 
   protected BufferedImage toBufferedImage(Image image) {
@@ -234,7 +489,7 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
       return null;
     }
 
-    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
     bufferedImage.createGraphics().drawImage(image, null, null);
     return bufferedImage;
   }
@@ -257,17 +512,38 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
   /**
    * We could use a WeakHashMap here, but we want access to the ReferenceQueue
    * so we can dispose the Textures when the Image is no longer referenced.
+   * 
+   * <p>
+   * The cache is bounded by the estimated texture memory and, optionally, by
+   * the number of textures. When either is exceeded the least recently drawn
+   * textures are evicted one at a time. Eviction only happens while drawing,
+   * so textures are always destroyed on the GL thread.
+   * </p>
    */
   @SuppressWarnings("serial")
-  protected class TextureCache extends HashMap<WeakKey<Image>, Texture> {
+  protected class TextureCache extends LinkedHashMap<WeakKey<Image>, Texture> {
     private ReferenceQueue<Image> queue = new ReferenceQueue<Image>();
 
+    private long maxBytes = DEFAULT_TEXTURE_CACHE_BYTES;
+    private int maxEntries = Integer.MAX_VALUE;
+
+    private long bytes;
+    private long savedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TextureCache() {
+      // access order, so iteration starts with the least recently used
+      super(16, 0.75f, true);
+    }
+
     public void expungeStaleEntries() {
       Reference<? extends Image> ref = queue.poll();
       while (ref != null) {
         Texture texture = remove(ref);
         if (texture != null) {
-          destroy(texture);
+          release(texture);
         }
 
         ref = queue.poll();
@@ -277,13 +553,139 @@ public abstract class AbstractImageHelper implements GLG2DImageHelper {
     public Texture get(Image image) {
       expungeStaleEntries();
       WeakKey<Image> key = new WeakKey<Image>(image, null);
-      return get(key);
+      Texture texture = get(key);
+      if (texture == null) {
+        misses++;
+      } else {
+        hits++;
+      }
+
+      return texture;
+    }
+
+    /**
+     * Checks if the image has a texture without counting a hit or miss.
+     */
+    public boolean contains(Image image) {
+      return containsKey(new WeakKey<Image>(image, null));
     }
 
     public Texture put(Image image, Texture texture) {
       expungeStaleEntries();
       WeakKey<Image> key = new WeakKey<Image>(image, queue);
-      return put(key, texture);
+      Texture old = put(key, texture);
+      if (old != texture) {
+        if (old != null) {
+          release(old);
+        }
+
+        bytes += estimateBytes(texture);
+        savedBytes += estimateSavedBytes(texture);
+        trim();
+      }
+
+      return old;
+    }
+
+    /**
+     * Sets the budget for the estimated texture memory, in bytes.
+     */
+    public void setMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      trim();
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of textures, {@code Integer.MAX_VALUE} for no
+     * limit.
+     */
+    public void setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      trim();
+    }
+
+    /**
+     * Destroys all the textures.
+     */
+    @Override
+    public void clear() {
+      for (Texture texture : values()) {
+        destroy(texture);
+      }
+
+      super.clear();
+      bytes = 0;
+      savedBytes = 0;
+    }
+
+    /**
+     * Evicts the least recently used textures until the cache fits its
+     * budget. The most recently used texture is always kept, since it's about
+     * to be drawn.
+     */
+    protected void trim() {
+      Iterator<Texture> it = values().iterator();
+      while ((bytes > maxBytes || size() > maxEntries) && size() > 1) {
+        Texture texture = it.next();
+        it.remove();
+        release(texture);
+        evictions++;
+
+        if (LOGGER.isLoggable(Level.FINEST)) {
+          LOGGER.finest("Evicted texture, " + bytes + " bytes left in cache");
+        }
+      }
+    }
+
+    private void release(Texture texture) {
+      bytes -= estimateBytes(texture);
+      savedBytes -= estimateSavedBytes(texture);
+      destroy(texture);
+    }
+
+    /**
+     * Gets the estimated bytes of texture memory held by the cache.
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Gets the estimated bytes the cached textures would use on top of
+     * {@link #getBytes()} if they were padded to a power of two.
+     */
+    public long getSavedBytes() {
+      return savedBytes;
+    }
+
+    /**
+     * Gets the estimated bytes saved by not padding the image's texture, or 0
+     * if it isn't cached. This counts as a use of the texture.
+     */
+    public long getSavedBytes(Image image) {
+      Texture texture = super.get(new WeakKey<Image>(image, null));
+      return texture == null ? 0 : estimateSavedBytes(texture);
+    }
+
+    public long getHitCount() {
+      return hits;
+    }
+
+    public long getMissCount() {
+      return misses;
+    }
+
+    public double getHitRate() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    public long getEvictionCount() {
+      return evictions;
     }
   }
 
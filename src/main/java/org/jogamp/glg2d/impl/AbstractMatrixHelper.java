@@ -115,6 +115,32 @@ public abstract class AbstractMatrixHelper implements GLG2DTransformHelper {
     return (AffineTransform) getTransform0().clone();
   }
 
+  /**
+   * Gets the type of the current transform, see
+   * {@link AffineTransform#getType()}.
+   */
+  public int getTransformType() {
+    return getTransform0().getType();
+  }
+
+  /**
+   * Gets the largest factor by which the current transform stretches any
+   * vector. This is how much bigger things get on screen.
+   */
+  public double getScale() {
+    AffineTransform at = getTransform0();
+    double a = at.getScaleX();
+    double b = at.getShearX();
+    double c = at.getShearY();
+    double d = at.getScaleY();
+
+    // largest singular value of the 2x2 matrix
+    double s = (a * a + b * b + c * c + d * d) / 2;
+    double diff = (a * a + c * c - b * b - d * d) / 2;
+    double cross = a * b + c * d;
+    return Math.sqrt(s + Math.sqrt(diff * diff + cross * cross));
+  }
+
   /**
    * Returns the {@code AffineTransform} at the top of the stack, <em>not</em> a
    * copy.
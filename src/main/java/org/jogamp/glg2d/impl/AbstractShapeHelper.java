@@ -31,9 +31,16 @@ import java.awt.geom.RoundRectangle2D;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
+import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_CURVE_TOLERANCE;
+import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_SHAPE_MESH_CACHE_SIZE;
+import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_CURVE_TOLERANCE_DEFAULT;
+import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT;
+
 import org.jogamp.glg2d.GLG2DShapeHelper;
+import org.jogamp.glg2d.GLG2DTransformHelper;
 import org.jogamp.glg2d.GLGraphics2D;
 import org.jogamp.glg2d.PathVisitor;
+import org.jogamp.glg2d.VertexBuffer;
 
 public abstract class AbstractShapeHelper implements GLG2DShapeHelper {
   /**
@@ -47,12 +54,27 @@ public abstract class AbstractShapeHelper implements GLG2DShapeHelper {
 
   protected Deque<Stroke> strokeStack = new ArrayDeque<Stroke>();
 
+  protected GLGraphics2D g2d;
+
+  /**
+   * The maximum distance, in device pixels, between flattened curves and the
+   * real curves.
+   */
+  protected float curveTolerance = ((Number) VALUE_CURVE_TOLERANCE_DEFAULT).floatValue();
+
+  /**
+   * See {@link org.jogamp.glg2d.GLG2DRenderingHints#KEY_SHAPE_MESH_CACHE_SIZE}
+   */
+  protected ShapeMeshCache meshCache = new ShapeMeshCache();
+
   public AbstractShapeHelper() {
     strokeStack.push(new BasicStroke());
   }
 
   @Override
   public void setG2D(GLGraphics2D g2d) {
+    this.g2d = g2d;
+
     strokeStack.clear();
     strokeStack.push(new BasicStroke());
   }
@@ -69,17 +91,27 @@ public abstract class AbstractShapeHelper implements GLG2DShapeHelper {
 
   @Override
   public void setHint(Key key, Object value) {
-    // nop
+    if (key == KEY_CURVE_TOLERANCE) {
+      curveTolerance = ((Number) (value == null ? VALUE_CURVE_TOLERANCE_DEFAULT : value)).floatValue();
+    } else if (key == KEY_SHAPE_MESH_CACHE_SIZE) {
+      meshCache.setMaxBytes(((Integer) (value == null ? VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT : value)).intValue());
+    }
   }
 
   @Override
   public void resetHints() {
     setHint(RenderingHints.KEY_ANTIALIASING, null);
+    setHint(KEY_CURVE_TOLERANCE, VALUE_CURVE_TOLERANCE_DEFAULT);
+    setHint(KEY_SHAPE_MESH_CACHE_SIZE, VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT);
   }
 
   @Override
   public void dispose() {
-    // nop
+    meshCache.clear();
+  }
+
+  public ShapeMeshCache getMeshCache() {
+    return meshCache;
   }
 
   @Override
@@ -174,17 +206,49 @@ public abstract class AbstractShapeHelper implements GLG2DShapeHelper {
         shape instanceof Arc2D ||
         shape instanceof RoundRectangle2D) {
       fill(shape, true);
+    } else if (meshCache.isEnabled()) {
+      VertexBuffer mesh = meshCache.getMesh(shape, getTransformScale(), curveTolerance);
+      if (mesh == null) {
+        fill(shape, false);
+      } else {
+        drawTriangles(mesh);
+      }
     } else {
       fill(shape, false);
     }
   }
 
   protected abstract void fill(Shape shape, boolean isDefinitelySimpleConvex);
+
+  /**
+   * Fills the triangles in the buffer, drawn as {@code GL_TRIANGLES}. The
+   * buffer is not changed.
+   */
+  protected abstract void drawTriangles(VertexBuffer triangles);
   
   protected void traceShape(Shape shape, PathVisitor visitor) {
+    if (visitor instanceof SimplePathVisitor) {
+      SimplePathVisitor simpleVisitor = (SimplePathVisitor) visitor;
+      simpleVisitor.setCurveTolerance(curveTolerance);
+      simpleVisitor.setTransformScale(getTransformScale());
+    }
+
     visitShape(shape, visitor);
   }
 
+  /**
+   * Gets the largest scale factor of the current transform, used to flatten
+   * curves in device space.
+   */
+  protected float getTransformScale() {
+    GLG2DTransformHelper matrixHelper = g2d == null ? null : g2d.getMatrixHelper();
+    if (matrixHelper instanceof AbstractMatrixHelper) {
+      return (float) ((AbstractMatrixHelper) matrixHelper).getScale();
+    } else {
+      return 1;
+    }
+  }
+
   public static void visitShape(Shape shape, PathVisitor visitor) {
     PathIterator iterator = shape.getPathIterator(null);
     visitor.beginPoly(iterator.getWindingRule());
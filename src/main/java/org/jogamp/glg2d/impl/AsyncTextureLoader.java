@@ -0,0 +1,445 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GLContext;
+import org.newdawn.slick.opengl.Texture;
+
+/**
+ * Prepares textures for images off the GL thread. The first time an image is
+ * drawn its pixels are converted and staged on a background thread and
+ * nothing is drawn. When the pixels are ready the {@code ImageObserver} is
+ * told, which usually repaints, and the next draw uploads the staged pixels.
+ * 
+ * <p>
+ * If the context can map buffer ranges and the size of the image is known, a
+ * pixel buffer object is mapped on the GL thread and the worker stages the
+ * pixels straight into it. The GL thread then only unmaps the buffer and
+ * starts the transfer into the texture, which the driver can do without
+ * blocking. Otherwise the pixels are staged in client memory and copied by
+ * {@code glTexSubImage2D}.
+ * </p>
+ * <p>
+ * The pixel buffers and staging buffers are kept in small pools so that
+ * images loaded while scrolling don't each allocate their own memory. Images
+ * that can't be converted are remembered and not tried again.
+ * </p>
+ * <p>
+ * All methods must be called on the GL thread.
+ * </p>
+ */
+public class AsyncTextureLoader {
+  private static final Logger LOGGER = Logger.getLogger(AsyncTextureLoader.class.getName());
+
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "glg2d-texture-loader");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * The most staging buffers, and the most pixel buffers, kept for reuse.
+   */
+  protected static final int MAX_FREE_UPLOADERS = 2;
+
+  /**
+   * Staging buffers and pixel buffers larger than this are not kept.
+   */
+  protected static final int MAX_FREE_UPLOADER_BYTES = 16 << 20;
+
+  protected final AbstractImageHelper helper;
+
+  protected Map<Image, Job> jobs = new WeakHashMap<Image, Job>();
+
+  /**
+   * Jobs that hold a mapped pixel buffer. They're kept here too so the buffer
+   * is released even if the image is collected before it's uploaded.
+   */
+  protected List<Job> mappedJobs = new ArrayList<Job>();
+
+  /**
+   * Images that couldn't be converted, used as a weak set.
+   */
+  protected Map<Image, Boolean> failed = new WeakHashMap<Image, Boolean>();
+
+  /**
+   * Guarded by itself, the workers take from it.
+   */
+  protected final Deque<TextureUploader> freeUploaders = new ArrayDeque<TextureUploader>();
+
+  /**
+   * Unmapped pixel buffers, only used on the GL thread.
+   */
+  protected final Deque<PixelBuffer> freePixelBuffers = new ArrayDeque<PixelBuffer>();
+
+  public AsyncTextureLoader(AbstractImageHelper helper) {
+    this.helper = helper;
+  }
+
+  /**
+   * Gets the texture for the image if its pixels are ready, otherwise starts
+   * preparing them.
+   * 
+   * @return the new texture, which isn't cached yet, or {@code null} if the
+   *         image isn't ready
+   */
+  public Texture load(Image image, ImageObserver observer) {
+    expungeAbandonedJobs();
+
+    if (failed.containsKey(image)) {
+      return null;
+    }
+
+    Job job = jobs.get(image);
+    if (job == null) {
+      job = new Job(image, observer);
+      job.pixelBuffer = mapPixelBuffer(image);
+      if (job.pixelBuffer != null) {
+        mappedJobs.add(job);
+      }
+
+      jobs.put(image, job);
+      EXECUTOR.execute(job);
+      return null;
+    } else if (!job.done) {
+      if (observer != null) {
+        job.observer = observer;
+      }
+
+      return null;
+    }
+
+    jobs.remove(image);
+    if (job.error) {
+      failed.put(image, Boolean.TRUE);
+      releasePixelBuffer(job);
+      return null;
+    } else if (job.uploader == null) {
+      // not loaded yet, so try again next time
+      releasePixelBuffer(job);
+      return null;
+    }
+
+    Texture texture;
+    job.uploader.setFrameStats(helper.g2d.getFrameStats());
+    if (job.stagedInPixelBuffer) {
+      GLStateCache state = GLStateCache.getGLStateCache();
+      state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, job.pixelBuffer.id);
+      boolean intact = GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+      state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+      job.pixelBuffer.mapped = null;
+
+      if (!intact) {
+        // the driver lost the mapped storage, so stage it again next time
+        releasePixelBuffer(job);
+        return null;
+      }
+
+      // allocate while nothing is bound, a null upload would read the buffer
+      texture = helper.allocateTexture(image.toString(), job.width, job.height, job.alpha);
+      state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, job.pixelBuffer.id);
+      job.uploader.uploadStagedFromPixelBuffer(0, 0);
+      state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+      releasePixelBuffer(job);
+    } else {
+      releasePixelBuffer(job);
+      texture = helper.allocateTexture(image.toString(), job.width, job.height, job.alpha);
+      job.uploader.uploadStaged(0, 0);
+      releaseUploader(job.uploader);
+    }
+
+    job.uploader = null;
+    return texture;
+  }
+
+  /**
+   * Checks if the image is being prepared.
+   */
+  public boolean isPending(Image image) {
+    return jobs.containsKey(image);
+  }
+
+  /**
+   * Forgets all images being prepared or that failed, and deletes the free
+   * staging buffers and pixel buffers.
+   */
+  public void dispose() {
+    for (Job job : mappedJobs) {
+      // wait for the worker to stop writing before the memory goes away
+      synchronized (job) {
+        job.cancelled = true;
+      }
+
+      deletePixelBuffer(job.pixelBuffer);
+      job.pixelBuffer = null;
+    }
+
+    for (PixelBuffer pixelBuffer : freePixelBuffers) {
+      deletePixelBuffer(pixelBuffer);
+    }
+
+    mappedJobs.clear();
+    freePixelBuffers.clear();
+    jobs.clear();
+    failed.clear();
+    synchronized (freeUploaders) {
+      freeUploaders.clear();
+    }
+  }
+
+  /**
+   * Releases the pixel buffers of finished jobs whose image was collected
+   * before it was drawn again.
+   */
+  protected void expungeAbandonedJobs() {
+    Iterator<Job> it = mappedJobs.iterator();
+    while (it.hasNext()) {
+      Job job = it.next();
+      if (job.done && job.key.get() == null) {
+        it.remove();
+        unmapPixelBuffer(job.pixelBuffer);
+        recyclePixelBuffer(job.pixelBuffer);
+        job.pixelBuffer = null;
+      }
+    }
+  }
+
+  /**
+   * Maps a pixel buffer large enough for the image, if the context supports
+   * it and the image's size is known.
+   * 
+   * @return the mapped buffer, left unbound, or {@code null}
+   */
+  protected PixelBuffer mapPixelBuffer(Image image) {
+    int width = image.getWidth(null);
+    int height = image.getHeight(null);
+    if (width <= 0 || height <= 0 || !GLContext.getCapabilities().OpenGL30) {
+      return null;
+    }
+
+    long bytes = (long) width * height * TextureUploader.MAX_BYTES_PER_PIXEL;
+    if (bytes > Integer.MAX_VALUE) {
+      return null;
+    }
+
+    PixelBuffer pixelBuffer = freePixelBuffers.poll();
+    if (pixelBuffer == null) {
+      pixelBuffer = new PixelBuffer();
+      pixelBuffer.id = GL15.glGenBuffers();
+    }
+
+    GLStateCache state = GLStateCache.getGLStateCache();
+    state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, pixelBuffer.id);
+    if (pixelBuffer.capacity < bytes) {
+      pixelBuffer.capacity = (int) bytes;
+      GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, pixelBuffer.capacity, GL15.GL_STREAM_DRAW);
+    }
+
+    // the old contents aren't needed and an earlier transfer may still read them
+    int access = GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT | GL30.GL_MAP_UNSYNCHRONIZED_BIT;
+    pixelBuffer.mapped = GL30.glMapBufferRange(GL21.GL_PIXEL_UNPACK_BUFFER, 0, pixelBuffer.capacity, access, null);
+    state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+
+    if (pixelBuffer.mapped == null) {
+      deletePixelBuffer(pixelBuffer);
+      return null;
+    }
+
+    return pixelBuffer;
+  }
+
+  /**
+   * Unmaps the job's pixel buffer if it's still mapped and puts it back in the
+   * pool.
+   */
+  protected void releasePixelBuffer(Job job) {
+    if (job.pixelBuffer != null) {
+      mappedJobs.remove(job);
+      unmapPixelBuffer(job.pixelBuffer);
+      recyclePixelBuffer(job.pixelBuffer);
+      job.pixelBuffer = null;
+    }
+  }
+
+  protected void unmapPixelBuffer(PixelBuffer pixelBuffer) {
+    if (pixelBuffer.mapped != null) {
+      GLStateCache state = GLStateCache.getGLStateCache();
+      state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, pixelBuffer.id);
+      GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+      state.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+      pixelBuffer.mapped = null;
+    }
+  }
+
+  protected void recyclePixelBuffer(PixelBuffer pixelBuffer) {
+    if (pixelBuffer.capacity > MAX_FREE_UPLOADER_BYTES || freePixelBuffers.size() >= MAX_FREE_UPLOADERS) {
+      deletePixelBuffer(pixelBuffer);
+    } else {
+      freePixelBuffers.push(pixelBuffer);
+    }
+  }
+
+  protected void deletePixelBuffer(PixelBuffer pixelBuffer) {
+    // deleting a mapped buffer unmaps it
+    GL15.glDeleteBuffers(pixelBuffer.id);
+    GLStateCache.getGLStateCache().bufferDeleted(pixelBuffer.id);
+    pixelBuffer.mapped = null;
+  }
+
+  protected TextureUploader acquireUploader() {
+    synchronized (freeUploaders) {
+      TextureUploader uploader = freeUploaders.poll();
+      return uploader == null ? new TextureUploader() : uploader;
+    }
+  }
+
+  protected void releaseUploader(TextureUploader uploader) {
+    if (uploader.getCapacity() > MAX_FREE_UPLOADER_BYTES) {
+      return;
+    }
+
+    synchronized (freeUploaders) {
+      if (freeUploaders.size() < MAX_FREE_UPLOADERS) {
+        freeUploaders.push(uploader);
+      }
+    }
+  }
+
+  /**
+   * A pixel buffer object and, while a worker stages into it, its mapped
+   * storage.
+   */
+  protected static class PixelBuffer {
+    int id;
+    int capacity;
+    volatile ByteBuffer mapped;
+  }
+
+  protected class Job implements Runnable {
+    private Image image;
+    final WeakReference<Image> key;
+
+    volatile ImageObserver observer;
+    volatile boolean done;
+    boolean error;
+
+    /**
+     * Set on the GL thread when the pixel buffer is about to be deleted.
+     * Staging into it holds the job's lock.
+     */
+    boolean cancelled;
+
+    PixelBuffer pixelBuffer;
+    boolean stagedInPixelBuffer;
+
+    TextureUploader uploader;
+    int width;
+    int height;
+    boolean alpha;
+
+    Job(Image image, ImageObserver observer) {
+      this.image = image;
+      this.observer = observer;
+      key = new WeakReference<Image>(image);
+    }
+
+    @Override
+    public void run() {
+      try {
+        BufferedImage bufferedImage = helper.asBufferedImage(image);
+        if (bufferedImage != null) {
+          width = bufferedImage.getWidth();
+          height = bufferedImage.getHeight();
+          alpha = bufferedImage.getColorModel().hasAlpha();
+
+          if (!stageInPixelBuffer(bufferedImage)) {
+            TextureUploader staged = acquireUploader();
+            try {
+              staged.stage(bufferedImage, 0, 0, width, height, alpha);
+            } catch (RuntimeException e) {
+              releaseUploader(staged);
+              throw e;
+            }
+
+            uploader = staged;
+          }
+        }
+      } catch (RuntimeException e) {
+        error = true;
+        LOGGER.log(Level.WARNING, "Could not prepare image, it won't be tried again", e);
+      } finally {
+        Image img = image;
+
+        // don't keep the image from being collected once we're done
+        image = null;
+        done = true;
+
+        ImageObserver obs = observer;
+        if (obs != null) {
+          if (uploader != null) {
+            obs.imageUpdate(img, ImageObserver.ALLBITS, 0, 0, width, height);
+          } else if (error) {
+            obs.imageUpdate(img, ImageObserver.ERROR | ImageObserver.ABORT, -1, -1, -1, -1);
+          } else {
+            // not loaded yet, the image tells the observer when it is
+            img.getWidth(obs);
+            img.getHeight(obs);
+          }
+        }
+      }
+    }
+
+    private synchronized boolean stageInPixelBuffer(BufferedImage bufferedImage) {
+      // the pixel buffer field is only changed on the GL thread once we're done
+      PixelBuffer pb = pixelBuffer;
+      ByteBuffer mapped = pb == null ? null : pb.mapped;
+      if (cancelled || mapped == null ||
+          (long) width * height * TextureUploader.MAX_BYTES_PER_PIXEL > mapped.capacity()) {
+        return false;
+      }
+
+      TextureUploader staged = new TextureUploader(mapped);
+      staged.stage(bufferedImage, 0, 0, width, height, alpha);
+      stagedInPixelBuffer = true;
+      uploader = staged;
+      return true;
+    }
+  }
+}
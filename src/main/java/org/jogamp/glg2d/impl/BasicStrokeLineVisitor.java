@@ -20,19 +20,34 @@ import static java.lang.Math.ceil;
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
 import static java.lang.Math.sqrt;
-import static org.jogamp.glg2d.impl.GLG2DNotImplemented.notImplemented;
 
 import java.awt.BasicStroke;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 
+import org.jogamp.glg2d.VertexArena;
 import org.jogamp.glg2d.VertexBuffer;
 
-import org.lwjgl.BufferUtils;
 
 /**
- * Draws a line, as outlined by a {@link BasicStroke}. The current
- * implementation supports everything except dashes. This class draws a series
+ * Draws a line, as outlined by a {@link BasicStroke}. This class draws a series
  * of quads for each line segment, joins corners and endpoints as appropriate.
+ * 
+ * <p>
+ * Long polylines go through here one vertex at a time, so the points are kept
+ * in scalar fields and the corner and cap math only uses locals. Nothing is
+ * allocated per vertex.
+ * </p>
+ * 
+ * <p>
+ * Dashes are cut out of the path while walking it, following the dash array
+ * and phase like {@code BasicStroke.createStrokedShape()}. The pattern starts
+ * over at each {@code moveTo}. Each dash is stroked like a short line, with
+ * joins inside it and caps on both ends, and a zero-length dash is just its two
+ * caps. If a closed path ends in a dash that runs into the first one, the two
+ * are joined. All dashes of one shape go into one triangle strip, connected by
+ * degenerate triangles, and are drawn together in {@link #endPoly()}.
+ * </p>
  */
 public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
   protected static float THETA_STEP = 0.5f;
@@ -44,13 +59,59 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
   protected float lineOffset;
   protected float miterLimit;
 
-  protected float[] lastPoint;
-  protected float[] secondLastPoint;
-  protected float[] firstPoint;
-  protected float[] secondPoint;
+  /**
+   * The number of distinct points seen since the last {@code moveTo}, counting
+   * up to 2. With 1 only the first point is set, with 2 all of them are.
+   */
+  protected int numPoints;
+
+  protected float firstX, firstY;
+  protected float secondX, secondY;
+  protected float secondLastX, secondLastY;
+  protected float lastX, lastY;
 
   protected VertexBuffer vBuffer = new VertexBuffer(1024);
-  protected FloatBuffer tmpBuffer = BufferUtils.createFloatBuffer(1024);
+  protected FloatBuffer tmpBuffer = VertexArena.getDefault().acquire(1024);
+
+  protected BasicStroke stroke;
+
+  /**
+   * The dash array, or {@code null} for solid lines.
+   */
+  protected float[] dash;
+  protected float dashPhase;
+
+  /**
+   * The length of the dash pattern, twice the sum of an odd-length dash array.
+   */
+  protected float dashCycle;
+
+  /**
+   * Where we are in the dash pattern.
+   */
+  protected int dashIndex;
+  protected float dashRemaining;
+  protected boolean dashOn;
+
+  protected boolean inSubpath;
+  protected float subpathX, subpathY;
+  protected float penX, penY;
+  protected float penDirX, penDirY;
+
+  /**
+   * The points of the first dash if the subpath starts with one. It's only
+   * stroked at the end of the subpath, so it can be joined to the last dash if
+   * the subpath is closed.
+   */
+  protected float[] firstDash = new float[64];
+  protected int firstDashSize;
+  protected boolean recordingFirstDash;
+  protected float firstDashDirX, firstDashDirY;
+
+  /**
+   * The finished dashes, drawn together at the end of the shape.
+   */
+  protected VertexBuffer dashBuffer = new VertexBuffer(1024);
 
   @Override
   public void setStroke(BasicStroke stroke) {
@@ -59,66 +120,115 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
     endCap = stroke.getEndCap();
     miterLimit = stroke.getMiterLimit();
 
-    // TODO
-    if (stroke.getDashArray() != null) {
-      notImplemented("BasicStroke with dash array");
+    // getDashArray() copies, only do it when the stroke changes
+    if (stroke != this.stroke) {
+      this.stroke = stroke;
+      dash = stroke.getDashArray();
+      dashPhase = stroke.getDashPhase();
+
+      if (dash != null) {
+        dashCycle = 0;
+        for (int i = 0; i < dash.length; i++) {
+          dashCycle += dash[i];
+        }
+
+        if (dash.length % 2 == 1) {
+          dashCycle *= 2;
+        }
+      }
     }
   }
 
   @Override
   public void beginPoly(int windingRule) {
     clear();
+
+    dashBuffer.clear();
+    inSubpath = false;
+    recordingFirstDash = false;
+    firstDashSize = 0;
   }
 
   @Override
   public void endPoly() {
-    finishAndDrawLine();
+    if (dash == null) {
+      finishAndDrawLine();
+    } else {
+      endDashedSubpath();
+      drawDashes();
+    }
   }
 
   @Override
   public void moveTo(float[] vertex) {
+    if (dash == null) {
+      moveTo(vertex[0], vertex[1]);
+    } else {
+      dashMoveTo(vertex[0], vertex[1]);
+    }
+  }
+
+  protected void moveTo(float x, float y) {
     finishAndDrawLine();
 
-    lastPoint = new float[] { vertex[0], vertex[1] };
-    firstPoint = lastPoint;
+    firstX = lastX = x;
+    firstY = lastY = y;
+    numPoints = 1;
   }
 
   @Override
   public void lineTo(float[] vertex) {
-    // ignore 0-length lines
-    if (lastPoint[0] == vertex[0] && lastPoint[1] == vertex[1]) {
-      return;
+    if (dash == null) {
+      lineTo(vertex[0], vertex[1]);
+    } else {
+      dashLineTo(vertex[0], vertex[1]);
     }
+  }
 
-    float[] vClone = new float[] { vertex[0], vertex[1] };
-    if (secondPoint == null) {
-      secondPoint = vClone;
+  protected void lineTo(float x, float y) {
+    // ignore 0-length lines
+    if (lastX == x && lastY == y) {
+      return;
     }
 
-    if (secondLastPoint != null) {
-      applyCorner(vertex);
+    if (numPoints < 2) {
+      secondX = x;
+      secondY = y;
+    } else {
+      applyCorner(x, y);
     }
 
-    secondLastPoint = lastPoint;
-    lastPoint = vClone;
+    secondLastX = lastX;
+    secondLastY = lastY;
+    lastX = x;
+    lastY = y;
+    numPoints = 2;
   }
 
   @Override
   public void closeLine() {
+    if (dash == null) {
+      closeSolidLine();
+    } else {
+      dashCloseLine();
+    }
+  }
+
+  protected void closeSolidLine() {
     /*
      * Our first point we stroked is around the second point we hit. So we add
      * the first 2 points so we do all the corners. Then we end on the last two
      * points to finish the last two triangles.
      */
-    if (firstPoint != null && secondPoint != null) {
-      lineTo(firstPoint);
-      lineTo(secondPoint);
+    if (numPoints >= 2) {
+      lineTo(firstX, firstY);
+      lineTo(secondX, secondY);
 
       FloatBuffer buf = vBuffer.getBuffer();
       addVertex(buf.get(0), buf.get(1));
       addVertex(buf.get(2), buf.get(3));
 
-      drawBuffer();
+      drawLine();
     }
 
     clear();
@@ -126,17 +236,17 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
 
   protected void clear() {
     vBuffer.clear();
-    firstPoint = secondPoint = null;
-    lastPoint = secondLastPoint = null;
+    numPoints = 0;
   }
 
   protected void finishAndDrawLine() {
-    if (firstPoint != null && secondPoint != null) {
-      applyEndCap(secondLastPoint, lastPoint, false);
+    if (numPoints >= 2) {
+      applyEndCap(secondLastX, secondLastY, lastX, lastY, false);
 
       FloatBuffer buf = vBuffer.getBuffer();
-      if (tmpBuffer.capacity() < buf.position()) {
-        tmpBuffer = BufferUtils.createFloatBuffer(buf.position());
+      if (tmpBuffer == null || tmpBuffer.capacity() < buf.position()) {
+        VertexArena.getDefault().release(tmpBuffer);
+        tmpBuffer = VertexArena.getDefault().acquire(buf.position());
       }
 
       tmpBuffer.clear();
@@ -146,15 +256,267 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
       tmpBuffer.flip();
 
       buf.clear();
-      applyEndCap(firstPoint, secondPoint, true);
+      applyEndCap(firstX, firstY, secondX, secondY, true);
       buf.put(tmpBuffer);
 
-      drawBuffer();
+      drawLine();
     }
 
     clear();
   }
 
+  /**
+   * Draws the finished line in {@link #vBuffer}, or adds it to the other dashes
+   * of the shape.
+   */
+  protected void drawLine() {
+    if (dash == null) {
+      drawBuffer();
+      return;
+    }
+
+    FloatBuffer strip = vBuffer.getBuffer();
+    if (strip.position() == 0) {
+      return;
+    }
+
+    FloatBuffer dashes = dashBuffer.getBuffer();
+    int pos = dashes.position();
+    if (pos > 0) {
+      // degenerate triangles from the last dash to this one
+      dashBuffer.addVertex(dashes.get(pos - 2), dashes.get(pos - 1));
+      dashBuffer.addVertex(strip.get(0), strip.get(1));
+    }
+
+    strip.flip();
+    dashBuffer.addVertices(strip);
+    vBuffer.clear();
+  }
+
+  /**
+   * Draws all dashes of the shape as one strip.
+   */
+  protected void drawDashes() {
+    if (dashBuffer.getBuffer().position() > 0) {
+      VertexBuffer solid = vBuffer;
+      vBuffer = dashBuffer;
+      drawBuffer();
+      vBuffer = solid;
+    }
+
+    dashBuffer.clear();
+  }
+
+  protected void dashMoveTo(float x, float y) {
+    endDashedSubpath();
+
+    dashIndex = 0;
+    dashOn = true;
+    dashRemaining = dash[0];
+
+    float phase = dashPhase % dashCycle;
+    if (phase > 0) {
+      while (phase >= dashRemaining) {
+        phase -= dashRemaining;
+        nextDash();
+      }
+
+      dashRemaining -= phase;
+    }
+
+    inSubpath = true;
+    subpathX = penX = x;
+    subpathY = penY = y;
+    penDirX = 1;
+    penDirY = 0;
+
+    firstDashSize = 0;
+    recordingFirstDash = dashOn;
+    if (dashOn) {
+      recordFirstDash(x, y);
+    }
+  }
+
+  protected void dashLineTo(float x, float y) {
+    if (!inSubpath) {
+      dashMoveTo(x, y);
+      return;
+    }
+
+    float dx = x - penX;
+    float dy = y - penY;
+    float len = length(dx, dy);
+    if (len == 0) {
+      return;
+    }
+
+    penDirX = dx / len;
+    penDirY = dy / len;
+
+    // cut the segment at each end of a dash or gap
+    float t = 0;
+    int stalled = 0;
+    while (len - t > dashRemaining) {
+      float next = t + dashRemaining;
+      if (next > t) {
+        stalled = 0;
+      } else if (++stalled > dash.length) {
+        // the pattern is too fine to get anywhere in float precision
+        dashRemaining = len - t;
+        break;
+      }
+
+      t = next;
+      float x1 = penX + dx * (t / len);
+      float y1 = penY + dy * (t / len);
+
+      if (dashOn) {
+        dashPoint(x1, y1);
+        endDash(penDirX, penDirY);
+      } else {
+        startDash(x1, y1);
+      }
+
+      nextDash();
+    }
+
+    dashRemaining -= len - t;
+    if (dashOn) {
+      dashPoint(x, y);
+    }
+
+    penX = x;
+    penY = y;
+  }
+
+  protected void dashCloseLine() {
+    if (!inSubpath) {
+      return;
+    }
+
+    dashLineTo(subpathX, subpathY);
+
+    if (recordingFirstDash) {
+      // one dash goes all the way around, that's just a closed line
+      recordingFirstDash = false;
+      replayFirstDash();
+      closeSolidLine();
+      firstDashSize = 0;
+    } else if (dashOn && firstDashSize > 0) {
+      // the last dash runs into the first one
+      for (int i = 0; i < firstDashSize; i += 2) {
+        lineTo(firstDash[i], firstDash[i + 1]);
+      }
+
+      finishDash(firstDashDirX, firstDashDirY);
+      firstDashSize = 0;
+    }
+
+    endDashedSubpath();
+  }
+
+  /**
+   * Strokes the dash we're in and the first dash, if they haven't been yet.
+   */
+  protected void endDashedSubpath() {
+    if (!inSubpath) {
+      return;
+    }
+
+    if (recordingFirstDash) {
+      // the whole subpath is one dash
+      recordingFirstDash = false;
+      replayFirstDash();
+      finishDash(penDirX, penDirY);
+    } else {
+      if (dashOn) {
+        finishDash(penDirX, penDirY);
+      }
+
+      if (firstDashSize > 0) {
+        replayFirstDash();
+        finishDash(firstDashDirX, firstDashDirY);
+      }
+    }
+
+    firstDashSize = 0;
+    inSubpath = false;
+  }
+
+  protected void nextDash() {
+    dashIndex = (dashIndex + 1) % dash.length;
+    dashRemaining = dash[dashIndex];
+    dashOn = !dashOn;
+  }
+
+  protected void startDash(float x, float y) {
+    moveTo(x, y);
+  }
+
+  protected void dashPoint(float x, float y) {
+    if (recordingFirstDash) {
+      recordFirstDash(x, y);
+    } else {
+      lineTo(x, y);
+    }
+  }
+
+  /**
+   * Ends the dash at the current point. {@code (dirX, dirY)} is the direction
+   * of the path there, which a zero-length dash needs for its caps.
+   */
+  protected void endDash(float dirX, float dirY) {
+    if (recordingFirstDash) {
+      recordingFirstDash = false;
+      firstDashDirX = dirX;
+      firstDashDirY = dirY;
+    } else {
+      finishDash(dirX, dirY);
+    }
+  }
+
+  protected void finishDash(float dirX, float dirY) {
+    if (numPoints == 1) {
+      drawDot(lastX, lastY, dirX, dirY);
+    }
+
+    finishAndDrawLine();
+  }
+
+  /**
+   * Draws a zero-length dash, which only has its caps.
+   */
+  protected void drawDot(float x, float y, float dirX, float dirY) {
+    if (endCap == BasicStroke.CAP_BUTT) {
+      return;
+    }
+
+    vBuffer.clear();
+    applyEndCap(x, y, x + dirX, y + dirY, true);
+    applyEndCap(x - dirX, y - dirY, x, y, false);
+    drawLine();
+  }
+
+  protected void recordFirstDash(float x, float y) {
+    if (firstDashSize > 0 && firstDash[firstDashSize - 2] == x && firstDash[firstDashSize - 1] == y) {
+      return;
+    }
+
+    if (firstDashSize + 2 > firstDash.length) {
+      firstDash = Arrays.copyOf(firstDash, firstDash.length * 2);
+    }
+
+    firstDash[firstDashSize++] = x;
+    firstDash[firstDashSize++] = y;
+  }
+
+  protected void replayFirstDash() {
+    moveTo(firstDash[0], firstDash[1]);
+    for (int i = 2; i < firstDashSize; i += 2) {
+      lineTo(firstDash[i], firstDash[i + 1]);
+    }
+  }
+
   @Override
   public void quadTo(float[] previousVertex, float[] control) {
     int originalJoin = lineJoin;
@@ -175,18 +537,22 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
     lineJoin = originalJoin;
   }
 
-  protected void applyCorner(float[] vertex) {
+  /**
+   * Joins the segment from the second last to the last point with the one from
+   * the last point to {@code (x, y)}.
+   */
+  protected void applyCorner(float x, float y) {
     switch (lineJoin) {
     case BasicStroke.JOIN_BEVEL:
-      drawCornerBevel(secondLastPoint, lastPoint, vertex);
+      drawCornerBevel(secondLastX, secondLastY, lastX, lastY, x, y);
       break;
 
     case BasicStroke.JOIN_ROUND:
-      drawCornerRound(secondLastPoint, lastPoint, vertex);
+      drawCornerRound(secondLastX, secondLastY, lastX, lastY, x, y);
       break;
 
     case BasicStroke.JOIN_MITER:
-      drawCornerMiter(secondLastPoint, lastPoint, vertex);
+      drawCornerMiter(secondLastX, secondLastY, lastX, lastY, x, y);
       break;
 
     default:
@@ -194,222 +560,190 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
     }
   }
 
-  protected void drawCornerRound(float[] secondLastPoint, float[] lastPoint, float[] point) {
-    float[] offset1 = lineOffset(secondLastPoint, lastPoint);
-    float[] offset2 = lineOffset(lastPoint, point);
-
-    float[] v1 = subtract(lastPoint, secondLastPoint);
-    normalize(v1);
-    float[] v2 = subtract(lastPoint, point);
-    normalize(v2);
-
-    float[] rightPt1 = add(lastPoint, offset1);
-    float[] rightPt2 = add(lastPoint, offset2);
-    float[] leftPt1 = subtract(lastPoint, offset1);
-    float[] leftPt2 = subtract(lastPoint, offset2);
+  /*
+   * The corners all start the same way. For the segments (x0, y0) to (x1, y1)
+   * and (x1, y1) to (x2, y2) we need the offsets to the right side of each
+   * segment, (o1x, o1y) and (o2x, o2y), and the unit vectors pointing back
+   * into the corner, (v1x, v1y) and (v2x, v2y). The right and left points are
+   * the corner point moved by the offsets.
+   */
 
-    float alpha = getIntersectionAlpha(rightPt1, v1, rightPt2, v2);
+  protected void drawCornerRound(float x0, float y0, float x1, float y1, float x2, float y2) {
+    float scale1 = lineOffset / length(x1 - x0, y1 - y0);
+    float o1x = (y1 - y0) * scale1;
+    float o1y = -(x1 - x0) * scale1;
+    float scale2 = lineOffset / length(x2 - x1, y2 - y1);
+    float o2x = (y2 - y1) * scale2;
+    float o2y = -(x2 - x1) * scale2;
+
+    float norm = length(x1 - x0, y1 - y0);
+    float v1x = (x1 - x0) / norm;
+    float v1y = (y1 - y0) / norm;
+    norm = length(x1 - x2, y1 - y2);
+    float v2x = (x1 - x2) / norm;
+    float v2y = (y1 - y2) / norm;
+
+    float rightX1 = o1x + x1;
+    float rightY1 = o1y + y1;
+    float rightX2 = o2x + x1;
+    float rightY2 = o2y + y1;
+    float leftX1 = x1 - o1x;
+    float leftY1 = y1 - o1y;
+    float leftX2 = x1 - o2x;
+    float leftY2 = y1 - o2y;
+
+    float alpha = getIntersectionAlpha(rightX1, rightY1, v1x, v1y, rightX2, rightY2, v2x, v2y);
 
     // get the outside angle (our vectors v1, v2 are unit vectors)
-    float theta = (float) (Math.PI - acos(v1[0] * v2[0] + v1[1] * v2[1]));
+    float theta = (float) (Math.PI - acos(v1x * v2x + v1y * v2y));
 
     // if inside corner is right side
     if (alpha <= 0) {
-      float[] rightInside = addScaled(rightPt1, v1, alpha);
+      float insideX = rightX1 + v1x * alpha;
+      float insideY = rightY1 + v1y * alpha;
 
-      addVertex(rightInside[0], rightInside[1]);
-      addVertex(leftPt1[0], leftPt1[1]);
+      addVertex(insideX, insideY);
+      addVertex(leftX1, leftY1);
 
       int max = (int) ceil(theta / THETA_STEP);
       // rotate the other way
       for (int i = 0; i < max; i++) {
-        float newX = COS_STEP * offset1[0] + SIN_STEP * offset1[1];
-        offset1[1] = -SIN_STEP * offset1[0] + COS_STEP * offset1[1];
-        offset1[0] = newX;
+        float newX = COS_STEP * o1x + SIN_STEP * o1y;
+        o1y = -SIN_STEP * o1x + COS_STEP * o1y;
+        o1x = newX;
 
-        addVertex(rightInside[0], rightInside[1]);
-        addVertex(lastPoint[0] - offset1[0], lastPoint[1] - offset1[1]);
+        addVertex(insideX, insideY);
+        addVertex(x1 - o1x, y1 - o1y);
       }
 
-      addVertex(rightInside[0], rightInside[1]);
-      addVertex(leftPt2[0], leftPt2[1]);
+      addVertex(insideX, insideY);
+      addVertex(leftX2, leftY2);
     } else {
       alpha = -alpha;
-      float[] leftInside = addScaled(leftPt1, v1, alpha);
+      float insideX = leftX1 + v1x * alpha;
+      float insideY = leftY1 + v1y * alpha;
 
-      addVertex(rightPt1[0], rightPt1[1]);
-      addVertex(leftInside[0], leftInside[1]);
+      addVertex(rightX1, rightY1);
+      addVertex(insideX, insideY);
 
       int max = (int) ceil(theta / THETA_STEP);
       for (int i = 0; i < max; i++) {
-        float newX = COS_STEP * offset1[0] - SIN_STEP * offset1[1];
-        offset1[1] = SIN_STEP * offset1[0] + COS_STEP * offset1[1];
-        offset1[0] = newX;
+        float newX = COS_STEP * o1x - SIN_STEP * o1y;
+        o1y = SIN_STEP * o1x + COS_STEP * o1y;
+        o1x = newX;
 
-        addVertex(lastPoint[0] + offset1[0], lastPoint[1] + offset1[1]);
-        addVertex(leftInside[0], leftInside[1]);
+        addVertex(x1 + o1x, y1 + o1y);
+        addVertex(insideX, insideY);
       }
 
-      addVertex(rightPt2[0], rightPt2[1]);
-      addVertex(leftInside[0], leftInside[1]);
+      addVertex(rightX2, rightY2);
+      addVertex(insideX, insideY);
     }
   }
 
-  protected void drawCornerBevel(float[] secondLastPoint, float[] lastPoint, float[] point) {
-    float[] offset1 = lineOffset(secondLastPoint, lastPoint);
-    float[] offset2 = lineOffset(lastPoint, point);
-
-    float[] v1 = subtract(lastPoint, secondLastPoint);
-    normalize(v1);
-    float[] v2 = subtract(lastPoint, point);
-    normalize(v2);
-
-    float[] rightPt1 = add(lastPoint, offset1);
-    float[] rightPt2 = add(lastPoint, offset2);
-    float[] leftPt1 = subtract(lastPoint, offset1);
-    float[] leftPt2 = subtract(lastPoint, offset2);
-
-    float alpha = getIntersectionAlpha(rightPt1, v1, rightPt2, v2);
+  protected void drawCornerBevel(float x0, float y0, float x1, float y1, float x2, float y2) {
+    float scale1 = lineOffset / length(x1 - x0, y1 - y0);
+    float o1x = (y1 - y0) * scale1;
+    float o1y = -(x1 - x0) * scale1;
+    float scale2 = lineOffset / length(x2 - x1, y2 - y1);
+    float o2x = (y2 - y1) * scale2;
+    float o2y = -(x2 - x1) * scale2;
+
+    float norm = length(x1 - x0, y1 - y0);
+    float v1x = (x1 - x0) / norm;
+    float v1y = (y1 - y0) / norm;
+    norm = length(x1 - x2, y1 - y2);
+    float v2x = (x1 - x2) / norm;
+    float v2y = (y1 - y2) / norm;
+
+    float rightX1 = o1x + x1;
+    float rightY1 = o1y + y1;
+    float rightX2 = o2x + x1;
+    float rightY2 = o2y + y1;
+    float leftX1 = x1 - o1x;
+    float leftY1 = y1 - o1y;
+
+    float alpha = getIntersectionAlpha(rightX1, rightY1, v1x, v1y, rightX2, rightY2, v2x, v2y);
 
     // if inside corner is right side
     if (alpha <= 0) {
-      float[] rightInside = addScaled(rightPt1, v1, alpha);
+      float insideX = rightX1 + v1x * alpha;
+      float insideY = rightY1 + v1y * alpha;
 
-      addVertex(rightInside[0], rightInside[1]);
-      addVertex(leftPt1[0], leftPt1[1]);
-      addVertex(rightInside[0], rightInside[1]);
-      addVertex(leftPt2[0], leftPt2[1]);
+      addVertex(insideX, insideY);
+      addVertex(leftX1, leftY1);
+      addVertex(insideX, insideY);
+      addVertex(x1 - o2x, y1 - o2y);
     } else {
       // carry the math through and this turns out
       alpha = -alpha;
-      float[] leftInside = addScaled(leftPt1, v1, alpha);
+      float insideX = leftX1 + v1x * alpha;
+      float insideY = leftY1 + v1y * alpha;
 
-      addVertex(rightPt1[0], rightPt1[1]);
-      addVertex(leftInside[0], leftInside[1]);
-      addVertex(rightPt2[0], rightPt2[1]);
-      addVertex(leftInside[0], leftInside[1]);
+      addVertex(rightX1, rightY1);
+      addVertex(insideX, insideY);
+      addVertex(rightX2, rightY2);
+      addVertex(insideX, insideY);
     }
   }
 
-  protected void drawCornerMiter(float[] secondLastPoint, float[] lastPoint, float[] point) {
-    float[] offset1 = lineOffset(secondLastPoint, lastPoint);
-    float[] offset2 = lineOffset(lastPoint, point);
+  protected void drawCornerMiter(float x0, float y0, float x1, float y1, float x2, float y2) {
+    float scale1 = lineOffset / length(x1 - x0, y1 - y0);
+    float o1x = (y1 - y0) * scale1;
+    float o1y = -(x1 - x0) * scale1;
+    float scale2 = lineOffset / length(x2 - x1, y2 - y1);
+    float o2x = (y2 - y1) * scale2;
+    float o2y = -(x2 - x1) * scale2;
 
-    float[] v1 = subtract(lastPoint, secondLastPoint);
-    normalize(v1);
-    float[] v2 = subtract(lastPoint, point);
-    normalize(v2);
+    float norm = length(x1 - x0, y1 - y0);
+    float v1x = (x1 - x0) / norm;
+    float v1y = (y1 - y0) / norm;
+    norm = length(x1 - x2, y1 - y2);
+    float v2x = (x1 - x2) / norm;
+    float v2y = (y1 - y2) / norm;
 
-    float[] rightPt1 = add(lastPoint, offset1);
-    float[] rightPt2 = add(lastPoint, offset2);
-    float[] leftPt1 = subtract(lastPoint, offset1);
+    float rightX1 = o1x + x1;
+    float rightY1 = o1y + y1;
 
-    float alpha = getIntersectionAlpha(rightPt1, v1, rightPt2, v2);
-    float[] rightCorner = addScaled(rightPt1, v1, alpha);
+    float alpha = getIntersectionAlpha(rightX1, rightY1, v1x, v1y, o2x + x1, o2y + y1, v2x, v2y);
+    float rightCornerX = rightX1 + v1x * alpha;
+    float rightCornerY = rightY1 + v1y * alpha;
 
     // other side is just the negative alpha
     alpha = -alpha;
-    float[] leftCorner = addScaled(leftPt1, v1, alpha);
+    float leftCornerX = (x1 - o1x) + v1x * alpha;
+    float leftCornerY = (y1 - o1y) + v1y * alpha;
 
     // If we exceed the miter limit, draw beveled corner
-    float dist = distance(rightCorner, leftCorner);
+    float dist = distance(rightCornerX, rightCornerY, leftCornerX, leftCornerY);
 
     if (dist > miterLimit * lineOffset * 2) {
-      drawCornerBevel(secondLastPoint, lastPoint, point);
+      drawCornerBevel(x0, y0, x1, y1, x2, y2);
     } else {
-      addVertex(rightCorner[0], rightCorner[1]);
-      addVertex(leftCorner[0], leftCorner[1]);
+      addVertex(rightCornerX, rightCornerY);
+      addVertex(leftCornerX, leftCornerY);
     }
   }
 
-  protected float distance(float[] pt1, float[] pt2) {
-    double diffX = pt1[0] - pt2[0];
-    double diffY = pt1[1] - pt2[1];
+  protected float distance(float x1, float y1, float x2, float y2) {
+    double diffX = x1 - x2;
+    double diffY = y1 - y2;
     double distSq = diffX * diffX + diffY * diffY;
     return (float) sqrt(distSq);
   }
 
-  protected float[] addScaled(float[] pt, float[] v, float alpha) {
-    return new float[] { pt[0] + v[0] * alpha, pt[1] + v[1] * alpha };
-  }
-
-  protected void normalize(float[] v) {
-    float norm = (float) sqrt(v[0] * v[0] + v[1] * v[1]);
-    v[0] /= norm;
-    v[1] /= norm;
-  }
-
-  protected float[] subtract(float[] pt1, float[] pt2) {
-    return new float[] { pt1[0] - pt2[0], pt1[1] - pt2[1] };
-  }
-
-  protected float[] add(float[] pt1, float[] pt2) {
-    return new float[] { pt2[0] + pt1[0], pt2[1] + pt1[1] };
-  }
-
-  protected float getIntersectionAlpha(float[] pt1, float[] v1, float[] pt2, float[] v2) {
-    float t = (pt2[0] - pt1[0]) * v2[1] - (pt2[1] - pt1[1]) * v2[0];
-    t /= v1[0] * v2[1] - v1[1] * v2[0];
-    return t;
-  }
-
-  protected float[] lineOffset(float[] linePoint1, float[] linePoint2) {
-    float[] vec = new float[2];
-    vec[0] = linePoint2[0] - linePoint1[0];
-    vec[1] = linePoint2[1] - linePoint1[1];
-
-    float norm = vec[0] * vec[0] + vec[1] * vec[1];
-    norm = (float) sqrt(norm);
-
-    float scale = lineOffset / norm;
-    float[] offset = new float[2];
-    offset[0] = vec[1] * scale;
-    offset[1] = -vec[0] * scale;
-    return offset;
-  }
-
-  protected float[] lineCorners(float[] linePoint1, float[] linePoint2, float[] vertex, float offset) {
-    float[] translated = new float[2];
-    translated[0] = linePoint2[0] - linePoint1[0];
-    translated[1] = linePoint2[1] - linePoint1[1];
-
-    float norm = translated[0] * translated[0] + translated[1] * translated[1];
-    norm = (float) sqrt(norm);
-
-    float scale = offset / norm;
-    float[] corners = new float[4];
-    corners[0] = translated[1] * scale + vertex[0];
-    corners[1] = -translated[0] * scale + vertex[1];
-    corners[2] = -translated[1] * scale + vertex[0];
-    corners[3] = translated[0] * scale + vertex[1];
-    return corners;
-  }
-
   /**
-   * Finds the intersection of two lines. This method was written to reduce the
-   * number of array creations and so is quite dense. However, it is easy to
-   * understand the theory behind the computation. I found this at <a
+   * Finds where the line through {@code (x2, y2)} in direction
+   * {@code (vx2, vy2)} crosses the line through {@code (x1, y1)} in direction
+   * {@code (vx1, vy1)}. This returns {@code t} such that the intersection is
+   * at {@code (x1, y1) + t * (vx1, vy1)}. It is easy to understand the theory
+   * behind the computation. I found this at <a
    * href="http://mathforum.org/library/drmath/view/62814.html"
    * >http://mathforum.org/library/drmath/view/62814.html</a>.
    * 
    * <p>
-   * We have two lines, specified by three points (P1, P2, P3). They share the
-   * second point. This gives us an easy way to represent the line in parametric
-   * form. For example the first line has the form
-   * 
-   * <pre>
-   * &lt;x, y&gt; = &lt;P1<sub>x</sub>, P1<sub>y</sub>&gt; + t * &lt;P2<sub>x</sub>-P1<sub>x</sub>, P2<sub>y</sub>-P1<sub>y</sub>&gt;
-   * </pre>
-   * 
-   * </p>
-   * <p>
-   * <code>&lt;P1<sub>x</sub>, P1<sub>y</sub>&gt;</code> is a point on the line,
-   * while
-   * <code>&lt;P2<sub>x</sub>-P1<sub>x</sub>, P2<sub>y</sub>-P1<sub>y</sub>&gt;</code>
-   * is the direction of the line. The method for solving for the intersection
-   * of these two parametric lines is straightforward. Let <code>o1</code> and
-   * <code>o2</code> be the points on the lines and <code>v1</code> and
-   * <code>v2</code> be the two direction vectors. Now we have
+   * With <code>o1</code> and <code>o2</code> the points on the lines and
+   * <code>v1</code> and <code>v2</code> the two direction vectors we have
    * 
    * <pre>
    * p1 = o1 + t * v1
@@ -425,147 +759,129 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
    * t * (v1 x v2) = (o2 - o1) x v2             ; to get rid of s term
    * </pre>
    * 
-   * Solving for <code>t</code> is easy since we only have the z component. Put
-   * <code>t</code> back into the first equation gives us our point of
-   * intersection.
-   * </p>
-   * <p>
-   * This method solves for <code>t</code>, but not directly for lines
-   * intersecting the point parameters. Since we're trying to use this for the
-   * miter corners, we want to solve for the intersections of the two outside
-   * edges of the lines that go from <code>secondLastPoint</code> to
-   * <code>lastPoint</code> and from <code>lastPoint</code> to
-   * <code>point</code>.
+   * Solving for <code>t</code> is easy since we only have the z component.
    * </p>
    */
-  protected float[] getMiterIntersections(float[] secondLastPoint, float[] lastPoint, float[] point) {
-    float[] o1 = lineCorners(secondLastPoint, lastPoint, lastPoint, lineOffset);
-    float[] o2 = lineCorners(lastPoint, point, lastPoint, lineOffset);
-
-    float[] v1 = new float[2];
-    v1[0] = lastPoint[0] - secondLastPoint[0];
-    v1[1] = lastPoint[1] - secondLastPoint[1];
-    float[] v2 = new float[2];
-    v2[0] = lastPoint[0] - point[0];
-    v2[1] = lastPoint[1] - point[1];
-
-    float norm = (float) sqrt(v1[0] * v1[0] + v1[1] * v1[1]);
-    v1[0] /= norm;
-    v1[1] /= norm;
-    norm = (float) sqrt(v2[0] * v2[0] + v2[1] * v2[1]);
-    v2[0] /= norm;
-    v2[1] /= norm;
-
-    float[] intersections = new float[4];
-
-    float t = (o2[0] - o1[0]) * v2[1] - (o2[1] - o1[1]) * v2[0];
-    t /= v1[0] * v2[1] - v1[1] * v2[0];
-    intersections[0] = o1[0] + t * v1[0];
-    intersections[1] = o1[1] + t * v1[1];
-
-    t = (o2[2] - o1[2]) * v2[1] - (o2[3] - o1[3]) * v2[0];
-    t /= v1[0] * v2[1] - v1[1] * v2[0];
-    intersections[2] = o1[2] + t * v1[0];
-    intersections[3] = o1[3] + t * v1[1];
-
-    return intersections;
+  protected float getIntersectionAlpha(float x1, float y1, float vx1, float vy1, float x2, float y2, float vx2,
+      float vy2) {
+    float t = (x2 - x1) * vy2 - (y2 - y1) * vx2;
+    t /= vx1 * vy2 - vy1 * vx2;
+    return t;
   }
 
-  protected void applyEndCap(float[] point1, float[] point2, boolean first) {
+  /**
+   * Adds the cap at the start of the segment from {@code (x1, y1)} to
+   * {@code (x2, y2)} if {@code first} is {@code true}, or at its end
+   * otherwise.
+   */
+  protected void applyEndCap(float x1, float y1, float x2, float y2, boolean first) {
     switch (endCap) {
     case BasicStroke.CAP_BUTT:
-      drawCapButt(point1, point2, first);
+      drawCapButt(x1, y1, x2, y2, first);
       break;
 
     case BasicStroke.CAP_SQUARE:
-      drawCapSquare(point1, point2, first);
+      drawCapSquare(x1, y1, x2, y2, first);
       break;
 
     case BasicStroke.CAP_ROUND:
-      drawCapRound(point1, point2, first);
+      drawCapRound(x1, y1, x2, y2, first);
       break;
     }
   }
 
-  protected void drawCapButt(float[] point1, float[] point2, boolean first) {
-    float[] offset = lineOffset(point1, point2);
+  protected void drawCapButt(float x1, float y1, float x2, float y2, boolean first) {
+    float scale = lineOffset / length(x2 - x1, y2 - y1);
+    float offsetX = (y2 - y1) * scale;
+    float offsetY = -(x2 - x1) * scale;
 
-    float[] pt = first ? point1 : point2;
-    float[] cornerPt = add(pt, offset);
-    addVertex(cornerPt[0], cornerPt[1]);
-    cornerPt = subtract(pt, offset);
-    addVertex(cornerPt[0], cornerPt[1]);
+    float x = first ? x1 : x2;
+    float y = first ? y1 : y2;
+    addVertex(offsetX + x, offsetY + y);
+    addVertex(x - offsetX, y - offsetY);
   }
 
-  protected void drawCapSquare(float[] point1, float[] point2, boolean first) {
-    float[] offset = lineOffset(point1, point2);
+  protected void drawCapSquare(float x1, float y1, float x2, float y2, boolean first) {
+    float scale = lineOffset / length(x2 - x1, y2 - y1);
+    float offsetX = (y2 - y1) * scale;
+    float offsetY = -(x2 - x1) * scale;
 
-    float[] offsetRotated;
-    float[] pt;
+    float rotatedX;
+    float rotatedY;
+    float x;
+    float y;
     if (first) {
-      offsetRotated = new float[] { offset[1], -offset[0] };
-      pt = point1;
+      rotatedX = offsetY;
+      rotatedY = -offsetX;
+      x = x1;
+      y = y1;
     } else {
-      offsetRotated = new float[] { -offset[1], offset[0] };
-      pt = point2;
+      rotatedX = -offsetY;
+      rotatedY = offsetX;
+      x = x2;
+      y = y2;
     }
 
-    float[] cornerPt = add(add(pt, offset), offsetRotated);
-    addVertex(cornerPt[0], cornerPt[1]);
-    cornerPt = add(subtract(pt, offset), offsetRotated);
-    addVertex(cornerPt[0], cornerPt[1]);
+    addVertex(rotatedX + (offsetX + x), rotatedY + (offsetY + y));
+    addVertex(rotatedX + (x - offsetX), rotatedY + (y - offsetY));
   }
 
-  protected void drawCapRound(float[] point1, float[] point2, boolean first) {
+  protected void drawCapRound(float x1, float y1, float x2, float y2, boolean first) {
     /*
      * Instead of doing a triangle-fan around the cap, we're going to jump back
      * and forth from the tip toward the body of the line.
      */
 
-    float[] offsetRight;
-    float[] offsetLeft;
-    float[] pt;
+    float rightX;
+    float rightY;
+    float leftX;
+    float leftY;
+    float x;
+    float y;
     if (first) {
-      float[] v = subtract(point1, point2);
-      normalize(v);
-      v[0] *= lineOffset;
-      v[1] *= lineOffset;
-
-      offsetRight = v;
-      offsetLeft = new float[] { v[0], v[1] };
-      pt = point1;
+      float norm = length(x1 - x2, y1 - y2);
+      rightX = (x1 - x2) / norm * lineOffset;
+      rightY = (y1 - y2) / norm * lineOffset;
+
+      leftX = rightX;
+      leftY = rightY;
+      x = x1;
+      y = y1;
     } else {
-      offsetRight = lineOffset(point1, point2);
-      offsetLeft = new float[] { -offsetRight[0], -offsetRight[1] };
-      pt = point2;
+      float scale = lineOffset / length(x2 - x1, y2 - y1);
+      rightX = (y2 - y1) * scale;
+      rightY = -(x2 - x1) * scale;
+
+      leftX = -rightX;
+      leftY = -rightY;
+      x = x2;
+      y = y2;
     }
 
     int max = (int) ceil(Math.PI / 2 / THETA_STEP);
     for (int i = 0; i < max; i++) {
-      addVertex(pt[0] + offsetRight[0], pt[1] + offsetRight[1]);
-      addVertex(pt[0] + offsetLeft[0], pt[1] + offsetLeft[1]);
+      addVertex(x + rightX, y + rightY);
+      addVertex(x + leftX, y + leftY);
 
-      float newX = COS_STEP * offsetRight[0] + -SIN_STEP * offsetRight[1];
-      offsetRight[1] = SIN_STEP * offsetRight[0] + COS_STEP * offsetRight[1];
-      offsetRight[0] = newX;
+      float newX = COS_STEP * rightX + -SIN_STEP * rightY;
+      rightY = SIN_STEP * rightX + COS_STEP * rightY;
+      rightX = newX;
 
-      newX = COS_STEP * offsetLeft[0] + SIN_STEP * offsetLeft[1];
-      offsetLeft[1] = -SIN_STEP * offsetLeft[0] + COS_STEP * offsetLeft[1];
-      offsetLeft[0] = newX;
+      newX = COS_STEP * leftX + SIN_STEP * leftY;
+      leftY = -SIN_STEP * leftX + COS_STEP * leftY;
+      leftX = newX;
     }
 
     if (first) {
-      offsetRight = lineOffset(point1, point2);
+      float scale = lineOffset / length(x2 - x1, y2 - y1);
+      rightX = (y2 - y1) * scale;
+      rightY = -(x2 - x1) * scale;
 
-      addVertex(pt[0] + offsetRight[0], point1[1] + offsetRight[1]);
-      addVertex(pt[0] - offsetRight[0], point1[1] - offsetRight[1]);
+      addVertex(x + rightX, y + rightY);
+      addVertex(x - rightX, y - rightY);
     } else {
-      float[] v = subtract(point2, point1);
-      normalize(v);
-      v[0] *= lineOffset;
-      v[1] *= lineOffset;
-
-      addVertex(pt[0] + v[0], pt[1] + v[1]);
+      float norm = length(x2 - x1, y2 - y1);
+      addVertex(x + (x2 - x1) / norm * lineOffset, y + (y2 - y1) / norm * lineOffset);
     }
   }
 
@@ -574,4 +890,12 @@ public abstract class BasicStrokeLineVisitor extends SimplePathVisitor {
   }
 
   protected abstract void drawBuffer();
-}
\ No newline at end of file
+
+  @Override
+  public void dispose() {
+    vBuffer.release();
+    dashBuffer.release();
+    VertexArena.getDefault().release(tmpBuffer);
+    tmpBuffer = null;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Compares and copies small buffers of cached state, like a color or a
+ * transform, by absolute index so the positions aren't changed.
+ */
+public class FloatBufferUtils {
+  /**
+   * Whether the first {@code cached.capacity()} values of both buffers are the
+   * same.
+   */
+  public static boolean equal(FloatBuffer src, FloatBuffer cached) {
+    int n = cached.capacity();
+    for (int i = 0; i < n; i++) {
+      if (src.get(i) != cached.get(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Copies the first {@code dest.capacity()} values, without changing the
+   * positions.
+   */
+  public static void copy(FloatBuffer src, FloatBuffer dest) {
+    int n = dest.capacity();
+    for (int i = 0; i < n; i++) {
+      dest.put(i, src.get(i));
+    }
+  }
+}
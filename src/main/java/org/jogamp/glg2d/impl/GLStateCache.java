@@ -0,0 +1,362 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GLContext;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.TextureImpl;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+
+/**
+ * A shadow copy of the OpenGL state that the helpers change most often. All
+ * helpers set this state through here, so a call only reaches the driver when
+ * the value actually changes.
+ * 
+ * <p>
+ * Use {@link #getGLStateCache()} to get the cache for the current context.
+ * Anything outside of GLG2D may change the state between frames, so
+ * {@code GLGraphics2D.prePaint()} calls {@link #invalidate()} and every value
+ * is set again on first use. {@code postPaint()} calls
+ * {@link #restoreDefaults()} so the state that's left bound lazily, like the
+ * program and the vertex arrays, doesn't leak out of the frame.
+ * </p>
+ * 
+ * <p>
+ * Code that changes the tracked state behind the cache's back, for example
+ * Slick binding a texture while it loads one, must call {@link #invalidate()}
+ * afterwards.
+ * </p>
+ */
+public class GLStateCache {
+  private static final Map<ContextCapabilities, GLStateCache> CACHES = new WeakHashMap<ContextCapabilities, GLStateCache>();
+
+  protected static final int UNKNOWN = -1;
+
+  /**
+   * The capabilities whose enabled state is tracked. Others go straight to GL.
+   */
+  protected static final int[] TRACKED_CAPS = { GL11.GL_BLEND, GL11.GL_SCISSOR_TEST, GL11.GL_TEXTURE_2D,
+      GL11.GL_LINE_STIPPLE, GL13.GL_MULTISAMPLE, GL11.GL_CULL_FACE };
+
+  private static final byte CAP_UNKNOWN = 0;
+  private static final byte CAP_ENABLED = 1;
+  private static final byte CAP_DISABLED = 2;
+
+  protected byte[] capStates = new byte[TRACKED_CAPS.length];
+
+  protected int program;
+  protected int arrayBuffer;
+  protected int pixelUnpackBuffer;
+  protected int texture;
+  protected int texEnvMode;
+
+  protected int blendSrc;
+  protected int blendDst;
+
+  protected int scissorX;
+  protected int scissorY;
+  protected int scissorWidth;
+  protected int scissorHeight;
+
+  protected float lineWidth;
+  protected float pointSize;
+
+  protected int enabledAttribs;
+  protected boolean attribsKnown;
+
+  protected GLG2DFrameStats frameStats = GLG2DFrameStats.DISCARD;
+
+  /**
+   * Gets the state cache for the current OpenGL context, creating it if
+   * necessary.
+   */
+  public static GLStateCache getGLStateCache() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    GLStateCache cache = CACHES.get(caps);
+    if (cache == null) {
+      cache = new GLStateCache();
+      CACHES.put(caps, cache);
+    }
+
+    return cache;
+  }
+
+  protected GLStateCache() {
+    invalidate();
+  }
+
+  /**
+   * Sets the stats that program switches and texture binds are counted in, the
+   * ones of the graphics object that's painting on this context.
+   */
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  /**
+   * Forgets all the tracked state, so the next call for each value goes to
+   * the driver.
+   */
+  public void invalidate() {
+    for (int i = 0; i < capStates.length; i++) {
+      capStates[i] = CAP_UNKNOWN;
+    }
+
+    program = UNKNOWN;
+    arrayBuffer = UNKNOWN;
+    pixelUnpackBuffer = UNKNOWN;
+    texture = UNKNOWN;
+    texEnvMode = UNKNOWN;
+    blendSrc = UNKNOWN;
+    blendDst = UNKNOWN;
+    scissorX = Integer.MIN_VALUE;
+    lineWidth = Float.NaN;
+    pointSize = Float.NaN;
+    attribsKnown = false;
+  }
+
+  /**
+   * Puts back the state that the helpers leave set between draws: no program,
+   * no array buffer, no generic vertex arrays and no line stipple. State that
+   * wasn't touched since {@link #invalidate()} is left alone.
+   */
+  public void restoreDefaults() {
+    if (program != UNKNOWN) {
+      useProgram(0);
+    }
+
+    if (arrayBuffer != UNKNOWN) {
+      bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    if (attribsKnown) {
+      setVertexAttribArrays(0);
+    }
+
+    if (capStates[indexOf(GL11.GL_LINE_STIPPLE)] == CAP_ENABLED) {
+      setEnabled(GL11.GL_LINE_STIPPLE, false);
+    }
+  }
+
+  private static int indexOf(int cap) {
+    for (int i = 0; i < TRACKED_CAPS.length; i++) {
+      if (TRACKED_CAPS[i] == cap) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  public void setEnabled(int cap, boolean enabled) {
+    int i = indexOf(cap);
+    if (i < 0) {
+      enable(cap, enabled);
+      return;
+    }
+
+    byte state = enabled ? CAP_ENABLED : CAP_DISABLED;
+    if (capStates[i] != state) {
+      capStates[i] = state;
+      enable(cap, enabled);
+    }
+  }
+
+  private static void enable(int cap, boolean enabled) {
+    if (enabled) {
+      GL11.glEnable(cap);
+    } else {
+      GL11.glDisable(cap);
+    }
+  }
+
+  public void useProgram(int programId) {
+    if (program != programId) {
+      program = programId;
+      GL20.glUseProgram(programId);
+      if (programId != 0) {
+        frameStats.recordProgramSwitch();
+      }
+    }
+  }
+
+  /**
+   * Binds a buffer. Only {@code GL_ARRAY_BUFFER} and
+   * {@code GL_PIXEL_UNPACK_BUFFER} are tracked.
+   */
+  public void bindBuffer(int target, int bufferId) {
+    if (target == GL15.GL_ARRAY_BUFFER) {
+      if (arrayBuffer != bufferId) {
+        arrayBuffer = bufferId;
+        GL15.glBindBuffer(target, bufferId);
+      }
+    } else if (target == GL21.GL_PIXEL_UNPACK_BUFFER) {
+      if (pixelUnpackBuffer != bufferId) {
+        pixelUnpackBuffer = bufferId;
+        GL15.glBindBuffer(target, bufferId);
+      }
+    } else {
+      GL15.glBindBuffer(target, bufferId);
+    }
+  }
+
+  /**
+   * Binds the texture to {@code GL_TEXTURE_2D} of the active texture unit. This
+   * does not enable {@code GL_TEXTURE_2D}, unlike {@code Texture.bind()}.
+   */
+  public void bindTexture(Texture tex) {
+    bindTexture(tex.getTextureID());
+  }
+
+  /**
+   * Binds the texture name to {@code GL_TEXTURE_2D} of the active texture
+   * unit.
+   */
+  public void bindTexture(int textureId) {
+    if (texture != textureId) {
+      // we bind without Slick, so it mustn't think its last texture is still bound
+      TextureImpl.unbind();
+
+      texture = textureId;
+      GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+      frameStats.recordTextureBind();
+    }
+  }
+
+  /**
+   * Must be called when a texture is deleted, its name may be handed out again.
+   */
+  public void textureDeleted(int textureId) {
+    if (texture == textureId) {
+      texture = UNKNOWN;
+    }
+  }
+
+  /**
+   * Must be called when a buffer is deleted, its name may be handed out again.
+   */
+  public void bufferDeleted(int bufferId) {
+    if (arrayBuffer == bufferId) {
+      arrayBuffer = UNKNOWN;
+    }
+
+    if (pixelUnpackBuffer == bufferId) {
+      pixelUnpackBuffer = UNKNOWN;
+    }
+  }
+
+  /**
+   * Must be called when a program is deleted, its name may be handed out
+   * again.
+   */
+  public void programDeleted(int programId) {
+    if (program == programId) {
+      program = UNKNOWN;
+    }
+  }
+
+  public void setTexEnvMode(int mode) {
+    if (texEnvMode != mode) {
+      texEnvMode = mode;
+      GL11.glTexEnvi(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, mode);
+    }
+  }
+
+  public void setBlendFunc(int src, int dst) {
+    if (blendSrc != src || blendDst != dst) {
+      blendSrc = src;
+      blendDst = dst;
+      GL11.glBlendFunc(src, dst);
+    }
+  }
+
+  public void setScissor(int x, int y, int width, int height) {
+    if (scissorX != x || scissorY != y || scissorWidth != width || scissorHeight != height) {
+      scissorX = x;
+      scissorY = y;
+      scissorWidth = width;
+      scissorHeight = height;
+      GL11.glScissor(x, y, width, height);
+    }
+  }
+
+  public void setLineWidth(float width) {
+    // NaN never compares equal, so unknown always sets
+    if (!(lineWidth == width)) {
+      lineWidth = width;
+      GL11.glLineWidth(width);
+    }
+  }
+
+  public void setPointSize(float size) {
+    if (!(pointSize == size)) {
+      pointSize = size;
+      GL11.glPointSize(size);
+    }
+  }
+
+  /**
+   * Enables exactly the generic vertex attribute arrays in {@code mask}, bit
+   * {@code i} for location {@code i}, and disables all others.
+   */
+  public void setVertexAttribArrays(int mask) {
+    if (!attribsKnown) {
+      int max = Math.min(GL11.glGetInteger(GL20.GL_MAX_VERTEX_ATTRIBS), Integer.SIZE);
+      for (int i = 0; i < max; i++) {
+        if ((mask & (1 << i)) != 0) {
+          GL20.glEnableVertexAttribArray(i);
+        } else {
+          GL20.glDisableVertexAttribArray(i);
+        }
+      }
+
+      enabledAttribs = mask;
+      attribsKnown = true;
+      return;
+    }
+
+    int changed = enabledAttribs ^ mask;
+    for (int i = 0; changed != 0; i++, changed >>>= 1) {
+      if ((changed & 1) != 0) {
+        if ((mask & (1 << i)) != 0) {
+          GL20.glEnableVertexAttribArray(i);
+        } else {
+          GL20.glDisableVertexAttribArray(i);
+        }
+      }
+    }
+
+    enabledAttribs = mask;
+  }
+
+  /**
+   * Gets the mask bit for an attribute location, or 0 if the location is
+   * {@code -1} because the program doesn't use the attribute.
+   */
+  public static int attribBit(int location) {
+    return location < 0 ? 0 : 1 << location;
+  }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.TextureImpl;
+
+import org.jogamp.glg2d.GLG2DRenderingHints;
+import org.jogamp.glg2d.impl.AbstractImageHelper.WeakKey;
+
+/**
+ * Packs small images into a few large textures, so drawing many icons doesn't
+ * need a texture bind for each one and consecutive draws can be batched.
+ * 
+ * <p>
+ * Each page is packed with horizontal shelves. Space is not reused when an
+ * image is garbage collected, but the page keeps track of how much of it is
+ * wasted. When a page is full and enough of it is wasted, all its live images
+ * are packed again from scratch and re-uploaded from the original images.
+ * </p>
+ * <p>
+ * Pages are filtered linearly like standalone textures. The padding around
+ * each image repeats its edge texels, so sampling near the edge doesn't blend
+ * in the neighbouring images.
+ * </p>
+ */
+public class ImageAtlas {
+  /**
+   * The width and height of each page.
+   */
+  public static final int PAGE_SIZE = 1024;
+
+  public static final int MAX_PAGES = 4;
+
+  /**
+   * Images with a larger width or height get their own texture by default,
+   * from {@link GLG2DRenderingHints#VALUE_IMAGE_ATLAS_MAX_SIZE_DEFAULT}.
+   */
+  public static final int DEFAULT_MAX_IMAGE_SIZE = ((Integer) GLG2DRenderingHints.VALUE_IMAGE_ATLAS_MAX_SIZE_DEFAULT).intValue();
+
+  /**
+   * A page is repacked when this fraction of its allocated area belongs to
+   * images that are gone.
+   */
+  public static final float REPACK_THRESHOLD = 0.25f;
+
+  protected static final int PADDING = 1;
+
+  /**
+   * Converts the live images again when a page is repacked.
+   */
+  protected final AbstractImageHelper helper;
+
+  protected List<Page> pages = new ArrayList<Page>();
+
+  protected Map<WeakKey<Image>, Region> regions = new HashMap<WeakKey<Image>, Region>();
+  protected ReferenceQueue<Image> queue = new ReferenceQueue<Image>();
+
+  protected int maxImageSize = DEFAULT_MAX_IMAGE_SIZE;
+
+  protected long repacks;
+
+  public ImageAtlas(AbstractImageHelper helper) {
+    this.helper = helper;
+  }
+
+  /**
+   * Sets the largest width or height of images that go in the atlas. Set to 0
+   * to disable the atlas.
+   */
+  public void setMaxImageSize(int maxImageSize) {
+    this.maxImageSize = Math.min(maxImageSize, PAGE_SIZE - 2 * PADDING);
+  }
+
+  public int getMaxImageSize() {
+    return maxImageSize;
+  }
+
+  /**
+   * Checks if an image of this size can go in the atlas.
+   */
+  public boolean accepts(int width, int height) {
+    return width > 0 && height > 0 && width <= maxImageSize && height <= maxImageSize;
+  }
+
+  /**
+   * Gets the region for the image, if it's in the atlas.
+   */
+  public Region get(Image image) {
+    expungeStaleEntries();
+    return regions.get(new WeakKey<Image>(image, null));
+  }
+
+  /**
+   * Puts the image in the atlas.
+   * 
+   * @return the region, or {@code null} if there's no room
+   */
+  public Region add(Image image, BufferedImage pixels) {
+    expungeStaleEntries();
+
+    int width = pixels.getWidth();
+    int height = pixels.getHeight();
+    if (!accepts(width, height)) {
+      return null;
+    }
+
+    Region region = new Region();
+    region.key = new WeakKey<Image>(image, queue);
+    region.width = width;
+    region.height = height;
+
+    if (!allocate(region)) {
+      return null;
+    }
+
+    upload(region, pixels);
+    regions.put(region.key, region);
+    return region;
+  }
+
+  /**
+   * Deletes all the pages and forgets all images.
+   */
+  public void clear() {
+    for (Page page : pages) {
+      GLStateCache.getGLStateCache().textureDeleted(page.texture.getTextureID());
+      page.texture.release();
+    }
+
+    pages.clear();
+    regions.clear();
+  }
+
+  public int getImageCount() {
+    return regions.size();
+  }
+
+  public int getPageCount() {
+    return pages.size();
+  }
+
+  public long getRepackCount() {
+    return repacks;
+  }
+
+  protected boolean allocate(Region region) {
+    for (Page page : pages) {
+      if (page.allocate(region)) {
+        return true;
+      }
+    }
+
+    // try to make room in a fragmented page before using another one
+    for (Page page : pages) {
+      if (page.getWastedFraction() >= REPACK_THRESHOLD) {
+        repack(page);
+        if (page.allocate(region)) {
+          return true;
+        }
+      }
+    }
+
+    if (pages.size() < MAX_PAGES) {
+      Page page = new Page(createPageTexture());
+      pages.add(page);
+      return page.allocate(region);
+    }
+
+    return false;
+  }
+
+  /**
+   * Packs the live images of the page from scratch and uploads them again.
+   * Anything that still draws from this page must be flushed first.
+   */
+  protected void repack(Page page) {
+    repacks++;
+
+    List<Region> live = new ArrayList<Region>(page.regions);
+    page.reset();
+
+    // tallest first packs shelves tighter
+    for (int i = 1; i < live.size(); i++) {
+      Region r = live.get(i);
+      int j = i;
+      while (j > 0 && live.get(j - 1).height < r.height) {
+        live.set(j, live.get(j - 1));
+        j--;
+      }
+
+      live.set(j, r);
+    }
+
+    for (Region region : live) {
+      Image image = region.key.get();
+      if (image == null || !page.allocate(region)) {
+        regions.remove(region.key);
+        continue;
+      }
+
+      BufferedImage pixels = helper.asBufferedImage(image);
+      if (pixels == null) {
+        page.free(region);
+        regions.remove(region.key);
+      } else {
+        upload(region, pixels);
+      }
+    }
+  }
+
+  protected Texture createPageTexture() {
+    int id = GL11.glGenTextures();
+    TextureImpl texture = new TextureImpl("glg2d-image-atlas", GL11.GL_TEXTURE_2D, id);
+    texture.setTextureWidth(PAGE_SIZE);
+    texture.setTextureHeight(PAGE_SIZE);
+    texture.setWidth(PAGE_SIZE);
+    texture.setHeight(PAGE_SIZE);
+
+    GLStateCache.getGLStateCache().bindTexture(texture);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+    GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, PAGE_SIZE, PAGE_SIZE, 0, GL11.GL_RGBA,
+        GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+    return texture;
+  }
+
+  protected void upload(Region region, BufferedImage pixels) {
+    update(region, pixels, 0, 0, region.width, region.height);
+  }
+
+  /**
+   * Uploads part of the image again after it changed. Anything that still
+   * draws from the page must be flushed first.
+   */
+  public void update(Region region, BufferedImage pixels, int x, int y, int width, int height) {
+    GLStateCache.getGLStateCache().bindTexture(region.page.texture);
+    uploadPixels(region, pixels, x, y, width, height, 0, 0);
+
+    // copy the changed edge texels into the padding texels next to them
+    int right = region.width - 1;
+    int bottom = region.height - 1;
+    boolean left = x == 0;
+    boolean top = y == 0;
+    boolean atRight = x + width == region.width;
+    boolean atBottom = y + height == region.height;
+    if (left) {
+      uploadPixels(region, pixels, 0, y, 1, height, -1, 0);
+    }
+
+    if (atRight) {
+      uploadPixels(region, pixels, right, y, 1, height, 1, 0);
+    }
+
+    if (top) {
+      uploadPixels(region, pixels, x, 0, width, 1, 0, -1);
+      if (left) {
+        uploadPixels(region, pixels, 0, 0, 1, 1, -1, -1);
+      }
+
+      if (atRight) {
+        uploadPixels(region, pixels, right, 0, 1, 1, 1, -1);
+      }
+    }
+
+    if (atBottom) {
+      uploadPixels(region, pixels, x, bottom, width, 1, 0, 1);
+      if (left) {
+        uploadPixels(region, pixels, 0, bottom, 1, 1, -1, 1);
+      }
+
+      if (atRight) {
+        uploadPixels(region, pixels, right, bottom, 1, 1, 1, 1);
+      }
+    }
+  }
+
+  /**
+   * Uploads a rectangle of the image to where it is in the region, moved by
+   * {@code dx, dy} texels.
+   */
+  private void uploadPixels(Region region, BufferedImage pixels, int x, int y, int width, int height, int dx,
+      int dy) {
+    helper.uploader.upload(pixels, x, y, width, height, region.x + x + dx, region.y + y + dy, true);
+  }
+
+  protected void expungeStaleEntries() {
+    Reference<? extends Image> ref = queue.poll();
+    while (ref != null) {
+      Region region = regions.remove(ref);
+      if (region != null) {
+        region.page.free(region);
+      }
+
+      ref = queue.poll();
+    }
+  }
+
+  /**
+   * Where an image is in the atlas. Texture coordinates are normalized.
+   */
+  public static class Region {
+    public int width;
+    public int height;
+    public float u1, v1, u2, v2;
+
+    protected int x, y;
+    protected Page page;
+    protected WeakKey<Image> key;
+
+    public Texture getTexture() {
+      return page.texture;
+    }
+
+    /**
+     * Gets the horizontal texture coordinate of the image pixel {@code px}.
+     */
+    public float u(float px) {
+      return (x + px) / PAGE_SIZE;
+    }
+
+    /**
+     * Gets the vertical texture coordinate of the image pixel {@code py}.
+     */
+    public float v(float py) {
+      return (y + py) / PAGE_SIZE;
+    }
+  }
+
+  protected static class Page {
+    final Texture texture;
+
+    List<Region> regions = new ArrayList<Region>();
+
+    int[] shelfY = new int[16];
+    int[] shelfHeight = new int[16];
+    int[] shelfX = new int[16];
+    int numShelves;
+    int nextShelfY;
+
+    int allocatedArea;
+    int wastedArea;
+
+    Page(Texture texture) {
+      this.texture = texture;
+    }
+
+    boolean allocate(Region region) {
+      int width = region.width + 2 * PADDING;
+      int height = region.height + 2 * PADDING;
+
+      int best = -1;
+      for (int i = 0; i < numShelves; i++) {
+        if (shelfHeight[i] >= height && shelfX[i] + width <= PAGE_SIZE &&
+            (best < 0 || shelfHeight[i] < shelfHeight[best])) {
+          best = i;
+        }
+      }
+
+      if (best < 0 || shelfHeight[best] > height * 2) {
+        if (nextShelfY + height <= PAGE_SIZE) {
+          best = addShelf(height);
+        } else if (best < 0) {
+          return false;
+        }
+      }
+
+      region.page = this;
+      region.x = shelfX[best] + PADDING;
+      region.y = shelfY[best] + PADDING;
+      region.u1 = region.u(0);
+      region.v1 = region.v(0);
+      region.u2 = region.u(region.width);
+      region.v2 = region.v(region.height);
+
+      shelfX[best] += width;
+      allocatedArea += width * height;
+      regions.add(region);
+      return true;
+    }
+
+    int addShelf(int height) {
+      if (numShelves == shelfY.length) {
+        shelfY = Arrays.copyOf(shelfY, numShelves * 2);
+        shelfHeight = Arrays.copyOf(shelfHeight, numShelves * 2);
+        shelfX = Arrays.copyOf(shelfX, numShelves * 2);
+      }
+
+      shelfY[numShelves] = nextShelfY;
+      shelfHeight[numShelves] = height;
+      shelfX[numShelves] = 0;
+      nextShelfY += height;
+      return numShelves++;
+    }
+
+    void free(Region region) {
+      if (regions.remove(region)) {
+        wastedArea += (region.width + 2 * PADDING) * (region.height + 2 * PADDING);
+      }
+    }
+
+    void reset() {
+      regions.clear();
+      numShelves = 0;
+      nextShelfY = 0;
+      allocatedArea = 0;
+      wastedArea = 0;
+    }
+
+    float getWastedFraction() {
+      return allocatedArea == 0 ? 0 : wastedArea / (float) allocatedArea;
+    }
+  }
+}
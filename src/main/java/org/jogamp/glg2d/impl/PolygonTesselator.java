@@ -0,0 +1,465 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+import org.jogamp.glg2d.VertexBuffer;
+
+/**
+ * A pure-Java polygon tesselator that turns any set of closed contours into a
+ * list of triangles. It handles holes and self-intersections with either
+ * winding rule and doesn't need an OpenGL context, so it can run headless.
+ * 
+ * <p>
+ * This sweeps a line down the polygon and cuts it into horizontal slabs at
+ * every vertex and every edge crossing. Inside each slab no two edges cross,
+ * so the edges can be ordered left to right and the winding rule decides
+ * which spans between neighboring edges are inside. Spans that continue
+ * between the same two edges through several slabs are merged into one
+ * trapezoid, and each trapezoid becomes two triangles.
+ * </p>
+ * <p>
+ * All the working storage is kept in primitive arrays that are reused for the
+ * next polygon, so after warm-up tesselating doesn't allocate.
+ * </p>
+ */
+public class PolygonTesselator {
+  /**
+   * Relative distance at which two edges are considered to meet.
+   */
+  protected static final double EPSILON = 1e-9;
+
+  protected int windingRule = PathIterator.WIND_NON_ZERO;
+
+  /*
+   * The points of the contour being added.
+   */
+  protected float[] contour = new float[64];
+  protected int contourSize;
+
+  /*
+   * Edges, always stored top (smaller y) to bottom.
+   */
+  protected float[] edgeTopX = new float[32];
+  protected float[] edgeTopY = new float[32];
+  protected float[] edgeBottomX = new float[32];
+  protected float[] edgeBottomY = new float[32];
+  protected double[] edgeSlope = new double[32];
+  protected int[] edgeWinding = new int[32];
+  protected int numEdges;
+
+  /*
+   * Edge indices sorted by top y, and the y-values of all vertices.
+   */
+  protected int[] edgeOrder = new int[32];
+  protected float[] events = new float[32];
+
+  /*
+   * Edges crossing the current slab, sorted left to right.
+   */
+  protected int[] active = new int[32];
+  protected int numActive;
+
+  /*
+   * Spans from the previous slab that haven't been emitted yet. These are
+   * indexed by the span's left edge.
+   */
+  protected int[] openSpanRight = new int[32];
+  protected double[] openSpanTop = new double[32];
+  protected int[] openSpanLeft = new int[32];
+  protected int numOpenSpans;
+
+  protected int[] newSpanLeft = new int[32];
+  protected int[] newSpanRight = new int[32];
+  protected double[] newSpanTop = new double[32];
+  protected int numNewSpans;
+
+  /**
+   * Starts a new polygon, forgetting everything from the previous one.
+   * 
+   * @param windingRule
+   *          one of {@link PathIterator#WIND_EVEN_ODD} or
+   *          {@link PathIterator#WIND_NON_ZERO}
+   */
+  public void beginPolygon(int windingRule) {
+    this.windingRule = windingRule;
+    numEdges = 0;
+    contourSize = 0;
+  }
+
+  /**
+   * Starts a new contour. Any open contour is closed first.
+   */
+  public void moveTo(float x, float y) {
+    closeContour();
+    lineTo(x, y);
+  }
+
+  /**
+   * Adds a point to the current contour.
+   */
+  public void lineTo(float x, float y) {
+    if (contourSize + 2 > contour.length) {
+      contour = Arrays.copyOf(contour, contour.length * 2);
+    }
+
+    contour[contourSize++] = x;
+    contour[contourSize++] = y;
+  }
+
+  /**
+   * Closes the current contour back to its first point.
+   */
+  public void closeContour() {
+    if (contourSize >= 6) {
+      for (int i = 2; i < contourSize; i += 2) {
+        addEdge(contour[i - 2], contour[i - 1], contour[i], contour[i + 1]);
+      }
+
+      addEdge(contour[contourSize - 2], contour[contourSize - 1], contour[0], contour[1]);
+    }
+
+    contourSize = 0;
+  }
+
+  /**
+   * Tesselates the polygon and appends the triangles to {@code out}, three
+   * vertices per triangle, suitable for {@code GL_TRIANGLES}.
+   * 
+   * @return the number of vertices added
+   */
+  public int tesselate(VertexBuffer out) {
+    closeContour();
+
+    int startPosition = out.getBuffer().position();
+    if (numEdges == 0) {
+      return 0;
+    }
+
+    int numEvents = sortEvents();
+    sortEdgesByTop();
+
+    numActive = 0;
+    numOpenSpans = 0;
+
+    int nextEdge = 0;
+    int nextEvent = 0;
+    double y = events[0];
+    while (true) {
+      // retire edges we've passed, then add edges starting here
+      int kept = 0;
+      for (int i = 0; i < numActive; i++) {
+        if (edgeBottomY[active[i]] > y) {
+          active[kept++] = active[i];
+        }
+      }
+      numActive = kept;
+
+      while (nextEdge < numEdges && edgeTopY[edgeOrder[nextEdge]] <= y) {
+        ensureActiveCapacity(numActive + 1);
+        active[numActive++] = edgeOrder[nextEdge++];
+      }
+
+      while (nextEvent < numEvents && events[nextEvent] <= y) {
+        nextEvent++;
+      }
+
+      if (nextEvent == numEvents) {
+        break;
+      }
+
+      double nextY = events[nextEvent];
+      sortActive(y);
+      nextY = firstCrossing(y, nextY);
+
+      computeSpans(y);
+      mergeSpans(out, y);
+
+      y = nextY;
+    }
+
+    // everything left ends at the last event
+    numNewSpans = 0;
+    mergeSpans(out, y);
+
+    return (out.getBuffer().position() - startPosition) / 2;
+  }
+
+  protected void addEdge(float x0, float y0, float x1, float y1) {
+    if (y0 == y1) {
+      // horizontal edges don't change the winding in any slab
+      return;
+    }
+
+    if (numEdges == edgeTopX.length) {
+      int size = numEdges * 2;
+      edgeTopX = Arrays.copyOf(edgeTopX, size);
+      edgeTopY = Arrays.copyOf(edgeTopY, size);
+      edgeBottomX = Arrays.copyOf(edgeBottomX, size);
+      edgeBottomY = Arrays.copyOf(edgeBottomY, size);
+      edgeSlope = Arrays.copyOf(edgeSlope, size);
+      edgeWinding = Arrays.copyOf(edgeWinding, size);
+    }
+
+    int e = numEdges++;
+    if (y0 < y1) {
+      edgeTopX[e] = x0;
+      edgeTopY[e] = y0;
+      edgeBottomX[e] = x1;
+      edgeBottomY[e] = y1;
+      edgeWinding[e] = 1;
+    } else {
+      edgeTopX[e] = x1;
+      edgeTopY[e] = y1;
+      edgeBottomX[e] = x0;
+      edgeBottomY[e] = y0;
+      edgeWinding[e] = -1;
+    }
+
+    edgeSlope[e] = ((double) edgeBottomX[e] - edgeTopX[e]) / ((double) edgeBottomY[e] - edgeTopY[e]);
+  }
+
+  protected double xAt(int edge, double y) {
+    if (y == edgeBottomY[edge]) {
+      return edgeBottomX[edge];
+    }
+
+    return edgeTopX[edge] + (y - edgeTopY[edge]) * edgeSlope[edge];
+  }
+
+  /**
+   * Sorts the unique y-values of all the edge end points into
+   * {@link #events}.
+   */
+  protected int sortEvents() {
+    if (events.length < numEdges * 2) {
+      events = new float[numEdges * 2];
+    }
+
+    for (int i = 0; i < numEdges; i++) {
+      events[2 * i] = edgeTopY[i];
+      events[2 * i + 1] = edgeBottomY[i];
+    }
+
+    Arrays.sort(events, 0, numEdges * 2);
+
+    int unique = 1;
+    for (int i = 1; i < numEdges * 2; i++) {
+      if (events[i] != events[unique - 1]) {
+        events[unique++] = events[i];
+      }
+    }
+
+    return unique;
+  }
+
+  protected void sortEdgesByTop() {
+    if (edgeOrder.length < numEdges) {
+      edgeOrder = new int[edgeTopX.length];
+    }
+
+    for (int i = 0; i < numEdges; i++) {
+      edgeOrder[i] = i;
+    }
+
+    // shell sort, no allocation and fast enough for the paths we see
+    int gap = 1;
+    while (gap < numEdges / 3) {
+      gap = gap * 3 + 1;
+    }
+
+    for (; gap > 0; gap /= 3) {
+      for (int i = gap; i < numEdges; i++) {
+        int e = edgeOrder[i];
+        float top = edgeTopY[e];
+        int j = i;
+        while (j >= gap && edgeTopY[edgeOrder[j - gap]] > top) {
+          edgeOrder[j] = edgeOrder[j - gap];
+          j -= gap;
+        }
+
+        edgeOrder[j] = e;
+      }
+    }
+  }
+
+  /**
+   * Orders the active edges left to right just below {@code y}. The order
+   * barely changes between slabs, so insertion sort is close to linear.
+   */
+  protected void sortActive(double y) {
+    for (int i = 1; i < numActive; i++) {
+      int e = active[i];
+      double x = xAt(e, y);
+      int j = i;
+      while (j > 0 && compare(active[j - 1], e, x, y) > 0) {
+        active[j] = active[j - 1];
+        j--;
+      }
+
+      active[j] = e;
+    }
+  }
+
+  private int compare(int a, int b, double xb, double y) {
+    double xa = xAt(a, y);
+    if (Math.abs(xa - xb) > EPSILON * (1 + Math.abs(xb))) {
+      return xa < xb ? -1 : 1;
+    }
+
+    // same point (or close enough after a crossing), order by where they go next
+    return Double.compare(edgeSlope[a], edgeSlope[b]);
+  }
+
+  /**
+   * Finds where the first pair of neighboring edges cross between {@code y}
+   * and {@code nextY}. Edges only cross after being neighbors, so checking
+   * neighbors is enough.
+   */
+  protected double firstCrossing(double y, double nextY) {
+    double limit = nextY;
+    for (int i = 1; i < numActive; i++) {
+      int a = active[i - 1];
+      int b = active[i];
+
+      double d0 = xAt(a, y) - xAt(b, y);
+      double d1 = xAt(a, nextY) - xAt(b, nextY);
+      if (d1 > 0 && d0 <= 0) {
+        double crossing = y + (nextY - y) * (-d0 / (d1 - d0));
+        if (crossing > y && crossing < limit) {
+          limit = crossing;
+        }
+      }
+    }
+
+    return limit;
+  }
+
+  protected void computeSpans(double y) {
+    numNewSpans = 0;
+
+    int winding = 0;
+    int left = -1;
+    for (int i = 0; i < numActive; i++) {
+      int e = active[i];
+      boolean wasInside = isInside(winding);
+      winding += edgeWinding[e];
+      boolean inside = isInside(winding);
+
+      if (!wasInside && inside) {
+        left = e;
+      } else if (wasInside && !inside) {
+        ensureSpanCapacity(numNewSpans + 1);
+        newSpanLeft[numNewSpans] = left;
+        newSpanRight[numNewSpans] = e;
+        newSpanTop[numNewSpans] = y;
+        numNewSpans++;
+      }
+    }
+  }
+
+  protected boolean isInside(int winding) {
+    if (windingRule == PathIterator.WIND_EVEN_ODD) {
+      return (winding & 1) != 0;
+    } else {
+      return winding != 0;
+    }
+  }
+
+  /**
+   * Carries over open spans that continue into the new slab and emits the
+   * rest, which end at {@code y}.
+   */
+  protected void mergeSpans(VertexBuffer out, double y) {
+    // both lists are in left to right order, so scan them together
+    int from = 0;
+    for (int i = 0; i < numNewSpans; i++) {
+      int left = newSpanLeft[i];
+      int right = newSpanRight[i];
+      for (int j = from; j < numOpenSpans; j++) {
+        if (openSpanLeft[j] == left && openSpanRight[j] == right) {
+          newSpanTop[i] = openSpanTop[j];
+
+          // mark as carried over
+          openSpanLeft[j] = -1;
+          from = j + 1;
+          break;
+        }
+      }
+    }
+
+    for (int j = 0; j < numOpenSpans; j++) {
+      if (openSpanLeft[j] >= 0) {
+        emitTrapezoid(out, openSpanLeft[j], openSpanRight[j], openSpanTop[j], y);
+      }
+    }
+
+    int[] tmpInt = openSpanLeft;
+    openSpanLeft = newSpanLeft;
+    newSpanLeft = tmpInt;
+
+    tmpInt = openSpanRight;
+    openSpanRight = newSpanRight;
+    newSpanRight = tmpInt;
+
+    double[] tmpDouble = openSpanTop;
+    openSpanTop = newSpanTop;
+    newSpanTop = tmpDouble;
+
+    numOpenSpans = numNewSpans;
+  }
+
+  protected void emitTrapezoid(VertexBuffer out, int left, int right, double yTop, double yBottom) {
+    float top = (float) yTop;
+    float bottom = (float) yBottom;
+    float xl0 = (float) xAt(left, yTop);
+    float xr0 = (float) xAt(right, yTop);
+    float xl1 = (float) xAt(left, yBottom);
+    float xr1 = (float) xAt(right, yBottom);
+
+    if (xl0 != xr0) {
+      out.addVertex(xl0, top);
+      out.addVertex(xr0, top);
+      out.addVertex(xr1, bottom);
+    }
+
+    if (xl1 != xr1) {
+      out.addVertex(xl0, top);
+      out.addVertex(xr1, bottom);
+      out.addVertex(xl1, bottom);
+    }
+  }
+
+  private void ensureActiveCapacity(int size) {
+    if (size > active.length) {
+      active = Arrays.copyOf(active, active.length * 2);
+    }
+  }
+
+  private void ensureSpanCapacity(int size) {
+    if (size > newSpanLeft.length) {
+      int newSize = newSpanLeft.length * 2;
+      newSpanLeft = Arrays.copyOf(newSpanLeft, newSize);
+      newSpanRight = Arrays.copyOf(newSpanRight, newSize);
+      newSpanTop = Arrays.copyOf(newSpanTop, newSize);
+      openSpanLeft = Arrays.copyOf(openSpanLeft, newSize);
+      openSpanRight = Arrays.copyOf(openSpanRight, newSize);
+      openSpanTop = Arrays.copyOf(openSpanTop, newSize);
+    }
+  }
+}
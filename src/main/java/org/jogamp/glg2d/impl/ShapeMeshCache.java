@@ -0,0 +1,352 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.GLG2DRenderingHints;
+import org.jogamp.glg2d.VertexBuffer;
+
+/**
+ * Keeps the triangles of complex shapes that are filled over and over, like
+ * map outlines or chart legends, so they don't have to be flattened and
+ * tesselated every frame.
+ * 
+ * <p>
+ * Meshes are keyed by shape identity and checked against a hash of the path
+ * geometry, so a shape that is changed after it was cached is tesselated
+ * again. Curves are flattened for the current transform scale, so the mesh is
+ * also re-built when the scale changes by more than about a fifth. The cache
+ * is bounded by the number of bytes in all meshes and drops the least
+ * recently used meshes first.
+ * </p>
+ * <p>
+ * Many shapes are only filled once, like stroked outlines or polygons created
+ * in every paint. Those shouldn't pay for building and storing a mesh, so a
+ * shape is only remembered the first time it's seen and its mesh is built
+ * when the same shape comes back with the same geometry.
+ * </p>
+ */
+public class ShapeMeshCache {
+  /**
+   * The default size of the cache, in bytes, from
+   * {@link GLG2DRenderingHints#VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT}.
+   */
+  public static final int DEFAULT_MAX_BYTES = ((Integer) GLG2DRenderingHints.VALUE_SHAPE_MESH_CACHE_SIZE_DEFAULT).intValue();
+
+  /**
+   * Scales within a quarter octave share a mesh.
+   */
+  protected static final double SCALE_BUCKETS_PER_OCTAVE = 4;
+
+  /**
+   * The maximum number of shapes seen once that are remembered.
+   */
+  protected static final int MAX_SIGHTINGS = 1024;
+
+  protected LinkedHashMap<MeshKey, Mesh> meshes = new LinkedHashMap<MeshKey, Mesh>(16, 0.75f, true);
+  protected LinkedHashMap<MeshKey, Sighting> sightings = new LinkedHashMap<MeshKey, Sighting>(16, 0.75f, true);
+  protected ReferenceQueue<Shape> queue = new ReferenceQueue<Shape>();
+
+  protected MeshBuilder builder = new MeshBuilder();
+  protected float[] coords = new float[6];
+
+  protected int maxBytes = DEFAULT_MAX_BYTES;
+  protected long bytes;
+
+  protected long hits;
+  protected long misses;
+  protected long evictions;
+
+  /**
+   * Gets the triangles of {@code shape} for the given transform scale and curve
+   * tolerance, tesselating it if this is the second time the shape is seen with
+   * the same geometry. The result is ready to draw with {@code GL_TRIANGLES}
+   * and is only valid until the next call.
+   * 
+   * @return the triangles, or {@code null} if the shape isn't worth caching
+   *         (yet) and should be filled without the cache
+   */
+  public VertexBuffer getMesh(Shape shape, float scale, float tolerance) {
+    expungeStaleEntries();
+
+    PathIterator iterator = shape.getPathIterator(null);
+    int geometryHash = geometryHash(iterator);
+    int scaleBucket = (int) Math.round(Math.log(scale / tolerance) / Math.log(2) * SCALE_BUCKETS_PER_OCTAVE);
+
+    MeshKey key = new MeshKey(shape, null);
+    Mesh mesh = meshes.get(key);
+    if (mesh != null && mesh.geometryHash == geometryHash && mesh.scaleBucket == scaleBucket) {
+      hits++;
+      return mesh.triangles;
+    }
+
+    misses++;
+    if (mesh != null) {
+      remove(key);
+    }
+
+    Sighting sighting = sightings.get(key);
+    if (sighting == null || sighting.geometryHash != geometryHash || sighting.scaleBucket != scaleBucket) {
+      sightings.remove(key);
+      sightings.put(new MeshKey(shape, queue), new Sighting(geometryHash, scaleBucket));
+      trimSightings();
+      return null;
+    } else if (sighting.tooBig) {
+      return null;
+    }
+
+    builder.setTransformScale(scale);
+    builder.setCurveTolerance(tolerance);
+    AbstractShapeHelper.visitShape(shape, builder);
+
+    FloatBuffer tesselated = builder.getTriangles();
+    int numFloats = tesselated.position();
+    int meshBytes = numFloats * (Float.SIZE / Byte.SIZE);
+    if (numFloats == 0 || meshBytes > maxBytes / 4) {
+      // too big to be worth keeping, use it once and don't build it again
+      sighting.tooBig = true;
+      return builder.getVertexBuffer();
+    }
+
+    sightings.remove(key);
+
+    VertexBuffer triangles = new VertexBuffer(numFloats / 2);
+    tesselated.flip();
+    triangles.addVertices(tesselated);
+
+    mesh = new Mesh(triangles, geometryHash, scaleBucket);
+    meshes.put(new MeshKey(shape, queue), mesh);
+    bytes += mesh.bytes;
+    evict();
+
+    return triangles;
+  }
+
+  /**
+   * Sets the maximum number of bytes of triangles to keep. Set to 0 to disable
+   * the cache.
+   */
+  public void setMaxBytes(int maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Drops all meshes.
+   */
+  public void clear() {
+    for (Mesh mesh : meshes.values()) {
+      mesh.triangles.release();
+    }
+
+    meshes.clear();
+    sightings.clear();
+    bytes = 0;
+  }
+
+  public long getHitCount() {
+    return hits;
+  }
+
+  public long getMissCount() {
+    return misses;
+  }
+
+  public long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * Gets the number of bytes used by all cached meshes.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  public int size() {
+    return meshes.size();
+  }
+
+  protected void evict() {
+    Iterator<Map.Entry<MeshKey, Mesh>> it = meshes.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Mesh mesh = it.next().getValue();
+      it.remove();
+      bytes -= mesh.bytes;
+      mesh.triangles.release();
+      evictions++;
+    }
+  }
+
+  protected void trimSightings() {
+    Iterator<MeshKey> it = sightings.keySet().iterator();
+    while (sightings.size() > MAX_SIGHTINGS && it.hasNext()) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  protected void remove(MeshKey key) {
+    sightings.remove(key);
+
+    Mesh mesh = meshes.remove(key);
+    if (mesh != null) {
+      bytes -= mesh.bytes;
+      mesh.triangles.release();
+    }
+  }
+
+  protected void expungeStaleEntries() {
+    Reference<? extends Shape> ref = queue.poll();
+    while (ref != null) {
+      remove((MeshKey) ref);
+      ref = queue.poll();
+    }
+  }
+
+  protected int geometryHash(PathIterator iterator) {
+    int hash = iterator.getWindingRule();
+    for (; !iterator.isDone(); iterator.next()) {
+      int type = iterator.currentSegment(coords);
+      hash = hash * 31 + type;
+
+      int numCoords;
+      switch (type) {
+      case PathIterator.SEG_MOVETO:
+      case PathIterator.SEG_LINETO:
+        numCoords = 2;
+        break;
+
+      case PathIterator.SEG_QUADTO:
+        numCoords = 4;
+        break;
+
+      case PathIterator.SEG_CUBICTO:
+        numCoords = 6;
+        break;
+
+      default:
+        numCoords = 0;
+        break;
+      }
+
+      for (int i = 0; i < numCoords; i++) {
+        hash = hash * 31 + Float.floatToIntBits(coords[i]);
+      }
+    }
+
+    return hash;
+  }
+
+  protected static class Mesh {
+    final VertexBuffer triangles;
+    final int geometryHash;
+    final int scaleBucket;
+    final int bytes;
+
+    Mesh(VertexBuffer triangles, int geometryHash, int scaleBucket) {
+      this.triangles = triangles;
+      this.geometryHash = geometryHash;
+      this.scaleBucket = scaleBucket;
+      bytes = triangles.getBuffer().capacity() * (Float.SIZE / Byte.SIZE);
+    }
+  }
+
+  /**
+   * A shape that was seen, but isn't cached.
+   */
+  protected static class Sighting {
+    final int geometryHash;
+    final int scaleBucket;
+    boolean tooBig;
+
+    Sighting(int geometryHash, int scaleBucket) {
+      this.geometryHash = geometryHash;
+      this.scaleBucket = scaleBucket;
+    }
+  }
+
+  /**
+   * Compares shapes by identity.
+   */
+  protected static class MeshKey extends WeakReference<Shape> {
+    private final int hash;
+
+    public MeshKey(Shape shape, ReferenceQueue<Shape> queue) {
+      super(shape, queue);
+      hash = System.identityHashCode(shape);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (obj instanceof MeshKey) {
+        MeshKey other = (MeshKey) obj;
+        return other.hash == hash && get() == other.get();
+      } else {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Collects the tesselated triangles without drawing them.
+   */
+  protected static class MeshBuilder extends AbstractTesselatorVisitor {
+    @Override
+    public void setGLContext(GLContext context) {
+      // nop
+    }
+
+    @Override
+    protected void endTess() {
+      // keep the triangles in the buffer
+    }
+
+    public FloatBuffer getTriangles() {
+      return vBuffer.getBuffer();
+    }
+
+    public VertexBuffer getVertexBuffer() {
+      return vBuffer;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import java.nio.FloatBuffer;
 
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.PathVisitor;
 import org.jogamp.glg2d.VertexBuffer;
 
@@ -98,6 +99,27 @@ public class SimpleOrTesselatingVisitor extends SimplePathVisitor {
     simpleFallback = simpleVisitor;
   }
 
+  @Override
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    super.setFrameStats(frameStats);
+    if (simpleFallback instanceof SimplePathVisitor) {
+      ((SimplePathVisitor) simpleFallback).setFrameStats(frameStats);
+    }
+
+    if (tesselatorFallback instanceof SimplePathVisitor) {
+      ((SimplePathVisitor) tesselatorFallback).setFrameStats(frameStats);
+    }
+  }
+
+  /**
+   * Releases this visitor's own buffer. The fallbacks belong to whoever
+   * created them.
+   */
+  @Override
+  public void dispose() {
+    buffer.release();
+  }
+
   @Override
   public void setGLContext(GLContext context) {
     simpleFallback.setGLContext(context);
@@ -246,6 +268,7 @@ public class SimpleOrTesselatingVisitor extends SimplePathVisitor {
   @Override
   public void endPoly() {
     if (isConvexSoFar) {
+      frameStats.recordConvexFill();
       simpleFallback.beginPoly(windingRule);
       drawToVisitor(simpleFallback, true);
       simpleFallback.endPoly();
@@ -15,6 +15,11 @@
  */
 package org.jogamp.glg2d.impl;
 
+import static java.lang.Math.ceil;
+import static java.lang.Math.sqrt;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+import org.jogamp.glg2d.GLG2DRenderingHints;
 import org.jogamp.glg2d.PathVisitor;
 
 /**
@@ -25,34 +30,134 @@ import org.jogamp.glg2d.PathVisitor;
  * href="http://www.niksula.hut.fi/~hkankaan/Homepages/bezierfast.html"
  * >http://www.niksula.hut.fi/~hkankaan/Homepages/bezierfast.html</a>. I derived
  * the implementation for the quadratic on my own, but it's simple.
+ * 
+ * <p>
+ * The number of steps is chosen per curve so that the flattened segments stay
+ * within a tolerance of the true curve, measured in device pixels. This uses
+ * Wang's formula on the second differences of the control points, scaled by
+ * the largest scale factor of the current transform. Small curves like rounded
+ * corners get only a few segments, large arcs get as many as they need.
+ * </p>
  */
 public abstract class SimplePathVisitor implements PathVisitor {
   /**
-   * Just a guess. Would be nice to make a better guess based on what's visually
-   * acceptable.
+   * The old fixed number of steps. Use {@link #setNumCurveSteps(int)} to get
+   * this behavior back.
    */
   public static final int CURVE_STEPS = 30;
 
-  protected int steps = CURVE_STEPS;
+  /**
+   * The maximum number of steps for a single curve, no matter how large it is
+   * on screen.
+   */
+  public static final int MAX_CURVE_STEPS = 256;
+
+  /**
+   * The default maximum distance, in device pixels, between the flattened
+   * curve and the real curve, from
+   * {@link GLG2DRenderingHints#VALUE_CURVE_TOLERANCE_DEFAULT}.
+   */
+  public static final float DEFAULT_TOLERANCE = ((Number) GLG2DRenderingHints.VALUE_CURVE_TOLERANCE_DEFAULT).floatValue();
+
+  /**
+   * A fixed number of steps, or 0 to pick the number of steps from the
+   * tolerance.
+   */
+  protected int steps = 0;
+
+  protected float tolerance = DEFAULT_TOLERANCE;
+
+  protected float transformScale = 1;
+
+  protected GLG2DFrameStats frameStats = GLG2DFrameStats.DISCARD;
+
+  /**
+   * Sets the stats the draw calls are counted in.
+   */
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
 
   /**
-   * Sets the number of steps to take in a quadratic or cubic curve spline.
+   * Sets a fixed number of steps to take in a quadratic or cubic curve spline.
+   * Set to 0 to use the tolerance instead.
    */
   public void setNumCurveSteps(int steps) {
     this.steps = steps;
   }
 
   /**
-   * Gets the number of steps to take in a quadratic or cubic curve spline.
+   * Gets the fixed number of steps to take in a quadratic or cubic curve
+   * spline, or 0 if the number of steps comes from the tolerance.
    */
   public int getNumCurveSteps() {
     return steps;
   }
 
+  /**
+   * Sets the maximum distance, in device pixels, between the flattened curve
+   * and the real curve.
+   */
+  public void setCurveTolerance(float tolerance) {
+    this.tolerance = tolerance;
+  }
+
+  public float getCurveTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Sets the scale from user space to device space. This is the largest scale
+   * factor of the current transform.
+   */
+  public void setTransformScale(float scale) {
+    transformScale = scale;
+  }
+
+  public float getTransformScale() {
+    return transformScale;
+  }
+
+  /**
+   * Returns the vertex storage this visitor owns to the {@code VertexArena}.
+   * The visitor can still be used afterwards, it gets new storage when it
+   * needs it.
+   */
+  public void dispose() {
+    // nop
+  }
+
+  /**
+   * Gets the number of steps for a curve whose control points have the given
+   * maximum second difference, in user space.
+   * 
+   * @param degree
+   *          2 for quadratic or 3 for cubic curves
+   */
+  protected int numSteps(int degree, float maxSecondDifference) {
+    if (steps > 0) {
+      return steps;
+    }
+
+    // Wang's formula
+    double flatness = maxSecondDifference * transformScale * degree * (degree - 1) / (8 * tolerance);
+    double n = ceil(sqrt(flatness));
+    if (n < 1 || Double.isNaN(n)) {
+      return 1;
+    } else if (n > MAX_CURVE_STEPS) {
+      return MAX_CURVE_STEPS;
+    } else {
+      return (int) n;
+    }
+  }
+
   @Override
   public void quadTo(float[] previousVertex, float[] control) {
     float[] p = new float[2];
 
+    int steps = numSteps(2, length(previousVertex[0] - 2 * control[0] + control[2],
+        previousVertex[1] - 2 * control[1] + control[3]));
+
     float xd, xdd, xdd_per_2;
     float yd, ydd, ydd_per_2;
     float t = 1F / steps;
@@ -90,6 +195,10 @@ public abstract class SimplePathVisitor implements PathVisitor {
   public void cubicTo(float[] previousVertex, float[] control) {
     float[] p = new float[2];
 
+    float dd1 = length(previousVertex[0] - 2 * control[0] + control[2], previousVertex[1] - 2 * control[1] + control[3]);
+    float dd2 = length(control[0] - 2 * control[2] + control[4], control[1] - 2 * control[3] + control[5]);
+    int steps = numSteps(3, Math.max(dd1, dd2));
+
     float xd, xdd, xddd, xdd_per_2, xddd_per_2, xddd_per_6;
     float yd, ydd, yddd, ydd_per_2, yddd_per_2, yddd_per_6;
     float t = 1F / steps;
@@ -134,4 +243,8 @@ public abstract class SimplePathVisitor implements PathVisitor {
     p[1] = control[5];
     lineTo(p);
   }
+
+  protected static float length(float x, float y) {
+    return (float) sqrt(x * x + y * y);
+  }
 }
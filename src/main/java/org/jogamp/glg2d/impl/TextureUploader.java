@@ -0,0 +1,343 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+
+/**
+ * Copies pixels from a {@code BufferedImage} into part of the bound texture.
+ * 
+ * <p>
+ * The common image types are read straight from their {@code DataBuffer} and
+ * uploaded in a GL format that matches their memory layout, so the pixels are
+ * copied once into the staging buffer and not converted. Other types go
+ * through {@code getRGB}. The staging buffer is kept and reused between
+ * uploads. Staging and uploading are separate steps so the pixels can be
+ * prepared away from the GL thread.
+ * </p>
+ * <p>
+ * The staging buffer may also be the mapped storage of a pixel buffer object,
+ * see {@link #TextureUploader(ByteBuffer)}. The pixels are then written
+ * straight into memory the driver owns.
+ * </p>
+ */
+public class TextureUploader {
+  private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+  /**
+   * The most bytes a pixel takes in any staged format.
+   */
+  public static final int MAX_BYTES_PER_PIXEL = 4;
+
+  protected ByteBuffer buffer;
+  protected IntBuffer intBuffer;
+
+  protected int[] argb = new int[0];
+
+  protected int format;
+  protected int type;
+  protected int stagedWidth;
+  protected int stagedHeight;
+
+  protected GLG2DFrameStats frameStats = GLG2DFrameStats.DISCARD;
+
+  public TextureUploader() {
+    this(BufferUtils.createByteBuffer(0));
+  }
+
+  /**
+   * Creates an uploader that stages into {@code storage}, for example the
+   * mapped storage of a pixel buffer object. The storage must hold
+   * {@link #MAX_BYTES_PER_PIXEL} bytes for every pixel staged, otherwise it's
+   * replaced by a new buffer.
+   */
+  public TextureUploader(ByteBuffer storage) {
+    buffer = storage.order(ByteOrder.nativeOrder());
+    intBuffer = buffer.asIntBuffer();
+  }
+
+  /**
+   * Sets the stats the uploads are counted in.
+   */
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  /**
+   * Checks if the pixels of the image can be uploaded without converting
+   * them.
+   */
+  public boolean isDirect(BufferedImage image) {
+    switch (image.getType()) {
+    case BufferedImage.TYPE_INT_ARGB:
+    case BufferedImage.TYPE_INT_ARGB_PRE:
+    case BufferedImage.TYPE_INT_RGB:
+      return image.getSampleModel() instanceof SinglePixelPackedSampleModel &&
+          image.getRaster().getDataBuffer() instanceof DataBufferInt;
+
+    case BufferedImage.TYPE_4BYTE_ABGR:
+    case BufferedImage.TYPE_3BYTE_BGR:
+    case BufferedImage.TYPE_BYTE_GRAY:
+      return image.getSampleModel() instanceof ComponentSampleModel &&
+          image.getRaster().getDataBuffer() instanceof DataBufferByte;
+
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Uploads a rectangle of the image into the texture bound to
+   * {@code GL_TEXTURE_2D}.
+   * 
+   * @param image
+   *          The source image
+   * @param x
+   *          The left of the rectangle in the image
+   * @param y
+   *          The top of the rectangle in the image
+   * @param width
+   *          The width of the rectangle
+   * @param height
+   *          The height of the rectangle
+   * @param texX
+   *          Where the left of the rectangle goes in the texture
+   * @param texY
+   *          Where the top of the rectangle goes in the texture
+   * @param alpha
+   *          {@code true} if the texture has an alpha channel. Images that have
+   *          to be converted are uploaded as RGBA, otherwise as RGB.
+   */
+  public void upload(BufferedImage image, int x, int y, int width, int height, int texX, int texY, boolean alpha) {
+    if (width > 0 && height > 0) {
+      stage(image, x, y, width, height, alpha);
+      uploadStaged(texX, texY);
+    }
+  }
+
+  /**
+   * Copies a rectangle of the image into the staging buffer. This doesn't
+   * touch GL, so it can be called from any thread as long as the uploader is
+   * only used by one thread at a time.
+   */
+  public void stage(BufferedImage image, int x, int y, int width, int height, boolean alpha) {
+    stagedWidth = width;
+    stagedHeight = height;
+
+    if (isDirect(image)) {
+      switch (image.getType()) {
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        // bytes A, B, G, R are read as one unsigned int with R in the high bits
+        format = GL11.GL_RGBA;
+        type = LITTLE_ENDIAN ? GL12.GL_UNSIGNED_INT_8_8_8_8 : GL12.GL_UNSIGNED_INT_8_8_8_8_REV;
+        stageBytes(image, x, y, width, height);
+        break;
+
+      case BufferedImage.TYPE_3BYTE_BGR:
+        format = GL12.GL_BGR;
+        type = GL11.GL_UNSIGNED_BYTE;
+        stageBytes(image, x, y, width, height);
+        break;
+
+      case BufferedImage.TYPE_BYTE_GRAY:
+        format = GL11.GL_LUMINANCE;
+        type = GL11.GL_UNSIGNED_BYTE;
+        stageBytes(image, x, y, width, height);
+        break;
+
+      default:
+        // ARGB ints, alpha is ignored for RGB textures
+        format = GL12.GL_BGRA;
+        type = GL12.GL_UNSIGNED_INT_8_8_8_8_REV;
+        stageInts(image, x, y, width, height, alpha);
+        break;
+      }
+    } else {
+      format = alpha ? GL11.GL_RGBA : GL11.GL_RGB;
+      type = GL11.GL_UNSIGNED_BYTE;
+      stageConverted(image, x, y, width, height, alpha);
+    }
+  }
+
+  /**
+   * Uploads the staged pixels into the texture bound to {@code GL_TEXTURE_2D}.
+   * 
+   * @param texX
+   *          Where the left of the staged rectangle goes in the texture
+   * @param texY
+   *          Where the top of the staged rectangle goes in the texture
+   */
+  public void uploadStaged(int texX, int texY) {
+    // RGB and gray rows aren't always 4-byte aligned
+    GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+    GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, texX, texY, stagedWidth, stagedHeight, format, type, buffer);
+    GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+    frameStats.recordTextureUpload();
+  }
+
+  /**
+   * Uploads the staged pixels from the pixel buffer object bound to
+   * {@code GL_PIXEL_UNPACK_BUFFER}. The pixels must have been staged into the
+   * buffer's mapped storage and the buffer must be unmapped.
+   * 
+   * @param texX
+   *          Where the left of the staged rectangle goes in the texture
+   * @param texY
+   *          Where the top of the staged rectangle goes in the texture
+   */
+  public void uploadStagedFromPixelBuffer(int texX, int texY) {
+    GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+    GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, texX, texY, stagedWidth, stagedHeight, format, type, 0L);
+    GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+    frameStats.recordTextureUpload();
+  }
+
+  protected void stageInts(BufferedImage image, int x, int y, int width, int height, boolean alpha) {
+    WritableRaster raster = image.getRaster();
+    DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+    int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+    int[] data = dataBuffer.getData();
+    int offset = dataBuffer.getOffset() + (y - raster.getSampleModelTranslateY()) * stride +
+        (x - raster.getSampleModelTranslateX());
+
+    ensureCapacity(width * height * 4);
+    intBuffer.clear();
+    if (image.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+      // our blending expects straight alpha
+      for (int row = 0; row < height; row++) {
+        int start = offset + row * stride;
+        for (int i = start; i < start + width; i++) {
+          intBuffer.put(unpremultiply(data[i]));
+        }
+      }
+    } else if (alpha && image.getType() == BufferedImage.TYPE_INT_RGB) {
+      // the top byte of RGB pixels is 0, which would be transparent
+      for (int row = 0; row < height; row++) {
+        int start = offset + row * stride;
+        for (int i = start; i < start + width; i++) {
+          intBuffer.put(data[i] | 0xff000000);
+        }
+      }
+    } else if (stride == width) {
+      intBuffer.put(data, offset, width * height);
+    } else {
+      for (int row = 0; row < height; row++) {
+        intBuffer.put(data, offset + row * stride, width);
+      }
+    }
+
+    buffer.position(0).limit(width * height * 4);
+  }
+
+  protected void stageBytes(BufferedImage image, int x, int y, int width, int height) {
+    WritableRaster raster = image.getRaster();
+    DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+    ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+    int stride = sampleModel.getScanlineStride();
+    int pixelStride = sampleModel.getPixelStride();
+    byte[] data = dataBuffer.getData();
+    int offset = dataBuffer.getOffset() + (y - raster.getSampleModelTranslateY()) * stride +
+        (x - raster.getSampleModelTranslateX()) * pixelStride + minBandOffset(sampleModel);
+
+    int rowBytes = width * pixelStride;
+    ensureCapacity(rowBytes * height);
+    buffer.clear();
+    if (stride == rowBytes) {
+      buffer.put(data, offset, rowBytes * height);
+    } else {
+      for (int row = 0; row < height; row++) {
+        buffer.put(data, offset + row * stride, rowBytes);
+      }
+    }
+
+    buffer.flip();
+  }
+
+  protected void stageConverted(BufferedImage image, int x, int y, int width, int height, boolean alpha) {
+    int size = width * height;
+    if (argb.length < size) {
+      argb = new int[size];
+    }
+
+    image.getRGB(x, y, width, height, argb, 0, width);
+
+    ensureCapacity(size * (alpha ? 4 : 3));
+    buffer.clear();
+    for (int i = 0; i < size; i++) {
+      int p = argb[i];
+      buffer.put((byte) (p >> 16));
+      buffer.put((byte) (p >> 8));
+      buffer.put((byte) p);
+      if (alpha) {
+        buffer.put((byte) (p >> 24));
+      }
+    }
+
+    buffer.flip();
+  }
+
+  /**
+   * Gets the size of the staging buffer, in bytes.
+   */
+  public int getCapacity() {
+    return buffer.capacity();
+  }
+
+  protected void ensureCapacity(int bytes) {
+    if (buffer.capacity() < bytes) {
+      buffer = BufferUtils.createByteBuffer(Math.max(bytes, buffer.capacity() * 2));
+      intBuffer = buffer.asIntBuffer();
+    }
+  }
+
+  private static int minBandOffset(ComponentSampleModel sampleModel) {
+    int[] offsets = sampleModel.getBandOffsets();
+    int min = offsets[0];
+    for (int i = 1; i < offsets.length; i++) {
+      min = Math.min(min, offsets[i]);
+    }
+
+    return min;
+  }
+
+  private static int unpremultiply(int p) {
+    int a = p >>> 24;
+    if (a == 0) {
+      return 0;
+    } else if (a == 0xff) {
+      return p;
+    }
+
+    int r = Math.min(((p >> 16) & 0xff) * 255 / a, 255);
+    int g = Math.min(((p >> 8) & 0xff) * 255 / a, 255);
+    int b = Math.min((p & 0xff) * 255 / a, 255);
+    return a << 24 | r << 16 | g << 8 | b;
+  }
+}
@@ -24,6 +24,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
 
 import org.jogamp.glg2d.VertexBuffer;
+import org.jogamp.glg2d.impl.GLStateCache;
 import org.jogamp.glg2d.impl.SimplePathVisitor;
 
 /**
@@ -51,8 +52,9 @@ public class FastLineVisitor extends SimplePathVisitor {
 
   @Override
   public void setStroke(BasicStroke stroke) {
-    GL11.glLineWidth(glLineWidth);
-    GL11.glPointSize(glLineWidth);
+    GLStateCache state = GLStateCache.getGLStateCache();
+    state.setLineWidth(glLineWidth);
+    state.setPointSize(glLineWidth);
     
     /*
      * Not perfect copy of the BasicStroke implementation, but it does get
@@ -85,11 +87,11 @@ public class FastLineVisitor extends SimplePathVisitor {
        * XXX Should actually use the stroke phase, but not sure how yet.
        */
 
-      GL11.glEnable(GL11.GL_LINE_STIPPLE);
+      state.setEnabled(GL11.GL_LINE_STIPPLE, true);
       int factor = (int) totalLength;
       GL11.glLineStipple(factor >> 4, (short) mask);
     } else {
-      GL11.glDisable(GL11.GL_LINE_STIPPLE);
+      state.setEnabled(GL11.GL_LINE_STIPPLE, false);
     }
 
     this.stroke = stroke;
@@ -151,7 +153,7 @@ public class FastLineVisitor extends SimplePathVisitor {
   protected void drawLine(boolean close) {
     FloatBuffer buf = buffer.getBuffer();
     int p = buf.position();
-    buffer.drawBuffer(close ? GL11.GL_LINE_LOOP : GL11.GL_LINE_STRIP);
+    buffer.drawBuffer(close ? GL11.GL_LINE_LOOP : GL11.GL_LINE_STRIP, frameStats);
 
     /*
      * We'll ignore butt endcaps, but we'll pretend like we're drawing round,
@@ -161,7 +163,7 @@ public class FastLineVisitor extends SimplePathVisitor {
      */
     if (stroke.getDashArray() == null) {
       buf.position(p);
-      buffer.drawBuffer(GL11.GL_POINTS);
+      buffer.drawBuffer(GL11.GL_POINTS, frameStats);
     }
   }
 
@@ -175,16 +177,11 @@ public class FastLineVisitor extends SimplePathVisitor {
     GL11.glMatrixMode(GL11.GL_MODELVIEW);
     GL11.glPushMatrix();
     GL11.glTranslatef(0.5f, 0.5f, 0);
-
-    GL11.glPushAttrib(GL11.GL_LINE_BIT | GL11.GL_POINT_BIT);
   }
 
   @Override
   public void endPoly() {
     drawLine(false);
-    GL11.glDisable(GL11.GL_LINE_STIPPLE);
     GL11.glPopMatrix();
-
-    GL11.glPopAttrib();
   }
 }
@@ -22,6 +22,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
 
 import org.jogamp.glg2d.VertexBuffer;
+import org.jogamp.glg2d.impl.GLStateCache;
 import org.jogamp.glg2d.impl.SimplePathVisitor;
 
 /**
@@ -50,12 +51,12 @@ public class FillSimpleConvexPolygonVisitor extends SimplePathVisitor {
     /*
      * We don't care what the winding rule is, we disable face culling.
      */
-    GL11.glDisable(GL11.GL_CULL_FACE);
+    GLStateCache.getGLStateCache().setEnabled(GL11.GL_CULL_FACE, false);
   }
 
   @Override
   public void closeLine() {
-    vBuffer.drawBuffer(GL11.GL_POLYGON);
+    vBuffer.drawBuffer(GL11.GL_POLYGON, frameStats);
   }
 
   @Override
@@ -25,6 +25,7 @@ import org.newdawn.slick.opengl.Texture;
 
 import org.jogamp.glg2d.GLGraphics2D;
 import org.jogamp.glg2d.impl.AbstractImageHelper;
+import org.jogamp.glg2d.impl.GLStateCache;
 
 public class GL2ImageDrawer extends AbstractImageHelper {
   protected GLContext context;
@@ -39,8 +40,8 @@ public class GL2ImageDrawer extends AbstractImageHelper {
 
   @Override
   protected void begin(Texture texture, AffineTransform xform, Color bgcolor) {
-    GL11.glTexEnvi(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, GL11.GL_MODULATE);
-    GL11.glTexParameterf(GL11.GL_TEXTURE_ENV, GL11.GL_TEXTURE_ENV_MODE, GL11.GL_BLEND);
+    GLStateCache state = GLStateCache.getGLStateCache();
+    state.setTexEnvMode(GL11.GL_MODULATE);
 
     /*
      * FIXME This is unexpected since we never disable blending, but in some
@@ -49,8 +50,8 @@ public class GL2ImageDrawer extends AbstractImageHelper {
      */
     g2d.setComposite(g2d.getComposite());
 
-    GL11.glEnable(GL11.GL_TEXTURE_2D);
-    texture.bind();
+    state.setEnabled(GL11.GL_TEXTURE_2D, true);
+    state.bindTexture(texture);
 
     savedTransform = null;
     if (xform != null && !xform.isIdentity()) {
@@ -67,7 +68,7 @@ public class GL2ImageDrawer extends AbstractImageHelper {
       g2d.setTransform(savedTransform);
     }
 
-    GL11.glDisable(GL11.GL_TEXTURE_2D);
+    GLStateCache.getGLStateCache().setEnabled(GL11.GL_TEXTURE_2D, false);
     g2d.getColorHelper().setColorRespectComposite(g2d.getColor());
   }
 
@@ -89,5 +90,6 @@ public class GL2ImageDrawer extends AbstractImageHelper {
     GL11.glVertex2f(dx1, dy1);
 
     GL11.glEnd();
+    g2d.getFrameStats().recordDraw(4);
   }
 }
@@ -27,21 +27,26 @@ import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GLContext;
 
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.GLGraphics2D;
+import org.jogamp.glg2d.VertexBuffer;
 import org.jogamp.glg2d.impl.AbstractShapeHelper;
+import org.jogamp.glg2d.impl.GLStateCache;
 import org.jogamp.glg2d.impl.SimpleOrTesselatingVisitor;
 
 public class GL2ShapeDrawer extends AbstractShapeHelper {
   protected GLContext context;
 
   protected FillSimpleConvexPolygonVisitor simpleFillVisitor;
+  protected GL2TesselatorVisitor tesselatingVisitor;
   protected SimpleOrTesselatingVisitor complexFillVisitor;
   protected LineDrawingVisitor simpleStrokeVisitor;
   protected FastLineVisitor fastLineVisitor;
 
   public GL2ShapeDrawer() {
     simpleFillVisitor = new FillSimpleConvexPolygonVisitor();
-    complexFillVisitor = new SimpleOrTesselatingVisitor(simpleFillVisitor, new GL2TesselatorVisitor());
+    tesselatingVisitor = new GL2TesselatorVisitor();
+    complexFillVisitor = new SimpleOrTesselatingVisitor(simpleFillVisitor, tesselatingVisitor);
     simpleStrokeVisitor = new LineDrawingVisitor();
     fastLineVisitor = new FastLineVisitor();
   }
@@ -54,6 +59,20 @@ public class GL2ShapeDrawer extends AbstractShapeHelper {
     complexFillVisitor.setGLContext(context);
     simpleStrokeVisitor.setGLContext(context);
     fastLineVisitor.setGLContext(context);
+
+    GLG2DFrameStats frameStats = g2d.getFrameStats();
+    complexFillVisitor.setFrameStats(frameStats);
+    simpleStrokeVisitor.setFrameStats(frameStats);
+    fastLineVisitor.setFrameStats(frameStats);
+  }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+
+    tesselatingVisitor.dispose();
+    complexFillVisitor.dispose();
+    simpleStrokeVisitor.dispose();
   }
 
   @Override
@@ -62,9 +81,9 @@ public class GL2ShapeDrawer extends AbstractShapeHelper {
 
     if (key == RenderingHints.KEY_ANTIALIASING) {
       if (value == RenderingHints.VALUE_ANTIALIAS_ON) {
-       GL11.glEnable(GL13.GL_MULTISAMPLE);
+        GLStateCache.getGLStateCache().setEnabled(GL13.GL_MULTISAMPLE, true);
       } else {
-        GL11.glDisable(GL13.GL_MULTISAMPLE);
+        GLStateCache.getGLStateCache().setEnabled(GL13.GL_MULTISAMPLE, false);
       }
     }
   }
@@ -78,20 +97,27 @@ public class GL2ShapeDrawer extends AbstractShapeHelper {
         fastLineVisitor.setStroke(basicStroke);
         traceShape(shape, fastLineVisitor);
         return;
-      } else if (basicStroke.getDashArray() == null) {
+      } else {
         simpleStrokeVisitor.setStroke(basicStroke);
         traceShape(shape, simpleStrokeVisitor);
         return;
       }
     }
 
-    // can fall through for various reasons
+    // other strokes only give us their outline
+    g2d.getFrameStats().recordStrokeFallback();
     fill(stroke.createStrokedShape(shape));
   }
 
+  @Override
+  protected void drawTriangles(VertexBuffer triangles) {
+    triangles.drawBuffer(GL11.GL_TRIANGLES, g2d.getFrameStats());
+  }
+
   @Override
   protected void fill(Shape shape, boolean forceSimple) {
     if (forceSimple) {
+      g2d.getFrameStats().recordConvexFill();
       traceShape(shape, simpleFillVisitor);
     } else {
       traceShape(shape, complexFillVisitor);
@@ -29,6 +29,6 @@ public class GL2TesselatorVisitor extends AbstractTesselatorVisitor {
 
   @Override
   protected void endTess() {
-    vBuffer.drawBuffer(drawMode);
+    vBuffer.drawBuffer(drawMode, frameStats);
   }
 }
@@ -24,9 +24,9 @@ import org.lwjgl.opengl.GLContext;
 import org.jogamp.glg2d.impl.BasicStrokeLineVisitor;
 
 /**
- * Draws a line, as outlined by a {@link BasicStroke}. The current
- * implementation supports everything except dashes. This class draws a series
- * of quads for each line segment, joins corners and endpoints as appropriate.
+ * Draws a line, as outlined by a {@link BasicStroke}, including dashes. This
+ * class draws a series of quads for each line segment, joins corners and
+ * endpoints as appropriate.
  */
 public class LineDrawingVisitor extends BasicStrokeLineVisitor {
   protected GLContext context;
@@ -58,6 +58,6 @@ public class LineDrawingVisitor extends BasicStrokeLineVisitor {
 
   @Override
   protected void drawBuffer() {
-    vBuffer.drawBuffer(GL11.GL_TRIANGLE_STRIP);
+    vBuffer.drawBuffer(GL11.GL_TRIANGLE_STRIP, frameStats);
   }
 }
@@ -28,6 +28,9 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL32;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
+import org.jogamp.glg2d.impl.GLStateCache;
+
 public abstract class AbstractShaderPipeline implements ShaderPipeline {
   protected int vertexShaderId = 0;
   protected int geometryShaderId = 0;
@@ -37,86 +40,214 @@ public abstract class AbstractShaderPipeline implements ShaderPipeline {
   protected String geometryShaderFileName;
   protected String fragmentShaderFileName;
 
+  /**
+   * The shader sources, only kept while setting up.
+   */
+  protected String vertexShaderSource;
+  protected String geometryShaderSource;
+  protected String fragmentShaderSource;
+
+  /**
+   * The shared program from {@link ShaderProgramRegistry}.
+   */
+  protected ShaderProgramRegistry.Program program;
+
   protected int programId = 0;
   protected int transformLocation = -1;
   protected int colorLocation = -1;
 
+  /**
+   * Whether the transform and color come from the {@link SharedUniformBuffer}.
+   */
+  protected boolean usesUniformBlock;
+
+  protected GLG2DFrameStats frameStats = GLG2DFrameStats.DISCARD;
+
   public AbstractShaderPipeline(String vertexShaderFileName, String geometryShaderFileName, String fragmentShaderFileName) {
     this.vertexShaderFileName = vertexShaderFileName;
     this.geometryShaderFileName = geometryShaderFileName;
     this.fragmentShaderFileName = fragmentShaderFileName;
   }
 
+  /**
+   * Sets the stats the draw calls are counted in.
+   */
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  /**
+   * Gets the program from the registry, compiling and linking it only if no
+   * other pipeline on this context built the same one and there's no binary
+   * of it in the {@link ProgramBinaryCache}.
+   */
   @Override
   public void setup() {
-    createProgramAndAttach();
+    if (program != null) {
+      delete();
+    }
+
+    vertexShaderSource = readSource(vertexShaderFileName);
+    geometryShaderSource = readSource(geometryShaderFileName);
+    fragmentShaderSource = readSource(fragmentShaderFileName);
+
+    ShaderProgramRegistry registry = ShaderProgramRegistry.getRegistry();
+    String key = programKey();
+    program = registry.acquire(key);
+    if (program == null) {
+      long start = System.nanoTime();
+      programId = ProgramBinaryCache.load(key);
+      boolean fromCache = programId != 0;
+      if (!fromCache) {
+        createProgramAndAttach();
+      }
+
+      GLG2DFrameStats.recordProgramSetup(fromCache, System.nanoTime() - start);
+      if (!fromCache) {
+        ProgramBinaryCache.store(key, programId);
+      }
+
+      program = registry.register(key, programId);
+    }
+
+    programId = program.getProgramId();
+    vertexShaderSource = geometryShaderSource = fragmentShaderSource = null;
+
     setupUniformsAndAttributes();
   }
 
+  /**
+   * Gets the preprocessor lines put in front of every shader of this program,
+   * e.g. {@code "#define USE_FOO 1\n"}. This declares {@code GLG2D_UNIFORMS},
+   * subclasses should add theirs to it.
+   */
+  protected String getDefines() {
+    return SharedUniformBuffer.getDeclarations();
+  }
+
+  /**
+   * Gets the key of the program in the {@link ShaderProgramRegistry}. Two
+   * pipelines with the same key share the program, so this must cover
+   * everything that goes into building it.
+   */
+  protected String programKey() {
+    StringBuilder key = new StringBuilder();
+    key.append(getDefines()).append('\0');
+    key.append(vertexShaderSource).append('\0');
+    key.append(geometryShaderSource).append('\0');
+    key.append(fragmentShaderSource);
+    return key.toString();
+  }
+
   @Override
   public boolean isSetup() {
     return programId > 0;
   }
 
   public void setColor(FloatBuffer rgba) {
-    if (colorLocation >= 0) {
-    	GL20.glUniform4(colorLocation, rgba);
+    setColor(rgba, 0);
+  }
+
+  /**
+   * Sets the color, unless it's already set.
+   * 
+   * @param version
+   *          The version from {@link UniformBufferObject.ColorHook}, or 0 if
+   *          unknown
+   */
+  public void setColor(FloatBuffer rgba, int version) {
+    if (usesUniformBlock) {
+      SharedUniformBuffer.getSharedUniformBuffer().setColor(rgba, version);
+    } else if (colorLocation >= 0 && program.updateColor(rgba, version)) {
+      GL20.glUniform4(colorLocation, program.color);
     }
   }
 
   public void setTransform(FloatBuffer glMatrixData) {
-    if (transformLocation >= 0) {
-    	GL20.glUniformMatrix4(transformLocation, false, glMatrixData);
-    }
+    setTransform(glMatrixData, 0);
   }
 
-  protected void createProgramAndAttach() {
-    if (GL20.glIsProgram(programId)) {
-      delete();
+  /**
+   * Sets the transform, unless it's already set.
+   * 
+   * @param version
+   *          The version from {@link UniformBufferObject.TransformHook}, or 0
+   *          if unknown
+   */
+  public void setTransform(FloatBuffer glMatrixData, int version) {
+    if (usesUniformBlock) {
+      SharedUniformBuffer.getSharedUniformBuffer().setTransform(glMatrixData, version);
+    } else if (transformLocation >= 0 && program.updateTransform(glMatrixData, version)) {
+      GL20.glUniformMatrix4(transformLocation, false, program.transform);
     }
+  }
 
+  protected void createProgramAndAttach() {
     programId = GL20.glCreateProgram();
 
-    attachShaders();
-
-    GL20.glLinkProgram(programId);
-    checkProgramThrowException(programId, GL20.GL_LINK_STATUS);
+    try {
+      attachShaders();
+
+      ProgramBinaryCache.prepareForLink(programId);
+      GL20.glLinkProgram(programId);
+      checkProgramThrowException(programId, GL20.GL_LINK_STATUS);
+    } catch (ShaderException e) {
+      GL20.glDeleteProgram(programId);
+      programId = 0;
+      throw e;
+    } finally {
+      // the program keeps what it needs, the shaders aren't used again
+      deleteShaders();
+    }
   }
 
   protected void setupUniformsAndAttributes() {
-    // nop
+    usesUniformBlock = SharedUniformBuffer.bindBlock(programId);
   }
 
   protected void attachShaders() {
-    if (vertexShaderFileName != null) {
-      vertexShaderId = compileShader(GL20.GL_VERTEX_SHADER, getClass(), vertexShaderFileName);
+    if (vertexShaderSource != null) {
+      vertexShaderId = compileShader(GL20.GL_VERTEX_SHADER, vertexShaderSource);
       GL20.glAttachShader(programId, vertexShaderId);
     }
 
-    if (geometryShaderFileName != null) {
-      geometryShaderId = compileShader(GL32.GL_GEOMETRY_SHADER, getClass(), geometryShaderFileName);
+    if (geometryShaderSource != null) {
+      geometryShaderId = compileShader(GL32.GL_GEOMETRY_SHADER, geometryShaderSource);
       GL20.glAttachShader(programId, geometryShaderId);
     }
 
-    if (fragmentShaderFileName != null) {
-      fragmentShaderId = compileShader(GL20.GL_FRAGMENT_SHADER, getClass(), fragmentShaderFileName);
+    if (fragmentShaderSource != null) {
+      fragmentShaderId = compileShader(GL20.GL_FRAGMENT_SHADER, fragmentShaderSource);
       GL20.glAttachShader(programId, fragmentShaderId);
     }
   }
 
   @Override
   public void use( boolean use) {
-    GL20.glUseProgram(use ? programId : 0);
+    // the program stays bound until another one is used, GLStateCache unbinds it after the frame
+    if (use) {
+      GLStateCache.getGLStateCache().useProgram(programId);
+    }
   }
 
+  /**
+   * Lets go of the shared program. It's deleted once no pipeline uses it.
+   */
   @Override
   public void delete() {
-    GL20.glDeleteProgram(programId);
-    deleteShaders();
+    if (program != null) {
+      ShaderProgramRegistry.getRegistry().release(program);
+      program = null;
+    }
 
+    deleteShaders();
     programId = 0;
   }
 
+  public int getProgramId() {
+    return programId;
+  }
+
   protected void deleteShaders() {
     if (GL20.glIsShader(vertexShaderId)) {
       GL20.glDeleteShader(vertexShaderId);
@@ -139,6 +270,52 @@ public abstract class AbstractShaderPipeline implements ShaderPipeline {
     return id;
   }
 
+  /**
+   * Compiles the source with the defines of this pipeline.
+   */
+  protected int compileShader(int type, String source) throws ShaderException {
+    int id = compileShader(type, toBuffer(withDefines(source)));
+    checkShaderThrowException(id);
+    return id;
+  }
+
+  /**
+   * Puts the defines after the {@code #version} line, which must come first.
+   */
+  protected String withDefines(String source) {
+    String defines = getDefines();
+    if (defines.length() == 0) {
+      return source;
+    }
+
+    if (source.startsWith("#version")) {
+      int eol = source.indexOf('\n') + 1;
+      return source.substring(0, eol) + defines + source.substring(eol);
+    } else {
+      return defines + source;
+    }
+  }
+
+  protected String readSource(String name) throws ShaderException {
+    if (name == null) {
+      return null;
+    }
+
+    ByteBuffer buf = readShader(getClass(), name);
+    byte[] bytes = new byte[buf.position()];
+    buf.flip();
+    buf.get(bytes);
+    return new String(bytes);
+  }
+
+  private static ByteBuffer toBuffer(String source) {
+    byte[] bytes = source.getBytes();
+    ByteBuffer buf = BufferUtils.createByteBuffer(bytes.length);
+    buf.put(bytes);
+    buf.flip();
+    return buf;
+  }
+
   protected int compileShader(int type, ByteBuffer src) throws ShaderException {
     int id = GL20.glCreateShader(type);
 
@@ -15,16 +15,14 @@
  */
 package org.jogamp.glg2d.impl.shader;
 
-import static org.jogamp.glg2d.GLG2DUtils.ensureIsGLBuffer;
-
 import java.nio.FloatBuffer;
 
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 
+import org.jogamp.glg2d.impl.GLStateCache;
+
 public class AnyModePipeline extends AbstractShaderPipeline {
-  protected int vertCoordBuffer = -1;
   protected int vertCoordLocation = -1;
 
   public AnyModePipeline() {
@@ -36,23 +34,15 @@ public class AnyModePipeline extends AbstractShaderPipeline {
   }
 
   public void bindBuffer() {
-    GL20.glEnableVertexAttribArray(vertCoordLocation);
-    vertCoordBuffer = ensureIsGLBuffer(vertCoordBuffer);
-
-    GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertCoordBuffer);
-    GL20.glVertexAttribPointer(vertCoordLocation, 2, GL11.GL_FLOAT, false, 0, 0);
+    GLStateCache.getGLStateCache().setVertexAttribArrays(GLStateCache.attribBit(vertCoordLocation));
+    StreamingBuffer.getStreamingBuffer().bind();
   }
 
   public void bindBufferData(FloatBuffer vertexBuffer) {
     bindBuffer();
 
-    int count = vertexBuffer.limit() - vertexBuffer.position();
-    GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertexBuffer, GL15.GL_STREAM_DRAW);
-  }
-
-  public void unbindBuffer() {
-    GL20.glDisableVertexAttribArray(vertCoordLocation);
-    GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    int offset = StreamingBuffer.getStreamingBuffer().upload(vertexBuffer);
+    GL20.glVertexAttribPointer(vertCoordLocation, 2, GL11.GL_FLOAT, false, 0, offset);
   }
 
   public void draw(int mode, FloatBuffer vertexBuffer) {
@@ -60,8 +50,7 @@ public class AnyModePipeline extends AbstractShaderPipeline {
 
     int numPts = (vertexBuffer.limit() - vertexBuffer.position()) / 2;
     GL11.glDrawArrays(mode, 0, numPts);
-
-    unbindBuffer();
+    frameStats.recordDraw(numPts);
   }
 
   @Override
@@ -73,13 +62,4 @@ public class AnyModePipeline extends AbstractShaderPipeline {
 
     vertCoordLocation = GL20.glGetAttribLocation(programId, "a_vertCoord");
   }
-
-  @Override
-  public void delete() {
-    super.delete();
-
-    if (GL15.glIsBuffer(vertCoordBuffer)) {
-      GL15.glDeleteBuffers(vertCoordBuffer);
-    }
-  }
 }
@@ -1,4 +1,4 @@
-uniform vec4 u_color;
+GLG2D_UNIFORMS
 
 void main() {
   gl_FragColor = u_color;
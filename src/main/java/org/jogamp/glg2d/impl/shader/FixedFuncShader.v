@@ -1,4 +1,4 @@
-uniform mat4 u_transform;
+GLG2D_UNIFORMS
 
 in vec2 a_vertCoord;
 
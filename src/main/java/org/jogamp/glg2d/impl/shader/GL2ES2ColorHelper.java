@@ -29,6 +29,7 @@ import org.jogamp.glg2d.impl.shader.UniformBufferObject.ColorHook;
 
 public class GL2ES2ColorHelper extends AbstractColorHelper implements ColorHook {
   protected FloatBuffer foregroundRGBA = BufferUtils.createFloatBuffer(4);
+  protected int colorVersion = UniformBufferObject.nextVersion();
 
   protected GL2ES2ImagePipeline pipeline;
 
@@ -44,6 +45,7 @@ public class GL2ES2ColorHelper extends AbstractColorHelper implements ColorHook
   public void setG2D(GLGraphics2D g2d) {
     if (g2d instanceof GLShaderGraphics2D) {
       ((GLShaderGraphics2D) g2d).getUniformsObject().colorHook = this;
+      pipeline.setFrameStats(g2d.getFrameStats());
     } else {
       throw new IllegalArgumentException(GLGraphics2D.class.getName() + " implementation must be instance of "
           + GLShaderGraphics2D.class.getSimpleName());
@@ -52,11 +54,22 @@ public class GL2ES2ColorHelper extends AbstractColorHelper implements ColorHook
     super.setG2D(g2d);
   }
 
+  @Override
+  public void setComposite(Composite comp) {
+    // pending triangles were recorded with the previous blend function
+    if (g2d != null && comp != null && !comp.equals(getComposite())) {
+      ((GLShaderGraphics2D) g2d).getBatch().flush();
+    }
+
+    super.setComposite(comp);
+  }
+
   @Override
   public void setColorNoRespectComposite(Color c) {
 	  float[] cArray = { c.getRed() / 255f,c.getGreen() / 255f,c.getBlue() / 255f,c.getAlpha() / 255f};
 	  foregroundRGBA.clear();
 	  foregroundRGBA.put(cArray);
+	  colorVersion = UniformBufferObject.nextVersion();
   }
 
   @Override
@@ -65,6 +78,7 @@ public class GL2ES2ColorHelper extends AbstractColorHelper implements ColorHook
     float[] cArray = { c.getRed() / 255f,c.getGreen() / 255f,c.getBlue() / 255f,(c.getAlpha() / 255f) * alpha};
 	  foregroundRGBA.clear();
 	  foregroundRGBA.put(cArray);
+	  colorVersion = UniformBufferObject.nextVersion();
   }
 
   @Override
@@ -189,4 +203,9 @@ public class GL2ES2ColorHelper extends AbstractColorHelper implements ColorHook
   public FloatBuffer getRGBA() {
     return foregroundRGBA;
   }
+
+  @Override
+  public int getColorVersion() {
+    return colorVersion;
+  }
 }
@@ -16,22 +16,33 @@
 package org.jogamp.glg2d.impl.shader;
 
 
+import static org.jogamp.glg2d.impl.FloatBufferUtils.copy;
+import static org.jogamp.glg2d.impl.FloatBufferUtils.equal;
+
 import java.awt.Color;
 import java.awt.geom.AffineTransform;
 import java.nio.FloatBuffer;
 
-import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GLContext;
 
 
 import org.jogamp.glg2d.GLGraphics2D;
+import org.jogamp.glg2d.VertexBuffer;
 import org.jogamp.glg2d.impl.AbstractImageHelper;
+import org.jogamp.glg2d.impl.GLStateCache;
+import org.jogamp.glg2d.impl.ImageAtlas;
+import org.jogamp.glg2d.impl.shader.TriangleBatch.PendingDraw;
 
 import org.lwjgl.BufferUtils;
 import org.newdawn.slick.opengl.Texture;
 
-public class GL2ES2ImageDrawer extends AbstractImageHelper {
+/**
+ * Draws images with a texture shader. Draws from the image atlas are deferred
+ * and drawn together as long as they use the same atlas page, color and
+ * transform.
+ */
+public class GL2ES2ImageDrawer extends AbstractImageHelper implements PendingDraw {
   protected GLShaderGraphics2D g2d;
   protected GLContext context;
 
@@ -41,6 +52,19 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
   private float[] white_static = new float[] { 1, 1, 1, 1 };
   private FloatBuffer white = BufferUtils.createFloatBuffer(4);
 
+  /**
+   * Pending atlas quads, interleaved vertex and texture coordinates.
+   */
+  protected VertexBuffer quads = new VertexBuffer(1024);
+
+  protected Texture pendingPage;
+  protected FloatBuffer pendingColor = BufferUtils.createFloatBuffer(4);
+  protected FloatBuffer pendingTransform = BufferUtils.createFloatBuffer(16);
+  protected int pendingColorVersion;
+  protected int pendingTransformVersion;
+
+  private float[] corners = new float[8];
+
   public GL2ES2ImageDrawer() {
     this(new GL2ES2ImagePipeline());
   }
@@ -64,16 +88,21 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
     if (!shader.isSetup()) {
       shader.setup();
     }
+
+    shader.setFrameStats(g2d.getFrameStats());
   }
 
   @Override
   public void dispose() {
     super.dispose();
     shader.delete();
+    quads.release();
   }
 
   @Override
   protected void begin(Texture texture, AffineTransform xform, Color bgcolor) {
+    g2d.getBatch().flush();
+
     /*
      * FIXME This is unexpected since we never disable blending, but in some
      * cases it interacts poorly with multiple split panes, scroll panes and the
@@ -81,12 +110,8 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
      */
     g2d.setComposite(g2d.getComposite());
 
-    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
-    GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
-
     GL13.glActiveTexture(GL13.GL_TEXTURE0);
-    GL11.glEnable(GL11.GL_TEXTURE_2D);
-    texture.bind();
+    GLStateCache.getGLStateCache().bindTexture(texture);
 
     shader.use(true);
 
@@ -97,11 +122,12 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
       shader.setColor(white);
     } else {
       FloatBuffer rgba = g2d.getUniformsObject().colorHook.getRGBA();
-      shader.setColor(rgba);
+      shader.setColor(rgba, g2d.getUniformsObject().colorHook.getColorVersion());
     }
 
     if (xform == null) {
-      shader.setTransform(g2d.getUniformsObject().transformHook.getGLMatrixData());
+      shader.setTransform(g2d.getUniformsObject().transformHook.getGLMatrixData(),
+          g2d.getUniformsObject().transformHook.getTransformVersion());
     } else {
       shader.setTransform(g2d.getUniformsObject().transformHook.getGLMatrixData(xform));
     }
@@ -141,6 +167,104 @@ public class GL2ES2ImageDrawer extends AbstractImageHelper {
   @Override
   protected void end(Texture texture) {
     shader.use(false);
-    GL11.glDisable(GL11.GL_TEXTURE_2D);
+  }
+
+  @Override
+  protected void drawFromAtlas(ImageAtlas.Region region, AffineTransform xform, Color bgcolor, float dx1,
+      float dy1, float dx2, float dy2, float sx1, float sy1, float sx2, float sy2) {
+    UniformBufferObject uniforms = g2d.getUniformsObject();
+    FloatBuffer rgba;
+    int rgbaVersion;
+    if (bgcolor == null) {
+      white.put(0, 1).put(1, 1).put(2, 1).put(3, uniforms.colorHook.getAlpha());
+      rgba = white;
+      rgbaVersion = 0;
+    } else {
+      rgba = uniforms.colorHook.getRGBA();
+      rgbaVersion = uniforms.colorHook.getColorVersion();
+    }
+
+    FloatBuffer matrix = uniforms.transformHook.getGLMatrixData();
+    int matrixVersion = uniforms.transformHook.getTransformVersion();
+    Texture page = region.getTexture();
+
+    TriangleBatch batch = g2d.getBatch();
+    if (batch.getPending() == this &&
+        !(pendingPage == page && (rgbaVersion != 0 && rgbaVersion == pendingColorVersion || equal(rgba, pendingColor))
+            && (matrixVersion == pendingTransformVersion || equal(matrix, pendingTransform)))) {
+      batch.flush();
+    }
+
+    if (batch.getPending() != this) {
+      // see the FIXME in begin
+      g2d.setComposite(g2d.getComposite());
+
+      batch.setPending(this);
+      pendingPage = page;
+      copy(rgba, pendingColor);
+      copy(matrix, pendingTransform);
+      pendingColorVersion = rgbaVersion;
+      pendingTransformVersion = matrixVersion;
+    }
+
+    // the image transform is applied here so it doesn't break the batch
+    corners[0] = dx1;
+    corners[1] = dy1;
+    corners[2] = dx2;
+    corners[3] = dy1;
+    corners[4] = dx2;
+    corners[5] = dy2;
+    corners[6] = dx1;
+    corners[7] = dy2;
+    if (xform != null) {
+      xform.transform(corners, 0, corners, 0, 4);
+    }
+
+    addVertex(0, sx1, sy1);
+    addVertex(1, sx2, sy1);
+    addVertex(2, sx2, sy2);
+
+    addVertex(0, sx1, sy1);
+    addVertex(2, sx2, sy2);
+    addVertex(3, sx1, sy2);
+  }
+
+  protected void addVertex(int corner, float u, float v) {
+    quads.addVertex(corners[corner * 2], corners[corner * 2 + 1]);
+    quads.addVertex(u, v);
+  }
+
+  @Override
+  protected void flushPendingDraws() {
+    g2d.getBatch().flush();
+  }
+
+  @Override
+  public void flushPending() {
+    FloatBuffer buf = quads.getBuffer();
+    if (buf.position() == 0) {
+      return;
+    }
+
+    buf.flip();
+
+    GL13.glActiveTexture(GL13.GL_TEXTURE0);
+    GLStateCache.getGLStateCache().bindTexture(pendingPage);
+
+    shader.use(true);
+    shader.setColor(pendingColor, pendingColorVersion);
+    shader.setTransform(pendingTransform, pendingTransformVersion);
+    shader.setTextureUnit(0);
+    shader.drawTriangles(buf);
+    shader.use(false);
+
+    quads.clear();
+    pendingPage = null;
+  }
+
+  @Override
+  public void clearPending() {
+    quads.clear();
+    pendingPage = null;
   }
 }
@@ -15,17 +15,14 @@
  */
 package org.jogamp.glg2d.impl.shader;
 
-import static org.jogamp.glg2d.GLG2DUtils.ensureIsGLBuffer;
-
 import java.nio.FloatBuffer;
 
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 
-public class GL2ES2ImagePipeline extends AbstractShaderPipeline {
-  protected int vertexBufferId = -1;
+import org.jogamp.glg2d.impl.GLStateCache;
 
+public class GL2ES2ImagePipeline extends AbstractShaderPipeline {
   protected int textureLocation = -1;
   protected int vertCoordLocation = -1;
   protected int texCoordLocation = -1;
@@ -45,26 +42,32 @@ public class GL2ES2ImagePipeline extends AbstractShaderPipeline {
   }
 
   protected void bufferData(FloatBuffer buffer) {
-    vertexBufferId = ensureIsGLBuffer(vertexBufferId);
+    GLStateCache.getGLStateCache().setVertexAttribArrays(
+        GLStateCache.attribBit(vertCoordLocation) | GLStateCache.attribBit(texCoordLocation));
 
-    GL20.glEnableVertexAttribArray(vertCoordLocation);
-    GL20.glEnableVertexAttribArray(texCoordLocation);
+    int offset = StreamingBuffer.getStreamingBuffer().upload(buffer);
 
-    GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBufferId);
-    GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW);
-
-    GL20.glVertexAttribPointer(vertCoordLocation, 2, GL11.GL_FLOAT, false, 4 * (Float.SIZE / Byte.SIZE), 0);
-    GL20.glVertexAttribPointer(texCoordLocation, 2, GL11.GL_FLOAT, false, 4 * (Float.SIZE / Byte.SIZE), 2 * (Float.SIZE / Byte.SIZE));
+    GL20.glVertexAttribPointer(vertCoordLocation, 2, GL11.GL_FLOAT, false, 4 * (Float.SIZE / Byte.SIZE), offset);
+    GL20.glVertexAttribPointer(texCoordLocation, 2, GL11.GL_FLOAT, false, 4 * (Float.SIZE / Byte.SIZE), offset + 2 * (Float.SIZE / Byte.SIZE));
   }
 
   public void draw(FloatBuffer interleavedVertTexBuffer) {
     bufferData(interleavedVertTexBuffer);
 
     GL11.glDrawArrays(GL11.GL_TRIANGLE_STRIP, 0, 4);
+    frameStats.recordDraw(4);
+  }
+
+  /**
+   * Draws independent triangles with interleaved vertex and texture
+   * coordinates, from position to limit.
+   */
+  public void drawTriangles(FloatBuffer interleavedVertTexBuffer) {
+    int numVertices = (interleavedVertTexBuffer.limit() - interleavedVertTexBuffer.position()) / 4;
+    bufferData(interleavedVertTexBuffer);
 
-    GL20.glDisableVertexAttribArray(vertCoordLocation);
-    GL20.glDisableVertexAttribArray(texCoordLocation);
-    GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, numVertices);
+    frameStats.recordDraw(numVertices);
   }
 
   @Override
@@ -78,13 +81,4 @@ public class GL2ES2ImagePipeline extends AbstractShaderPipeline {
     vertCoordLocation = GL20.glGetAttribLocation(programId, "a_vertCoord");
     texCoordLocation = GL20.glGetAttribLocation(programId, "a_texCoord");
   }
-
-  @Override
-  public void delete() {
-    super.delete();
-
-    if (GL15.glIsBuffer(vertexBufferId)) {
-      GL15.glDeleteBuffers(vertexBufferId);
-    }
-  }
 }
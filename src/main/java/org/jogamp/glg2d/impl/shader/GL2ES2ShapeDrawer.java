@@ -19,24 +19,47 @@ package org.jogamp.glg2d.impl.shader;
 import java.awt.BasicStroke;
 import java.awt.Shape;
 import java.awt.Stroke;
+import java.nio.FloatBuffer;
 
+import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.GLGraphics2D;
 import org.jogamp.glg2d.PathVisitor;
+import org.jogamp.glg2d.VertexBuffer;
 import org.jogamp.glg2d.impl.AbstractShapeHelper;
 import org.jogamp.glg2d.impl.SimpleOrTesselatingVisitor;
+import org.jogamp.glg2d.impl.SimplePathVisitor;
 
 public class GL2ES2ShapeDrawer extends AbstractShapeHelper {
   protected ShaderPathVisitor lineVisitor;
+
+  /**
+   * Strokes long polylines on the GPU when the context has instanced arrays.
+   * Short subpaths and dashed strokes still go to {@link #lineVisitor}, so
+   * they batch with fills.
+   */
+  protected ShaderPathVisitor instancedLineVisitor;
+  protected boolean useInstancedLines;
   protected ShaderPathVisitor simpleFillVisitor;
   protected ShaderPathVisitor tesselatingVisitor;
   protected PathVisitor complexFillVisitor;
 
+  /**
+   * Draws cached meshes, shared with the tesselating visitor so they batch
+   * together.
+   */
+  protected AnyModePipeline fillPipeline;
+  protected UniformBufferObject uniforms;
+  protected TriangleBatch batch;
+
   public GL2ES2ShapeDrawer() {
+    fillPipeline = new AnyModePipeline();
     lineVisitor = new GL2ES2StrokeLineVisitor();
+    instancedLineVisitor = new InstancedStrokeLineVisitor(lineVisitor);
     simpleFillVisitor = new GL2ES2SimpleConvexFillVisitor();
-    tesselatingVisitor = new GL2ES2TesselatingVisitor();
+    tesselatingVisitor = new GL2ES2TesselatingVisitor(fillPipeline);
     complexFillVisitor = new SimpleOrTesselatingVisitor(simpleFillVisitor, tesselatingVisitor);
   }
 
@@ -46,31 +69,93 @@ public class GL2ES2ShapeDrawer extends AbstractShapeHelper {
 
     if (g2d instanceof GLShaderGraphics2D) {
       GLContext context = g2d.getGLContext();
-      UniformBufferObject uniforms = ((GLShaderGraphics2D) g2d).getUniformsObject();
+      uniforms = ((GLShaderGraphics2D) g2d).getUniformsObject();
+      batch = ((GLShaderGraphics2D) g2d).getBatch();
 
       lineVisitor.setGLContext(context, uniforms);
       simpleFillVisitor.setGLContext(context, uniforms);
       tesselatingVisitor.setGLContext(context, uniforms);
+      lineVisitor.setBatch(batch);
+      simpleFillVisitor.setBatch(batch);
+      tesselatingVisitor.setBatch(batch);
       complexFillVisitor.setGLContext(context);
+
+      GLG2DFrameStats frameStats = g2d.getFrameStats();
+      fillPipeline.setFrameStats(frameStats);
+      lineVisitor.setFrameStats(frameStats);
+      instancedLineVisitor.setFrameStats(frameStats);
+      simpleFillVisitor.setFrameStats(frameStats);
+      tesselatingVisitor.setFrameStats(frameStats);
+      if (complexFillVisitor instanceof SimplePathVisitor) {
+        ((SimplePathVisitor) complexFillVisitor).setFrameStats(frameStats);
+      }
+
+      useInstancedLines = InstancedStrokePipeline.isSupported();
+      if (useInstancedLines) {
+        instancedLineVisitor.setGLContext(context, uniforms);
+        instancedLineVisitor.setBatch(batch);
+      }
     } else {
       throw new IllegalArgumentException(GLGraphics2D.class.getName() + " implementation must be instance of "
           + GLShaderGraphics2D.class.getSimpleName());
     }
   }
 
+  /**
+   * Gets the pipeline that fills are batched with. Other drawing that adds
+   * plain triangles with it batches with the fills.
+   */
+  public AnyModePipeline getFillPipeline() {
+    return fillPipeline;
+  }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+
+    lineVisitor.dispose();
+    instancedLineVisitor.dispose();
+    simpleFillVisitor.dispose();
+    tesselatingVisitor.dispose();
+    if (complexFillVisitor instanceof SimplePathVisitor) {
+      ((SimplePathVisitor) complexFillVisitor).dispose();
+    }
+
+    fillPipeline.delete();
+  }
+
   public void draw(Shape shape) {
     Stroke stroke = getStroke();
     if (stroke instanceof BasicStroke) {
-      lineVisitor.setStroke((BasicStroke) stroke);
-      traceShape(shape, lineVisitor);
+      BasicStroke basicStroke = (BasicStroke) stroke;
+      ShaderPathVisitor visitor = lineVisitor;
+      if (useInstancedLines && basicStroke.getDashArray() == null) {
+        visitor = instancedLineVisitor;
+      }
+
+      visitor.setStroke(basicStroke);
+      traceShape(shape, visitor);
     } else {
+      g2d.getFrameStats().recordStrokeFallback();
       fill(stroke.createStrokedShape(shape), false);
     }
   }
 
+  @Override
+  protected void drawTriangles(VertexBuffer triangles) {
+    FloatBuffer buf = triangles.getBuffer();
+    int count = buf.position();
+    buf.flip();
+    batch.add(fillPipeline, uniforms, GL11.GL_TRIANGLES, buf);
+
+    buf.limit(buf.capacity());
+    buf.position(count);
+  }
+
   @Override
   protected void fill(Shape shape, boolean isDefinitelySimpleConvex) {
     if (isDefinitelySimpleConvex) {
+      g2d.getFrameStats().recordConvexFill();
       traceShape(shape, simpleFillVisitor);
     } else {
       traceShape(shape, complexFillVisitor);
@@ -22,12 +22,14 @@ import java.nio.FloatBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.VertexBuffer;
 import org.jogamp.glg2d.impl.SimplePathVisitor;
 
 public class GL2ES2SimpleConvexFillVisitor extends SimplePathVisitor implements ShaderPathVisitor {
   protected GLContext context;
   protected UniformBufferObject uniforms;
+  protected TriangleBatch batch;
 
   protected VertexBuffer vBuffer = new VertexBuffer(1024);
 
@@ -48,6 +50,17 @@ public class GL2ES2SimpleConvexFillVisitor extends SimplePathVisitor implements
     this.uniforms = uniforms;
   }
 
+  @Override
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    super.setFrameStats(frameStats);
+    pipeline.setFrameStats(frameStats);
+  }
+
+  @Override
+  public void setBatch(TriangleBatch batch) {
+    this.batch = batch;
+  }
+
   @Override
   public void setGLContext(GLContext ctx) {
     context = ctx;
@@ -64,11 +77,6 @@ public class GL2ES2SimpleConvexFillVisitor extends SimplePathVisitor implements
   @Override
   public void beginPoly(int windingRule) {
     // do we need to care about winding rule?
-    pipeline.use(true);
-
-    pipeline.setColor(uniforms.colorHook.getRGBA());
-    pipeline.setTransform(uniforms.transformHook.getGLMatrixData());
-
     vBuffer.clear();
     vBuffer.addVertex(0, 0);
   }
@@ -96,7 +104,6 @@ public class GL2ES2SimpleConvexFillVisitor extends SimplePathVisitor implements
   @Override
   public void endPoly() {
     draw();
-    pipeline.use(false);
   }
 
   protected void draw() {
@@ -110,7 +117,7 @@ public class GL2ES2SimpleConvexFillVisitor extends SimplePathVisitor implements
 
     setupCentroid(buf);
 
-    pipeline.draw(GL11.GL_TRIANGLE_FAN, buf);
+    batch.add(pipeline, uniforms, GL11.GL_TRIANGLE_FAN, buf);
 
     vBuffer.clear();
     vBuffer.addVertex(0, 0);
@@ -134,4 +141,11 @@ public class GL2ES2SimpleConvexFillVisitor extends SimplePathVisitor implements
 
     vertexBuffer.rewind();
   }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    pipeline.delete();
+    vBuffer.release();
+  }
 }
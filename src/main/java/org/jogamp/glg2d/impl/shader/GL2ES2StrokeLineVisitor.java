@@ -22,11 +22,13 @@ import java.nio.FloatBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.impl.BasicStrokeLineVisitor;
 
 public class GL2ES2StrokeLineVisitor extends BasicStrokeLineVisitor implements ShaderPathVisitor {
   protected GLContext context;
   protected UniformBufferObject uniforms;
+  protected TriangleBatch batch;
 
   protected AnyModePipeline pipeline;
 
@@ -45,6 +47,17 @@ public class GL2ES2StrokeLineVisitor extends BasicStrokeLineVisitor implements S
     this.uniforms = uniforms;
   }
 
+  @Override
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    super.setFrameStats(frameStats);
+    pipeline.setFrameStats(frameStats);
+  }
+
+  @Override
+  public void setBatch(TriangleBatch batch) {
+    this.batch = batch;
+  }
+
   @Override
   public void setGLContext(GLContext ctx) {
     context = ctx;
@@ -59,22 +72,6 @@ public class GL2ES2StrokeLineVisitor extends BasicStrokeLineVisitor implements S
     super.setStroke(stroke);
   }
 
-  @Override
-  public void beginPoly(int windingRule) {
-    pipeline.use(true);
-    pipeline.setTransform(uniforms.transformHook.getGLMatrixData());
-    pipeline.setColor(uniforms.colorHook.getRGBA());
-
-    super.beginPoly(windingRule);
-  }
-
-  @Override
-  public void endPoly() {
-    super.endPoly();
-
-    pipeline.use(false);
-  }
-
   @Override
   protected void drawBuffer() {
     FloatBuffer buf = vBuffer.getBuffer();
@@ -84,8 +81,14 @@ public class GL2ES2StrokeLineVisitor extends BasicStrokeLineVisitor implements S
 
     buf.flip();
 
-    pipeline.draw(GL11.GL_TRIANGLE_STRIP, buf);
+    batch.add(pipeline, uniforms, GL11.GL_TRIANGLE_STRIP, buf);
 
     vBuffer.clear();
   }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    pipeline.delete();
+  }
 }
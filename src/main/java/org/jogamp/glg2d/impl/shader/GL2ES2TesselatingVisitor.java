@@ -20,11 +20,13 @@ import java.nio.FloatBuffer;
 
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.impl.AbstractTesselatorVisitor;
 
 public class GL2ES2TesselatingVisitor extends AbstractTesselatorVisitor implements ShaderPathVisitor {
   protected GLContext context;
   protected UniformBufferObject uniforms;
+  protected TriangleBatch batch;
 
   protected AnyModePipeline pipeline;
 
@@ -52,20 +54,14 @@ public class GL2ES2TesselatingVisitor extends AbstractTesselatorVisitor implemen
   }
 
   @Override
-  public void beginPoly(int windingRule) {
-    pipeline.use(true);
-
-    super.beginPoly(windingRule);
-
-    pipeline.setColor(uniforms.colorHook.getRGBA());
-    pipeline.setTransform(uniforms.transformHook.getGLMatrixData());
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    super.setFrameStats(frameStats);
+    pipeline.setFrameStats(frameStats);
   }
 
   @Override
-  public void endPoly() {
-    super.endPoly();
-
-    pipeline.use(false);
+  public void setBatch(TriangleBatch batch) {
+    this.batch = batch;
   }
 
   @Override
@@ -73,6 +69,12 @@ public class GL2ES2TesselatingVisitor extends AbstractTesselatorVisitor implemen
     FloatBuffer buf = vBuffer.getBuffer();
     buf.flip();
 
-    pipeline.draw(drawMode, buf);
+    batch.add(pipeline, uniforms, drawMode, buf);
+  }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    pipeline.delete();
   }
 }
@@ -31,6 +31,7 @@ import org.jogamp.glg2d.impl.shader.UniformBufferObject.TransformHook;
 public class GL2ES2TransformHelper extends AbstractMatrixHelper implements TransformHook {
   protected FloatBuffer glMatrix;
   protected boolean dirtyMatrix;
+  protected int transformVersion;
 
   protected IntBuffer viewportDimensions;
 
@@ -39,6 +40,7 @@ public class GL2ES2TransformHelper extends AbstractMatrixHelper implements Trans
     super.setG2D(g2d);
 
     dirtyMatrix = true;
+    transformVersion = UniformBufferObject.nextVersion();
     glMatrix = BufferUtils.createFloatBuffer(16);
     viewportDimensions = BufferUtils.createIntBuffer(4);
 
@@ -62,6 +64,12 @@ public class GL2ES2TransformHelper extends AbstractMatrixHelper implements Trans
   protected void flushTransformToOpenGL() {
     // only set dirty, we'll update lazily
     dirtyMatrix = true;
+    transformVersion = UniformBufferObject.nextVersion();
+  }
+
+  @Override
+  public int getTransformVersion() {
+    return transformVersion;
   }
 
   @Override
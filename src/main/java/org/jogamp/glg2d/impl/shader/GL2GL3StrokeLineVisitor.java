@@ -21,6 +21,7 @@ import java.nio.FloatBuffer;
 
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.VertexBuffer;
 import org.jogamp.glg2d.impl.SimplePathVisitor;
 
@@ -33,6 +34,7 @@ public class GL2GL3StrokeLineVisitor extends SimplePathVisitor implements Shader
 
   protected GLContext context;
   protected UniformBufferObject uniforms;
+  protected TriangleBatch batch;
 
   protected GeometryShaderStrokePipeline pipeline;
 
@@ -59,6 +61,17 @@ public class GL2GL3StrokeLineVisitor extends SimplePathVisitor implements Shader
     this.uniforms = uniforms;
   }
 
+  @Override
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    super.setFrameStats(frameStats);
+    pipeline.setFrameStats(frameStats);
+  }
+
+  @Override
+  public void setBatch(TriangleBatch batch) {
+    this.batch = batch;
+  }
+
   @Override
   public void setStroke(BasicStroke stroke) {
     this.stroke = stroke;
@@ -102,10 +115,15 @@ public class GL2GL3StrokeLineVisitor extends SimplePathVisitor implements Shader
 
   @Override
   public void beginPoly(int windingRule) {
+    // pending shapes must be drawn before ours
+    if (batch != null) {
+      batch.flush();
+    }
+
     pipeline.use(true);
 
-    pipeline.setColor(uniforms.colorHook.getRGBA());
-    pipeline.setTransform(uniforms.transformHook.getGLMatrixData());
+    pipeline.setColor(uniforms.colorHook.getRGBA(), uniforms.colorHook.getColorVersion());
+    pipeline.setTransform(uniforms.transformHook.getGLMatrixData(), uniforms.transformHook.getTransformVersion());
     pipeline.setStroke(stroke);
 
     buffer.clear();
@@ -128,4 +146,11 @@ public class GL2GL3StrokeLineVisitor extends SimplePathVisitor implements Shader
 
     buffer.clear();
   }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    pipeline.delete();
+    buffer.release();
+  }
 }
@@ -22,15 +22,57 @@ import org.jogamp.glg2d.GLG2DShapeHelper;
 import org.jogamp.glg2d.GLG2DTextHelper;
 import org.jogamp.glg2d.GLG2DTransformHelper;
 import org.jogamp.glg2d.GLGraphics2D;
-import org.jogamp.glg2d.impl.shader.text.GL2ES2TextDrawer;
+import org.jogamp.glg2d.impl.shader.text.GlyphAtlasTextDrawer;
 
 public class GLShaderGraphics2D extends GLGraphics2D {
   protected UniformBufferObject uniforms = new UniformBufferObject();
 
+  protected TriangleBatch batch = new TriangleBatch();
+
   public UniformBufferObject getUniformsObject() {
     return uniforms;
   }
 
+  /**
+   * Gets the batch that collects consecutive shape draws. Anything that draws
+   * outside of the batch must flush it first.
+   */
+  public TriangleBatch getBatch() {
+    return batch;
+  }
+
+  @Override
+  public void prePaint() {
+    batch.clear();
+    super.prePaint();
+    StreamingBuffer.getStreamingBuffer().beginFrame();
+    if (SharedUniformBuffer.isSupported()) {
+      SharedUniformBuffer.getSharedUniformBuffer().bind();
+    }
+  }
+
+  @Override
+  public void postPaint() {
+    batch.flush();
+    super.postPaint();
+  }
+
+  @Override
+  public void glDispose() {
+    super.glDispose();
+    batch.dispose();
+    StreamingBuffer.getStreamingBuffer().dispose();
+    if (SharedUniformBuffer.isSupported()) {
+      SharedUniformBuffer.getSharedUniformBuffer().dispose();
+    }
+  }
+
+  @Override
+  protected void scissor(boolean enable) {
+    batch.flush();
+    super.scissor(enable);
+  }
+
   @Override
   protected GLG2DImageHelper createImageHelper() {
     return new GL2ES2ImageDrawer();
@@ -53,6 +95,6 @@ public class GLShaderGraphics2D extends GLGraphics2D {
 
   @Override
   protected GLG2DTextHelper createTextHelper() {
-    return new GL2ES2TextDrawer();
+    return new GlyphAtlasTextDrawer();
   }
 }
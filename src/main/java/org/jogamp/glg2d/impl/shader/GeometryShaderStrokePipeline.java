@@ -19,15 +19,13 @@ package org.jogamp.glg2d.impl.shader;
 import java.awt.BasicStroke;
 import java.nio.FloatBuffer;
 
+import org.jogamp.glg2d.VertexArena;
+import org.jogamp.glg2d.impl.GLStateCache;
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL32;
 import org.lwjgl.opengl.GL41;
 
-import org.jogamp.glg2d.GLG2DUtils;
-
-import org.lwjgl.BufferUtils;
 
 public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
   public static final int DRAW_END_NONE = 0;
@@ -35,14 +33,13 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
   public static final int DRAW_END_LAST = 1;
   public static final int DRAW_END_BOTH = 2;
 
-  protected FloatBuffer vBuffer = BufferUtils.createFloatBuffer(500);
+  protected FloatBuffer vBuffer = VertexArena.getDefault().acquire(500);
 
   protected int maxVerticesOut = 32;
 
   protected int vertCoordLocation;
   protected int vertBeforeLocation;
   protected int vertAfterLocation;
-  protected int vertCoordBuffer;
 
   protected int lineWidthLocation;
   protected int miterLimitLocation;
@@ -83,23 +80,14 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
   }
 
   protected void bindBuffer(FloatBuffer vertexBuffer) {
-    GL20.glEnableVertexAttribArray(vertCoordLocation);
-    GL20.glEnableVertexAttribArray(vertBeforeLocation);
-    GL20.glEnableVertexAttribArray(vertAfterLocation);
+    GLStateCache.getGLStateCache().setVertexAttribArrays(GLStateCache.attribBit(vertCoordLocation)
+        | GLStateCache.attribBit(vertBeforeLocation) | GLStateCache.attribBit(vertAfterLocation));
 
-    if (GL15.glIsBuffer(vertCoordBuffer)) {
-      GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertCoordBuffer);
-      GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, vertexBuffer);
-    } else {
-      vertCoordBuffer = GLG2DUtils.genBufferId();
+    int offset = StreamingBuffer.getStreamingBuffer().upload(vertexBuffer);
 
-      GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertCoordBuffer);
-      GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertexBuffer, GL15.GL_STREAM_DRAW);
-    }
-
-    GL20.glVertexAttribPointer(vertCoordLocation, 2, GL11.GL_FLOAT, false, 0, 2 * (Float.SIZE / Byte.SIZE));
-    GL20.glVertexAttribPointer(vertBeforeLocation, 2, GL11.GL_FLOAT, false, 0, 0);
-    GL20.glVertexAttribPointer(vertAfterLocation, 2, GL11.GL_FLOAT, false, 0, 4 * (Float.SIZE / Byte.SIZE));
+    GL20.glVertexAttribPointer(vertCoordLocation, 2, GL11.GL_FLOAT, false, 0, offset + 2 * (Float.SIZE / Byte.SIZE));
+    GL20.glVertexAttribPointer(vertBeforeLocation, 2, GL11.GL_FLOAT, false, 0, offset);
+    GL20.glVertexAttribPointer(vertAfterLocation, 2, GL11.GL_FLOAT, false, 0, offset + 4 * (Float.SIZE / Byte.SIZE));
   }
 
   public void draw(FloatBuffer vertexBuffer, boolean close) {
@@ -107,8 +95,9 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
     int lim = vertexBuffer.limit();
     int numPts = (lim - pos) / 2;
 
-    if (numPts * 2 + 6 > vBuffer.capacity()) {
-      vBuffer = BufferUtils.createFloatBuffer(numPts * 2 + 4);
+    if (vBuffer == null || numPts * 2 + 6 > vBuffer.capacity()) {
+      VertexArena.getDefault().release(vBuffer);
+      vBuffer = VertexArena.getDefault().acquire(numPts * 2 + 6);
     }
 
     vBuffer.clear();
@@ -136,27 +125,28 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
     if (close) {
       setDrawEnd(DRAW_END_NONE);
       GL11.glDrawArrays(GL11.GL_LINES, 0, numPts + 1);
+      frameStats.recordDraw(numPts + 1);
       GL11.glDrawArrays(GL11.GL_LINES, 1, numPts);
+      frameStats.recordDraw(numPts);
     } else if (numPts == 2) {
       setDrawEnd(DRAW_END_BOTH);
       GL11.glDrawArrays(GL11.GL_LINES, 0, 2);
+      frameStats.recordDraw(2);
     } else {
       setDrawEnd(DRAW_END_NONE);
       GL11.glDrawArrays(GL11.GL_LINES, 1, numPts - 2);
+      frameStats.recordDraw(numPts - 2);
       GL11.glDrawArrays(GL11.GL_LINES, 2, numPts - 3);
+      frameStats.recordDraw(numPts - 3);
 
       setDrawEnd(DRAW_END_FIRST);
       GL11.glDrawArrays(GL11.GL_LINES, 0, 2);
+      frameStats.recordDraw(2);
 
       setDrawEnd(DRAW_END_LAST);
       GL11.glDrawArrays(GL11.GL_LINES, numPts - 2, 2);
+      frameStats.recordDraw(2);
     }
-
-    GL20.glDisableVertexAttribArray(vertCoordLocation);
-    GL20.glDisableVertexAttribArray(vertBeforeLocation);
-    GL20.glDisableVertexAttribArray(vertAfterLocation);
-
-    GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
   }
 
   @Override
@@ -176,6 +166,12 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
     vertAfterLocation = GL20.glGetAttribLocation(programId, "a_vertAfter");
   }
 
+  @Override
+  protected String programKey() {
+    // the geometry parameters are part of the program
+    return super.programKey() + '\0' + maxVerticesOut;
+  }
+
   @Override
   protected void attachShaders() {
     super.attachShaders();
@@ -189,6 +185,7 @@ public class GeometryShaderStrokePipeline extends AbstractShaderPipeline {
   public void delete() {
     super.delete();
 
-    GL15.glDeleteBuffers(vertCoordBuffer);
+    VertexArena.getDefault().release(vBuffer);
+    vBuffer = null;
   }
 }
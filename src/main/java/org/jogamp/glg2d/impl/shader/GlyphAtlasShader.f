@@ -0,0 +1,8 @@
+uniform sampler2D u_tex;
+GLG2D_UNIFORMS
+
+varying vec2 v_texCoord;
+
+void main() {
+  gl_FragColor = vec4(u_color.rgb, u_color.a * texture2D(u_tex, v_texCoord).a);
+}
\ No newline at end of file
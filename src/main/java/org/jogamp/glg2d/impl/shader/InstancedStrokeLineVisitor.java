@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+
+import java.awt.BasicStroke;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+import org.jogamp.glg2d.VertexBuffer;
+import org.jogamp.glg2d.impl.SimplePathVisitor;
+
+/**
+ * Strokes long polylines with {@link InstancedStrokePipeline}, so the joins
+ * and caps are computed on the GPU. Each of those is its own draw call, so
+ * subpaths with fewer than {@link #DEFAULT_MIN_POINTS} points are passed on
+ * to another visitor, usually the {@link GL2ES2StrokeLineVisitor}, which adds
+ * them to the shape batch. This doesn't do dashes, use the other visitor for
+ * those.
+ */
+public class InstancedStrokeLineVisitor extends SimplePathVisitor implements ShaderPathVisitor {
+  /**
+   * The default number of points a subpath needs to be drawn instanced.
+   */
+  public static final int DEFAULT_MIN_POINTS = 128;
+
+  protected VertexBuffer buffer = new VertexBuffer(1024);
+
+  protected BasicStroke stroke;
+
+  protected float lastX;
+  protected float lastY;
+
+  protected float[] point = new float[2];
+
+  protected int minPoints = DEFAULT_MIN_POINTS;
+
+  protected GLContext context;
+  protected UniformBufferObject uniforms;
+  protected TriangleBatch batch;
+
+  protected InstancedStrokePipeline pipeline;
+
+  /**
+   * Strokes the short subpaths.
+   */
+  protected ShaderPathVisitor shortLineVisitor;
+
+  public InstancedStrokeLineVisitor(ShaderPathVisitor shortLineVisitor) {
+    this(new InstancedStrokePipeline(), shortLineVisitor);
+  }
+
+  public InstancedStrokeLineVisitor(InstancedStrokePipeline pipeline, ShaderPathVisitor shortLineVisitor) {
+    this.pipeline = pipeline;
+    this.shortLineVisitor = shortLineVisitor;
+  }
+
+  @Override
+  public void setGLContext(GLContext ctx) {
+    context = ctx;
+
+    if (!pipeline.isSetup()) {
+      pipeline.setup();
+    }
+  }
+
+  @Override
+  public void setGLContext(GLContext glContext, UniformBufferObject uniforms) {
+    setGLContext(glContext);
+    this.uniforms = uniforms;
+  }
+
+  @Override
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    super.setFrameStats(frameStats);
+    pipeline.setFrameStats(frameStats);
+    shortLineVisitor.setFrameStats(frameStats);
+  }
+
+  @Override
+  public void setBatch(TriangleBatch batch) {
+    this.batch = batch;
+  }
+
+  @Override
+  public void setStroke(BasicStroke stroke) {
+    this.stroke = stroke;
+    shortLineVisitor.setStroke(stroke);
+  }
+
+  /**
+   * Sets the number of points a subpath needs to be drawn instanced.
+   */
+  public void setMinPoints(int minPoints) {
+    this.minPoints = minPoints;
+  }
+
+  public int getMinPoints() {
+    return minPoints;
+  }
+
+  @Override
+  public void moveTo(float[] vertex) {
+    draw(false);
+
+    lastX = vertex[0];
+    lastY = vertex[1];
+    buffer.addVertex(lastX, lastY);
+  }
+
+  @Override
+  public void lineTo(float[] vertex) {
+    // no 0-length lines
+    if (vertex[0] == lastX && vertex[1] == lastY) {
+      return;
+    }
+
+    lastX = vertex[0];
+    lastY = vertex[1];
+    buffer.addVertex(lastX, lastY);
+  }
+
+  @Override
+  public void closeLine() {
+    draw(true);
+  }
+
+  @Override
+  public void beginPoly(int windingRule) {
+    shortLineVisitor.beginPoly(windingRule);
+    buffer.clear();
+  }
+
+  @Override
+  public void endPoly() {
+    draw(false);
+    shortLineVisitor.endPoly();
+  }
+
+  protected void draw(boolean close) {
+    FloatBuffer buf = buffer.getBuffer();
+    int numPts = buf.position() / 2;
+    if (numPts == 0) {
+      return;
+    }
+
+    if (numPts < minPoints) {
+      drawShort(buf, close);
+    } else {
+      drawInstanced(buf, close);
+    }
+
+    buffer.clear();
+  }
+
+  /**
+   * Passes the subpath on to the other visitor.
+   */
+  protected void drawShort(FloatBuffer buf, boolean close) {
+    int numFloats = buf.position();
+    for (int i = 0; i < numFloats; i += 2) {
+      point[0] = buf.get(i);
+      point[1] = buf.get(i + 1);
+      if (i == 0) {
+        shortLineVisitor.moveTo(point);
+      } else {
+        shortLineVisitor.lineTo(point);
+      }
+    }
+
+    if (close) {
+      shortLineVisitor.closeLine();
+    }
+  }
+
+  protected void drawInstanced(FloatBuffer buf, boolean close) {
+    /*
+     * Sometimes shapes will set the last point to be the same as the first and
+     * then close the line. The pipeline joins the last point to the first one
+     * itself, so drop it.
+     */
+    if (close && buf.position() > 2 && buf.get(0) == lastX && buf.get(1) == lastY) {
+      buf.position(buf.position() - 2);
+    }
+
+    // pending shapes must be drawn before ours
+    if (batch != null) {
+      batch.flush();
+    }
+
+    pipeline.use(true);
+    pipeline.setColor(uniforms.colorHook.getRGBA(), uniforms.colorHook.getColorVersion());
+    pipeline.setTransform(uniforms.transformHook.getGLMatrixData(), uniforms.transformHook.getTransformVersion());
+    pipeline.setStroke(stroke);
+
+    buf.flip();
+    pipeline.draw(buf, close);
+    pipeline.use(false);
+  }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    pipeline.delete();
+    buffer.release();
+  }
+}
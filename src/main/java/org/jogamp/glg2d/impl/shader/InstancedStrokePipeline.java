@@ -0,0 +1,280 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+import java.awt.BasicStroke;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBDrawInstanced;
+import org.lwjgl.opengl.ARBInstancedArrays;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.VertexArena;
+import org.jogamp.glg2d.impl.GLStateCache;
+
+/**
+ * Strokes polylines in the vertex shader, without a geometry shader. Only the
+ * points are uploaded, 8 bytes each. Every segment is one instance of a fixed
+ * template: a quad for the body of the segment, a fan at its end for the join
+ * or the end cap, and a fan at its start for the start cap. The instance reads
+ * the point before the segment, its two ends and the point after it, so the
+ * shader can place the join, and the parts of the template that aren't needed
+ * collapse to a single point.
+ * 
+ * <p>
+ * This needs instanced arrays, see {@link #isSupported()}. Like
+ * {@link GeometryShaderStrokePipeline}, joins overlap the segments, so
+ * translucent strokes are darker where they overlap.
+ * </p>
+ */
+public class InstancedStrokePipeline extends AbstractShaderPipeline {
+  /**
+   * The number of triangles in each fan. Round joins and caps turn by at most
+   * 180 / FAN_STEPS degrees per triangle.
+   */
+  public static final int FAN_STEPS = 8;
+
+  /**
+   * The number of vertices drawn for each segment.
+   */
+  public static final int TEMPLATE_VERTICES = 6 + 2 * 3 * FAN_STEPS;
+
+  protected static final int POINT_BYTES = 2 * (Float.SIZE / Byte.SIZE);
+
+  protected FloatBuffer vBuffer = VertexArena.getDefault().acquire(500);
+
+  protected int templateBufferId;
+
+  protected int templateLocation = -1;
+  protected int prevLocation = -1;
+  protected int startLocation = -1;
+  protected int endLocation = -1;
+  protected int nextLocation = -1;
+
+  protected int lineWidthLocation = -1;
+  protected int miterLimitLocation = -1;
+  protected int joinTypeLocation = -1;
+  protected int capTypeLocation = -1;
+
+  /**
+   * Whether the current context can draw instanced arrays.
+   */
+  public static boolean isSupported() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    return caps.OpenGL33 || (caps.GL_ARB_instanced_arrays && caps.GL_ARB_draw_instanced);
+  }
+
+  public InstancedStrokePipeline() {
+    this("InstancedStrokeShader.v", "FixedFuncShader.f");
+  }
+
+  public InstancedStrokePipeline(String vertexShaderFileName, String fragmentShaderFileName) {
+    super(vertexShaderFileName, null, fragmentShaderFileName);
+  }
+
+  /**
+   * Sets the stroke uniforms, unless the program already has an equal stroke.
+   */
+  public void setStroke(BasicStroke stroke) {
+    if (stroke.equals(program.uniformState)) {
+      return;
+    }
+
+    program.uniformState = stroke;
+
+    if (lineWidthLocation >= 0) {
+      GL20.glUniform1f(lineWidthLocation, stroke.getLineWidth());
+    }
+
+    if (miterLimitLocation >= 0) {
+      GL20.glUniform1f(miterLimitLocation, stroke.getMiterLimit());
+    }
+
+    if (joinTypeLocation >= 0) {
+      GL20.glUniform1i(joinTypeLocation, stroke.getLineJoin());
+    }
+
+    if (capTypeLocation >= 0) {
+      GL20.glUniform1i(capTypeLocation, stroke.getEndCap());
+    }
+  }
+
+  /**
+   * Draws the polyline from position to limit. No two consecutive points may
+   * be the same, and a closed line must not repeat its first point at the end.
+   */
+  public void draw(FloatBuffer vertexBuffer, boolean close) {
+    int pos = vertexBuffer.position();
+    int lim = vertexBuffer.limit();
+    int numPts = (lim - pos) / 2;
+    if (numPts < 2) {
+      return;
+    }
+
+    if (vBuffer == null || numPts * 2 + 6 > vBuffer.capacity()) {
+      VertexArena.getDefault().release(vBuffer);
+      vBuffer = VertexArena.getDefault().acquire(numPts * 2 + 6);
+    }
+
+    vBuffer.clear();
+
+    // each segment reads 4 consecutive points, so pad both ends
+    int numSegments;
+    if (close) {
+      vBuffer.put(vertexBuffer.get(lim - 2));
+      vBuffer.put(vertexBuffer.get(lim - 1));
+      vBuffer.put(vertexBuffer);
+      vBuffer.put(vertexBuffer.get(pos));
+      vBuffer.put(vertexBuffer.get(pos + 1));
+      vBuffer.put(vertexBuffer.get(pos + 2));
+      vBuffer.put(vertexBuffer.get(pos + 3));
+      numSegments = numPts;
+    } else {
+      vBuffer.put(vertexBuffer.get(pos));
+      vBuffer.put(vertexBuffer.get(pos + 1));
+      vBuffer.put(vertexBuffer);
+      vBuffer.put(vertexBuffer.get(lim - 2));
+      vBuffer.put(vertexBuffer.get(lim - 1));
+      numSegments = numPts - 1;
+    }
+
+    vBuffer.flip();
+
+    bindBuffers(vBuffer);
+
+    if (GLContext.getCapabilities().OpenGL33) {
+      GL31.glDrawArraysInstanced(GL11.GL_TRIANGLES, 0, TEMPLATE_VERTICES, numSegments);
+    } else {
+      ARBDrawInstanced.glDrawArraysInstancedARB(GL11.GL_TRIANGLES, 0, TEMPLATE_VERTICES, numSegments);
+    }
+
+    frameStats.recordDraw(TEMPLATE_VERTICES * numSegments);
+
+    // other programs use the same attribute locations without instancing
+    setDivisors(0);
+  }
+
+  protected void bindBuffers(FloatBuffer points) {
+    GLStateCache cache = GLStateCache.getGLStateCache();
+    cache.setVertexAttribArrays(GLStateCache.attribBit(templateLocation) | GLStateCache.attribBit(prevLocation)
+        | GLStateCache.attribBit(startLocation) | GLStateCache.attribBit(endLocation)
+        | GLStateCache.attribBit(nextLocation));
+
+    bindTemplate();
+    GL20.glVertexAttribPointer(templateLocation, 3, GL11.GL_FLOAT, false, 0, 0);
+
+    int offset = StreamingBuffer.getStreamingBuffer().upload(points);
+    GL20.glVertexAttribPointer(prevLocation, 2, GL11.GL_FLOAT, false, 0, offset);
+    GL20.glVertexAttribPointer(startLocation, 2, GL11.GL_FLOAT, false, 0, offset + POINT_BYTES);
+    GL20.glVertexAttribPointer(endLocation, 2, GL11.GL_FLOAT, false, 0, offset + 2 * POINT_BYTES);
+    GL20.glVertexAttribPointer(nextLocation, 2, GL11.GL_FLOAT, false, 0, offset + 3 * POINT_BYTES);
+
+    setDivisors(1);
+  }
+
+  protected void setDivisors(int divisor) {
+    setDivisor(prevLocation, divisor);
+    setDivisor(startLocation, divisor);
+    setDivisor(endLocation, divisor);
+    setDivisor(nextLocation, divisor);
+  }
+
+  protected void setDivisor(int location, int divisor) {
+    if (location < 0) {
+      return;
+    }
+
+    if (GLContext.getCapabilities().OpenGL33) {
+      GL33.glVertexAttribDivisor(location, divisor);
+    } else {
+      ARBInstancedArrays.glVertexAttribDivisorARB(location, divisor);
+    }
+  }
+
+  /**
+   * Binds the template of a segment to {@code GL_ARRAY_BUFFER}, creating it
+   * the first time.
+   */
+  protected void bindTemplate() {
+    if (templateBufferId != 0) {
+      GLStateCache.getGLStateCache().bindBuffer(GL15.GL_ARRAY_BUFFER, templateBufferId);
+      return;
+    }
+
+    FloatBuffer template = BufferUtils.createFloatBuffer(TEMPLATE_VERTICES * 3);
+
+    // body
+    template.put(new float[] { 0, 0, -1, 0, 0, 1, 0, 1, -1 });
+    template.put(new float[] { 0, 0, 1, 0, 1, 1, 0, 1, -1 });
+
+    // fans at the end and at the start
+    for (int part = 1; part <= 2; part++) {
+      for (int i = 0; i < FAN_STEPS; i++) {
+        template.put(new float[] { part, -1, 0, part, i, 0, part, i + 1, 0 });
+      }
+    }
+
+    template.flip();
+
+    templateBufferId = GL15.glGenBuffers();
+    GLStateCache.getGLStateCache().bindBuffer(GL15.GL_ARRAY_BUFFER, templateBufferId);
+    GL15.glBufferData(GL15.GL_ARRAY_BUFFER, template, GL15.GL_STATIC_DRAW);
+  }
+
+  @Override
+  protected String getDefines() {
+    return super.getDefines() + "#define FAN_STEPS " + FAN_STEPS + "\n";
+  }
+
+  @Override
+  protected void setupUniformsAndAttributes() {
+    super.setupUniformsAndAttributes();
+
+    transformLocation = GL20.glGetUniformLocation(programId, "u_transform");
+    colorLocation = GL20.glGetUniformLocation(programId, "u_color");
+    lineWidthLocation = GL20.glGetUniformLocation(programId, "u_lineWidth");
+    miterLimitLocation = GL20.glGetUniformLocation(programId, "u_miterLimit");
+    joinTypeLocation = GL20.glGetUniformLocation(programId, "u_joinType");
+    capTypeLocation = GL20.glGetUniformLocation(programId, "u_capType");
+
+    templateLocation = GL20.glGetAttribLocation(programId, "a_template");
+    prevLocation = GL20.glGetAttribLocation(programId, "a_prev");
+    startLocation = GL20.glGetAttribLocation(programId, "a_start");
+    endLocation = GL20.glGetAttribLocation(programId, "a_end");
+    nextLocation = GL20.glGetAttribLocation(programId, "a_next");
+  }
+
+  @Override
+  public void delete() {
+    super.delete();
+
+    if (templateBufferId != 0) {
+      GL15.glDeleteBuffers(templateBufferId);
+      GLStateCache.getGLStateCache().bufferDeleted(templateBufferId);
+      templateBufferId = 0;
+    }
+
+    VertexArena.getDefault().release(vBuffer);
+    vBuffer = null;
+  }
+}
@@ -0,0 +1,108 @@
+GLG2D_UNIFORMS
+
+#define JOIN_MITER 0
+#define JOIN_ROUND 1
+#define JOIN_BEVEL 2
+
+#define CAP_BUTT 0
+#define CAP_ROUND 1
+#define CAP_SQUARE 2
+
+uniform float u_lineWidth;
+uniform float u_miterLimit;
+uniform int u_joinType;
+uniform int u_capType;
+
+// x: 0 for the body of the segment, 1 for the fan at its end, 2 for the fan
+//    at its start
+// y: the end of the body (0 or 1), or the step along the fan (-1 for the
+//    center of the fan)
+// z: the side of the body (-1 or 1)
+attribute vec3 a_template;
+
+// per instance, the segment from a_start to a_end and the points around it
+attribute vec2 a_prev;
+attribute vec2 a_start;
+attribute vec2 a_end;
+attribute vec2 a_next;
+
+float cross2(vec2 first, vec2 second) {
+  return first.x * second.y - first.y * second.x;
+}
+
+// gets perpendicular vector (to the right) of the direction
+vec2 perp(vec2 dir) {
+  return vec2(dir.y, -dir.x);
+}
+
+vec2 rotate(vec2 v, float angle) {
+  float c = cos(angle);
+  float s = sin(angle);
+  return vec2(v.x * c - v.y * s, v.x * s + v.y * c);
+}
+
+// gets the offset of a step along the fan that goes from offset a to offset b
+vec2 fanOffset(vec2 a, vec2 b, float step, int joinType) {
+  float cosTheta = dot(a, b) / dot(a, a);
+
+  if (joinType == JOIN_ROUND) {
+    float dir = cross2(a, b) < 0.0 ? -1.0 : 1.0;
+    return rotate(a, dir * acos(clamp(cosTheta, -1.0, 1.0)) * step / float(FAN_STEPS));
+  } else if (step <= 0.0) {
+    return a;
+  } else if (step >= float(FAN_STEPS)) {
+    return b;
+  } else if (joinType == JOIN_MITER && u_miterLimit * u_miterLimit * (1.0 + cosTheta) >= 2.0) {
+    // the miter length over the line width is 1 / cos(theta / 2)
+    return (a + b) / (1.0 + cosTheta);
+  } else {
+    // bevel, only the triangle in the middle of the fan isn't empty
+    return step * 2.0 <= float(FAN_STEPS) ? a : b;
+  }
+}
+
+void main() {
+  float halfWidth = u_lineWidth / 2.0;
+  vec2 dir = normalize(a_end - a_start);
+  vec2 offset = perp(dir) * halfWidth;
+
+  // the ends of an open line repeat their point
+  bool hasPrev = a_prev != a_start;
+  bool hasNext = a_next != a_end;
+
+  vec2 pos;
+  if (a_template.x == 0.0) {
+    if (a_template.y == 0.0) {
+      pos = a_start;
+      if (!hasPrev && u_capType == CAP_SQUARE) {
+        pos -= dir * halfWidth;
+      }
+    } else {
+      pos = a_end;
+      if (!hasNext && u_capType == CAP_SQUARE) {
+        pos += dir * halfWidth;
+      }
+    }
+
+    pos += a_template.z * offset;
+  } else if (a_template.x == 1.0) {
+    pos = a_end;
+    if (a_template.y >= 0.0) {
+      if (hasNext) {
+        // the join, on the outside of the corner
+        vec2 nextOffset = perp(normalize(a_next - a_end)) * halfWidth;
+        float side = cross2(dir, a_next - a_end) < 0.0 ? -1.0 : 1.0;
+        pos += fanOffset(side * offset, side * nextOffset, a_template.y, u_joinType);
+      } else if (u_capType == CAP_ROUND) {
+        pos += fanOffset(offset, -offset, a_template.y, JOIN_ROUND);
+      }
+    }
+  } else {
+    pos = a_start;
+    if (a_template.y >= 0.0 && !hasPrev && u_capType == CAP_ROUND) {
+      pos += fanOffset(-offset, offset, a_template.y, JOIN_ROUND);
+    }
+  }
+
+  gl_Position = u_transform * vec4(pos, 0, 1);
+}
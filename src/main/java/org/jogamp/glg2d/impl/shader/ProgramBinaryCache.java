@@ -0,0 +1,314 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Keeps linked program binaries on disk so later launches can skip compiling
+ * and linking. Only used when the context has {@code ARB_get_program_binary}
+ * or OpenGL 4.1.
+ * 
+ * <p>
+ * Files are named by a hash of the vendor, renderer and version strings and
+ * the program key from {@link ShaderProgramRegistry}, so a driver update or a
+ * changed shader simply misses. A binary the driver refuses is deleted and the
+ * program is compiled from source again.
+ * </p>
+ * 
+ * <p>
+ * The directory is {@code .cache/glg2d} in the user's home directory unless
+ * the system property {@value #DIRECTORY_PROPERTY} says otherwise. An empty
+ * property disables the cache. The cache is per user because the binaries are
+ * handed straight to the driver, so it must not be somewhere other users can
+ * write, like the shared temp directory. A directory we create is only
+ * accessible by its owner, and files are written under a fresh temporary name
+ * and then renamed.
+ * </p>
+ */
+public class ProgramBinaryCache {
+  private static final Logger LOGGER = Logger.getLogger(ProgramBinaryCache.class.getName());
+
+  public static final String DIRECTORY_PROPERTY = "org.jogamp.glg2d.programCache";
+
+  private static final int MAGIC = 0x474c3244;
+  private static final int FILE_VERSION = 1;
+
+  private static File directory = defaultDirectory();
+
+  private static File defaultDirectory() {
+    String dir = System.getProperty(DIRECTORY_PROPERTY);
+    if (dir == null) {
+      String home = System.getProperty("user.home");
+      return home == null ? null : new File(new File(home, ".cache"), "glg2d");
+    } else if (dir.length() == 0) {
+      return null;
+    } else {
+      return new File(dir);
+    }
+  }
+
+  /**
+   * Sets the cache directory, or {@code null} to turn the cache off.
+   */
+  public static synchronized void setDirectory(File dir) {
+    directory = dir;
+  }
+
+  public static synchronized File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Whether the current context can get and load program binaries.
+   */
+  public static boolean isSupported() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    return caps.OpenGL41 || caps.GL_ARB_get_program_binary;
+  }
+
+  public static boolean isEnabled() {
+    return getDirectory() != null && isSupported();
+  }
+
+  /**
+   * Asks the driver to keep the binary of the program around. Must be called
+   * before the program is linked.
+   */
+  public static void prepareForLink(int programId) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    if (GLContext.getCapabilities().OpenGL41) {
+      GL41.glProgramParameteri(programId, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+    } else {
+      ARBGetProgramBinary.glProgramParameteri(programId, ARBGetProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+    }
+  }
+
+  /**
+   * Creates a program from the cached binary for {@code key}.
+   * 
+   * @return The linked program, or 0 if there was no usable binary
+   */
+  public static int load(String key) {
+    if (!isEnabled()) {
+      return 0;
+    }
+
+    File file = fileFor(key);
+    if (file == null || !file.isFile()) {
+      return 0;
+    }
+
+    int format;
+    ByteBuffer binary;
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FILE_VERSION) {
+          throw new IOException("Not a program binary");
+        }
+
+        format = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > file.length()) {
+          throw new IOException("Bad program binary length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        binary = BufferUtils.createByteBuffer(bytes.length);
+        binary.put(bytes);
+        binary.flip();
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Could not read program binary " + file, e);
+      file.delete();
+      return 0;
+    }
+
+    int programId = GL20.glCreateProgram();
+    clearErrors();
+    if (GLContext.getCapabilities().OpenGL41) {
+      GL41.glProgramBinary(programId, format, binary);
+    } else {
+      ARBGetProgramBinary.glProgramBinary(programId, format, binary);
+    }
+
+    // an unknown format is an error, a stale binary just doesn't link
+    int err = GL11.glGetError();
+    if (err != GL11.GL_NO_ERROR || GL20.glGetProgrami(programId, GL20.GL_LINK_STATUS) != GL11.GL_TRUE) {
+      LOGGER.fine("Driver refused program binary " + file + ", compiling from source");
+      GL20.glDeleteProgram(programId);
+      file.delete();
+      return 0;
+    }
+
+    return programId;
+  }
+
+  /**
+   * Drops errors left by earlier calls, so the next {@code glGetError()} only
+   * reports the call we check.
+   */
+  private static void clearErrors() {
+    // a lost context may keep reporting, so don't spin forever
+    for (int i = 0; i < 32 && GL11.glGetError() != GL11.GL_NO_ERROR; i++) {
+      // nop
+    }
+  }
+
+  /**
+   * Writes the binary of the linked program for {@code key}. Failures are
+   * only logged, the cache is just an optimization.
+   */
+  public static void store(String key, int programId) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    int length = GL20.glGetProgrami(programId, GL41.GL_PROGRAM_BINARY_LENGTH);
+    File file = fileFor(key);
+    if (length <= 0 || file == null) {
+      return;
+    }
+
+    IntBuffer lengthBuf = BufferUtils.createIntBuffer(1);
+    IntBuffer formatBuf = BufferUtils.createIntBuffer(1);
+    ByteBuffer binary = BufferUtils.createByteBuffer(length);
+    clearErrors();
+    if (GLContext.getCapabilities().OpenGL41) {
+      GL41.glGetProgramBinary(programId, lengthBuf, formatBuf, binary);
+    } else {
+      ARBGetProgramBinary.glGetProgramBinary(programId, lengthBuf, formatBuf, binary);
+    }
+
+    if (GL11.glGetError() != GL11.GL_NO_ERROR) {
+      return;
+    }
+
+    byte[] bytes = new byte[lengthBuf.get(0)];
+    binary.get(bytes);
+
+    File dir = file.getParentFile();
+    File temp = null;
+    try {
+      createDirectory(dir);
+
+      // a new unique file, so nothing can be planted at its name beforehand
+      temp = File.createTempFile(file.getName(), ".tmp", dir);
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeInt(formatBuf.get(0));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      } finally {
+        out.close();
+      }
+
+      // another process may have written the same binary in the meantime
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+        throw new IOException("Could not rename " + temp);
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Could not write program binary " + file, e);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Creates the directory if it doesn't exist and makes it accessible only by
+   * the current user.
+   */
+  protected static void createDirectory(File dir) throws IOException {
+    if (dir.isDirectory()) {
+      return;
+    }
+
+    if (!dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Could not create " + dir);
+    }
+
+    boolean ownerOnly = dir.setReadable(false, false) && dir.setReadable(true, true);
+    ownerOnly &= dir.setWritable(false, false) && dir.setWritable(true, true);
+    ownerOnly &= dir.setExecutable(false, false) && dir.setExecutable(true, true);
+    if (!ownerOnly) {
+      LOGGER.fine("Could not restrict access to " + dir);
+    }
+  }
+
+  /**
+   * Gets the file for {@code key} on the current driver.
+   */
+  protected static File fileFor(String key) {
+    File dir = getDirectory();
+    if (dir == null) {
+      return null;
+    }
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      digest.update(driverString().getBytes("UTF-8"));
+      digest.update((byte) 0);
+      digest.update(key.getBytes("UTF-8"));
+
+      StringBuilder name = new StringBuilder();
+      for (byte b : digest.digest()) {
+        name.append(Character.forDigit((b >> 4) & 0xf, 16));
+        name.append(Character.forDigit(b & 0xf, 16));
+      }
+
+      return new File(dir, name.append(".bin").toString());
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    } catch (UnsupportedEncodingException e) {
+      return null;
+    }
+  }
+
+  protected static String driverString() {
+    return GL11.glGetString(GL11.GL_VENDOR) + '\0' + GL11.glGetString(GL11.GL_RENDERER) + '\0'
+        + GL11.glGetString(GL11.GL_VERSION);
+  }
+}
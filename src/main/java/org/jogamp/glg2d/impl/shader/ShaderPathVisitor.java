@@ -18,8 +18,27 @@ package org.jogamp.glg2d.impl.shader;
 
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DFrameStats;
 import org.jogamp.glg2d.PathVisitor;
 
 public interface ShaderPathVisitor extends PathVisitor {
   void setGLContext(GLContext glContext, UniformBufferObject uniforms);
+
+  /**
+   * Sets the batch that collects the triangles of consecutive shapes. Visitors
+   * that draw through their own pipeline must flush it before drawing.
+   */
+  void setBatch(TriangleBatch batch);
+
+  /**
+   * Sets the stats the draw calls are counted in.
+   */
+  void setFrameStats(GLG2DFrameStats frameStats);
+
+  /**
+   * Lets go of the pipeline and the vertex storage, they will be set up again
+   * on the next {@link #setGLContext(GLContext, UniformBufferObject)} and
+   * draw.
+   */
+  void dispose();
 }
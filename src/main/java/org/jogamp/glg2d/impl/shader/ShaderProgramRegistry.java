@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.impl.GLStateCache;
+
+/**
+ * Linked programs shared by all the pipelines on a context. Programs are keyed
+ * by their full shader sources and defines, so pipelines that would build the
+ * same program get the same one. Each program is compiled and linked once,
+ * counted for every pipeline that uses it and deleted when the last one lets
+ * go.
+ * 
+ * <p>
+ * Use {@link #getRegistry()} to get the registry for the current context.
+ * </p>
+ */
+public class ShaderProgramRegistry {
+  private static final Map<ContextCapabilities, ShaderProgramRegistry> REGISTRIES = new WeakHashMap<ContextCapabilities, ShaderProgramRegistry>();
+
+  protected Map<String, Program> programs = new HashMap<String, Program>();
+
+  /**
+   * A shared, linked program.
+   */
+  public static class Program {
+    protected final String key;
+    protected final int programId;
+    protected int references;
+
+    /**
+     * The values of {@code u_color} and {@code u_transform} in the program,
+     * when they're plain uniforms.
+     */
+    protected FloatBuffer color = UniformBufferObject.createUnset(4);
+    protected FloatBuffer transform = UniformBufferObject.createUnset(16);
+    protected int colorVersion;
+    protected int transformVersion;
+
+    /**
+     * The values of the program's other uniforms, for pipelines that skip
+     * setting them again. What this is depends on the pipeline.
+     */
+    protected Object uniformState;
+
+    protected Program(String key, int programId) {
+      this.key = key;
+      this.programId = programId;
+    }
+
+    public int getProgramId() {
+      return programId;
+    }
+
+    public int getReferenceCount() {
+      return references;
+    }
+
+    /**
+     * Copies the color if it's not already the program's.
+     * 
+     * @return {@code true} if the uniform has to be set
+     */
+    protected boolean updateColor(FloatBuffer rgba, int version) {
+      if (version != 0 && version == colorVersion) {
+        return false;
+      }
+
+      colorVersion = version;
+      return UniformBufferObject.update(rgba, color);
+    }
+
+    /**
+     * Copies the transform if it's not already the program's.
+     * 
+     * @return {@code true} if the uniform has to be set
+     */
+    protected boolean updateTransform(FloatBuffer glMatrixData, int version) {
+      if (version != 0 && version == transformVersion) {
+        return false;
+      }
+
+      transformVersion = version;
+      return UniformBufferObject.update(glMatrixData, transform);
+    }
+  }
+
+  /**
+   * Gets the registry for the current OpenGL context, creating it if
+   * necessary.
+   */
+  public static ShaderProgramRegistry getRegistry() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    ShaderProgramRegistry registry = REGISTRIES.get(caps);
+    if (registry == null) {
+      registry = new ShaderProgramRegistry();
+      REGISTRIES.put(caps, registry);
+    }
+
+    return registry;
+  }
+
+  /**
+   * Gets the program for {@code key} and adds a reference to it, or returns
+   * {@code null} if there isn't one yet.
+   */
+  public Program acquire(String key) {
+    Program program = programs.get(key);
+    if (program != null) {
+      program.references++;
+    }
+
+    return program;
+  }
+
+  /**
+   * Adds a newly linked program with one reference. The registry owns the
+   * program from now on.
+   */
+  public Program register(String key, int programId) {
+    if (programs.containsKey(key)) {
+      throw new IllegalStateException("A program is already registered for this key");
+    }
+
+    Program program = new Program(key, programId);
+    program.references = 1;
+    programs.put(key, program);
+    return program;
+  }
+
+  /**
+   * Removes a reference, deleting the program when no one uses it any more.
+   */
+  public void release(Program program) {
+    if (--program.references > 0) {
+      return;
+    }
+
+    if (programs.get(program.key) == program) {
+      programs.remove(program.key);
+    }
+
+    delete(program);
+  }
+
+  /**
+   * Deletes all programs, whether they're still referenced or not.
+   */
+  public void deleteAll() {
+    for (Program program : new ArrayList<Program>(programs.values())) {
+      program.references = 0;
+      delete(program);
+    }
+
+    programs.clear();
+  }
+
+  protected void delete(Program program) {
+    GL20.glDeleteProgram(program.programId);
+    GLStateCache.getGLStateCache().programDeleted(program.programId);
+  }
+
+  public int getProgramCount() {
+    return programs.size();
+  }
+}
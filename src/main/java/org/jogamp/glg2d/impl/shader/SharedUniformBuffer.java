@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.impl.GLStateCache;
+
+/**
+ * The uniform buffer holding the transform and color for all programs on a
+ * context. Shaders declare them with the {@code GLG2D_UNIFORMS} macro, which
+ * {@link AbstractShaderPipeline} defines as the std140 block
+ * 
+ * <pre>
+ * layout(std140) uniform GLG2DUniforms {
+ *   mat4 u_transform;
+ *   vec4 u_color;
+ * };
+ * </pre>
+ * 
+ * when {@code ARB_uniform_buffer_object} is available and as two plain
+ * uniforms otherwise. Every program binds the block to {@link #BINDING_POINT},
+ * so switching programs doesn't need any uniform uploads. The buffer is only
+ * written when the transform or color actually changes, see
+ * {@link UniformBufferObject#nextVersion()}.
+ * 
+ * <p>
+ * Use {@link #getSharedUniformBuffer()} to get the buffer for the current
+ * context.
+ * </p>
+ */
+public class SharedUniformBuffer {
+  public static final String BLOCK_NAME = "GLG2DUniforms";
+
+  /**
+   * The uniform buffer binding point used by all programs.
+   */
+  public static final int BINDING_POINT = 0;
+
+  /**
+   * The std140 offsets, in bytes.
+   */
+  protected static final int TRANSFORM_OFFSET = 0;
+  protected static final int COLOR_OFFSET = 64;
+  protected static final int SIZE = 80;
+
+  private static final Map<ContextCapabilities, SharedUniformBuffer> BUFFERS = new WeakHashMap<ContextCapabilities, SharedUniformBuffer>();
+
+  protected int bufferId;
+
+  protected FloatBuffer transform = UniformBufferObject.createUnset(16);
+  protected FloatBuffer color = UniformBufferObject.createUnset(4);
+  protected int transformVersion;
+  protected int colorVersion;
+
+  /**
+   * Whether the current context supports uniform blocks in the shaders we
+   * have, which are mostly GLSL 1.10.
+   */
+  public static boolean isSupported() {
+    return GLContext.getCapabilities().GL_ARB_uniform_buffer_object;
+  }
+
+  /**
+   * Gets the uniform buffer for the current OpenGL context, creating it if
+   * necessary. Only call this if {@link #isSupported()}.
+   */
+  public static SharedUniformBuffer getSharedUniformBuffer() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    SharedUniformBuffer buffer = BUFFERS.get(caps);
+    if (buffer == null) {
+      buffer = new SharedUniformBuffer();
+      BUFFERS.put(caps, buffer);
+    }
+
+    return buffer;
+  }
+
+  /**
+   * Gets the lines put in front of every shader to declare the transform and
+   * color.
+   */
+  public static String getDeclarations() {
+    if (isSupported()) {
+      return "#extension GL_ARB_uniform_buffer_object : enable\n"
+          + "#define GLG2D_UNIFORMS layout(std140) uniform " + BLOCK_NAME + " { mat4 u_transform; vec4 u_color; };\n";
+    } else {
+      return "#define GLG2D_UNIFORMS uniform mat4 u_transform; uniform vec4 u_color;\n";
+    }
+  }
+
+  /**
+   * Binds the block of the program to {@link #BINDING_POINT}.
+   * 
+   * @return {@code true} if the program uses the block
+   */
+  public static boolean bindBlock(int programId) {
+    if (!isSupported()) {
+      return false;
+    }
+
+    int index = GL31.glGetUniformBlockIndex(programId, BLOCK_NAME);
+    if (index == GL31.GL_INVALID_INDEX) {
+      return false;
+    }
+
+    GL31.glUniformBlockBinding(programId, index, BINDING_POINT);
+    return true;
+  }
+
+  /**
+   * Binds the buffer to {@link #BINDING_POINT}. Called once per frame since
+   * other code may use the binding point in between.
+   */
+  public void bind() {
+    if (bufferId == 0) {
+      bufferId = GL15.glGenBuffers();
+      GLStateCache.getGLStateCache().bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferId);
+      GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, SIZE, GL15.GL_DYNAMIC_DRAW);
+
+      // new store, nothing in it yet
+      UniformBufferObject.unset(transform);
+      UniformBufferObject.unset(color);
+      transformVersion = colorVersion = 0;
+    }
+
+    GL30.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, BINDING_POINT, bufferId);
+  }
+
+  /**
+   * Writes the transform if it's not already in the buffer.
+   * 
+   * @param version
+   *          The version of the matrix, or 0 if unknown
+   */
+  public void setTransform(FloatBuffer glMatrixData, int version) {
+    if (version != 0 && version == transformVersion) {
+      return;
+    }
+
+    if (bufferId == 0) {
+      bind();
+    }
+
+    if (UniformBufferObject.update(glMatrixData, transform)) {
+      write(TRANSFORM_OFFSET, transform);
+    }
+
+    transformVersion = version;
+  }
+
+  /**
+   * Writes the color if it's not already in the buffer.
+   * 
+   * @param version
+   *          The version of the color, or 0 if unknown
+   */
+  public void setColor(FloatBuffer rgba, int version) {
+    if (version != 0 && version == colorVersion) {
+      return;
+    }
+
+    if (bufferId == 0) {
+      bind();
+    }
+
+    if (UniformBufferObject.update(rgba, color)) {
+      write(COLOR_OFFSET, color);
+    }
+
+    colorVersion = version;
+  }
+
+  protected void write(int offset, FloatBuffer data) {
+    data.rewind();
+    GLStateCache.getGLStateCache().bindBuffer(GL31.GL_UNIFORM_BUFFER, bufferId);
+    GL15.glBufferSubData(GL31.GL_UNIFORM_BUFFER, offset, data);
+  }
+
+  public void dispose() {
+    if (bufferId != 0) {
+      GL15.glDeleteBuffers(bufferId);
+      GLStateCache.getGLStateCache().bufferDeleted(bufferId);
+      bufferId = 0;
+    }
+  }
+}
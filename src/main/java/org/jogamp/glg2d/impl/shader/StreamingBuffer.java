@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.impl.GLStateCache;
+
+/**
+ * A large vertex buffer that is shared by all pipelines on a context and used
+ * as a ring. Each upload is written after the previous one with
+ * {@code glBufferSubData} (or an unsynchronized mapped range when available),
+ * so the buffer store is never re-specified during normal drawing. When the
+ * ring wraps, the store is orphaned with {@code glBufferData(null)} so the
+ * driver can hand us fresh memory while earlier draws are still pending.
+ * 
+ * <p>
+ * Use {@link #getStreamingBuffer()} to get the buffer for the current context.
+ * Like {@link org.jogamp.glg2d.VertexBuffer}, this assumes all drawing happens
+ * on the OpenGL thread.
+ * </p>
+ */
+public class StreamingBuffer {
+  /**
+   * The default size of the ring, in bytes.
+   */
+  public static final int DEFAULT_CAPACITY = 4 << 20;
+
+  /**
+   * Every upload starts on this boundary so interleaved attributes stay
+   * aligned.
+   */
+  protected static final int ALIGNMENT = 16;
+
+  private static final Map<ContextCapabilities, StreamingBuffer> BUFFERS = new WeakHashMap<ContextCapabilities, StreamingBuffer>();
+
+  protected int bufferId;
+  protected int capacity;
+  protected int offset;
+
+  protected boolean useMapRange;
+
+  protected long bytesThisFrame;
+  protected int wrapsThisFrame;
+  protected long bytesLastFrame;
+  protected int wrapsLastFrame;
+  protected long totalBytes;
+  protected long totalWraps;
+
+  /**
+   * Gets the streaming buffer for the current OpenGL context, creating it if
+   * necessary.
+   */
+  public static StreamingBuffer getStreamingBuffer() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    StreamingBuffer buffer = BUFFERS.get(caps);
+    if (buffer == null) {
+      buffer = new StreamingBuffer(DEFAULT_CAPACITY);
+      buffer.useMapRange = caps.OpenGL30;
+      BUFFERS.put(caps, buffer);
+    }
+
+    return buffer;
+  }
+
+  public StreamingBuffer(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Binds the buffer to {@code GL_ARRAY_BUFFER}.
+   */
+  public void bind() {
+    if (bufferId == 0) {
+      bufferId = GL15.glGenBuffers();
+      GLStateCache.getGLStateCache().bindBuffer(GL15.GL_ARRAY_BUFFER, bufferId);
+      GL15.glBufferData(GL15.GL_ARRAY_BUFFER, capacity, GL15.GL_STREAM_DRAW);
+      offset = 0;
+    } else {
+      GLStateCache.getGLStateCache().bindBuffer(GL15.GL_ARRAY_BUFFER, bufferId);
+    }
+  }
+
+  /**
+   * Copies the data from position to limit into the ring. The buffer is left
+   * bound to {@code GL_ARRAY_BUFFER} and the position of {@code data} is not
+   * changed.
+   * 
+   * @return The byte offset of the data, to be used in
+   *         {@code glVertexAttribPointer}
+   */
+  public int upload(FloatBuffer data) {
+    bind();
+
+    int size = (data.limit() - data.position()) * (Float.SIZE / Byte.SIZE);
+    if (size > capacity) {
+      grow(size);
+    }
+
+    int start = (offset + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    if (start + size > capacity) {
+      orphan();
+      start = 0;
+    }
+
+    if (useMapRange) {
+      int access = GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_UNSYNCHRONIZED_BIT | GL30.GL_MAP_INVALIDATE_RANGE_BIT;
+      ByteBuffer mapped = GL30.glMapBufferRange(GL15.GL_ARRAY_BUFFER, start, size, access, null);
+      int position = data.position();
+      mapped.order(ByteOrder.nativeOrder()).asFloatBuffer().put(data);
+      data.position(position);
+      GL15.glUnmapBuffer(GL15.GL_ARRAY_BUFFER);
+    } else {
+      GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, start, data);
+    }
+
+    offset = start + size;
+    bytesThisFrame += size;
+    totalBytes += size;
+    return start;
+  }
+
+  /**
+   * Gives the driver a new store for the buffer. Draws already issued keep
+   * reading from the old store.
+   */
+  protected void orphan() {
+    GL15.glBufferData(GL15.GL_ARRAY_BUFFER, capacity, GL15.GL_STREAM_DRAW);
+    offset = 0;
+    wrapsThisFrame++;
+    totalWraps++;
+  }
+
+  protected void grow(int minCapacity) {
+    while (capacity < minCapacity) {
+      capacity *= 2;
+    }
+
+    orphan();
+  }
+
+  /**
+   * Rolls the per-frame counters. Called at the start of every paint.
+   */
+  public void beginFrame() {
+    bytesLastFrame = bytesThisFrame;
+    wrapsLastFrame = wrapsThisFrame;
+    bytesThisFrame = 0;
+    wrapsThisFrame = 0;
+  }
+
+  /**
+   * Gets the number of bytes uploaded during the previous frame.
+   */
+  public long getBytesStreamedLastFrame() {
+    return bytesLastFrame;
+  }
+
+  /**
+   * Gets the number of times the ring wrapped during the previous frame.
+   */
+  public int getWrapsLastFrame() {
+    return wrapsLastFrame;
+  }
+
+  public long getBytesStreamedThisFrame() {
+    return bytesThisFrame;
+  }
+
+  public int getWrapsThisFrame() {
+    return wrapsThisFrame;
+  }
+
+  public long getTotalBytesStreamed() {
+    return totalBytes;
+  }
+
+  public long getTotalWraps() {
+    return totalWraps;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void dispose() {
+    if (bufferId != 0) {
+      GL15.glDeleteBuffers(bufferId);
+      GLStateCache.getGLStateCache().bufferDeleted(bufferId);
+      bufferId = 0;
+    }
+  }
+}
@@ -20,7 +20,7 @@
 
 #define PI 3.141592653
 
-uniform mat4 u_transform;
+GLG2D_UNIFORMS
 uniform int u_joinType;
 uniform int u_capType;
 uniform float u_miterLimit;
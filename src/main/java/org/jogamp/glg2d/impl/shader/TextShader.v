@@ -1,9 +1,6 @@
-uniform mat4 u_transform;
-uniform float u_xoffset;
-uniform float u_yoffset;
-
+GLG2D_UNIFORMS
 in vec2 a_vertCoord;
 
 void main() {
-  gl_Position = u_transform * vec4(a_vertCoord.x + u_xoffset, a_vertCoord.y + u_yoffset, 0, 1);
+  gl_Position = u_transform * vec4(a_vertCoord, 0, 1);
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 uniform sampler2D u_tex;
-uniform vec4 u_color;
+GLG2D_UNIFORMS
 
 varying vec2 v_texCoord;
 
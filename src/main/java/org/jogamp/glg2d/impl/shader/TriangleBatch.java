@@ -0,0 +1,239 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader;
+
+import static org.jogamp.glg2d.impl.FloatBufferUtils.copy;
+import static org.jogamp.glg2d.impl.FloatBufferUtils.equal;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import org.jogamp.glg2d.VertexBuffer;
+
+/**
+ * Collects the output of consecutive shape draws into a single triangle list
+ * so that they can be submitted with one draw call. Shapes can share a batch
+ * as long as they use the same program, color and transform. Any other state
+ * that affects the pending triangles (blending, scissor, another program in
+ * use) must flush the batch before it changes. The batch is also flushed at the
+ * end of each paint.
+ * 
+ * <p>
+ * Other drawing that is deferred, like batched text, registers itself with
+ * {@link #setPending(PendingDraw)}. It is drawn before anything else is added
+ * to the batch and whenever the batch is flushed, so the painting order is
+ * kept.
+ * </p>
+ */
+public class TriangleBatch {
+  /**
+   * Flush early once we have this many vertices pending so that a single
+   * enormous shape doesn't keep growing the buffer.
+   */
+  public static final int MAX_BATCH_VERTICES = 1 << 16;
+
+  protected VertexBuffer vBuffer = new VertexBuffer(4096);
+
+  protected AnyModePipeline pipeline;
+
+  protected FloatBuffer color = BufferUtils.createFloatBuffer(4);
+  protected FloatBuffer transform = BufferUtils.createFloatBuffer(16);
+  protected int colorVersion;
+  protected int transformVersion;
+
+  protected PendingDraw pending;
+
+  /**
+   * Deferred drawing outside of the triangle batch.
+   */
+  public interface PendingDraw {
+    /**
+     * Draws everything that's pending.
+     */
+    void flushPending();
+
+    /**
+     * Discards everything that's pending without drawing it.
+     */
+    void clearPending();
+  }
+
+  /**
+   * Flushes the batch and any other pending drawing, then registers
+   * {@code pending} to be drawn before anything else.
+   */
+  public void setPending(PendingDraw pending) {
+    flush();
+    this.pending = pending;
+  }
+
+  public PendingDraw getPending() {
+    return pending;
+  }
+
+  /**
+   * Adds the vertices to the batch as independent triangles. If the pipeline,
+   * color or transform differ from the pending triangles, the batch is flushed
+   * first.
+   * 
+   * @param pipeline
+   *          The pipeline used to draw the vertices
+   * @param uniforms
+   *          The current color and transform
+   * @param mode
+   *          One of {@code GL_TRIANGLES}, {@code GL_TRIANGLE_FAN} or
+   *          {@code GL_TRIANGLE_STRIP}
+   * @param vertices
+   *          The vertices from position to limit
+   */
+  public void add(AnyModePipeline pipeline, UniformBufferObject uniforms, int mode, FloatBuffer vertices) {
+    flushPending();
+
+    FloatBuffer rgba = uniforms.colorHook.getRGBA();
+    FloatBuffer matrix = uniforms.transformHook.getGLMatrixData();
+    int rgbaVersion = uniforms.colorHook.getColorVersion();
+    int matrixVersion = uniforms.transformHook.getTransformVersion();
+
+    if (!isCompatible(pipeline, rgba, rgbaVersion, matrix, matrixVersion)) {
+      flush();
+
+      this.pipeline = pipeline;
+      copy(rgba, color);
+      copy(matrix, transform);
+      colorVersion = rgbaVersion;
+      transformVersion = matrixVersion;
+    }
+
+    int first = vertices.position();
+    int numPts = (vertices.limit() - first) / 2;
+
+    switch (mode) {
+    case GL11.GL_TRIANGLES:
+      vBuffer.addVertices(vertices);
+      break;
+
+    case GL11.GL_TRIANGLE_FAN:
+      for (int i = 1; i < numPts - 1; i++) {
+        addVertex(vertices, first, 0);
+        addVertex(vertices, first, i);
+        addVertex(vertices, first, i + 1);
+      }
+      break;
+
+    case GL11.GL_TRIANGLE_STRIP:
+      for (int i = 0; i < numPts - 2; i++) {
+        addVertex(vertices, first, i);
+        addVertex(vertices, first, i + 1);
+        addVertex(vertices, first, i + 2);
+      }
+      break;
+
+    default:
+      // not something we can merge, draw it now
+      flush();
+      drawImmediate(mode, vertices);
+      return;
+    }
+
+    if (vBuffer.getBuffer().position() / 2 >= MAX_BATCH_VERTICES) {
+      flush();
+    }
+  }
+
+  /**
+   * Draws all pending triangles.
+   */
+  public void flush() {
+    flushPending();
+
+    FloatBuffer buf = vBuffer.getBuffer();
+    if (pipeline == null || buf.position() == 0) {
+      return;
+    }
+
+    buf.flip();
+    drawImmediate(GL11.GL_TRIANGLES, buf);
+    vBuffer.clear();
+  }
+
+  /**
+   * Discards the pending triangles and returns the vertex storage to the
+   * {@code VertexArena}. The batch can still be used afterwards.
+   */
+  public void dispose() {
+    clear();
+    vBuffer.release();
+  }
+
+  /**
+   * Discards all pending triangles without drawing them.
+   */
+  public void clear() {
+    vBuffer.clear();
+    pipeline = null;
+
+    if (pending != null) {
+      pending.clearPending();
+      pending = null;
+    }
+  }
+
+  protected void flushPending() {
+    if (pending != null) {
+      PendingDraw draw = pending;
+      pending = null;
+      draw.flushPending();
+    }
+  }
+
+  protected void drawImmediate(int mode, FloatBuffer vertices) {
+    pipeline.use(true);
+    pipeline.setColor(color, colorVersion);
+    pipeline.setTransform(transform, transformVersion);
+    pipeline.draw(mode, vertices);
+    pipeline.use(false);
+  }
+
+  /**
+   * Same versions mean the same values, only different versions need to be
+   * compared.
+   */
+  protected boolean isCompatible(AnyModePipeline pipeline, FloatBuffer rgba, int rgbaVersion, FloatBuffer matrix,
+      int matrixVersion) {
+    return isSameProgram(this.pipeline, pipeline) && (rgbaVersion == colorVersion || equal(rgba, color))
+        && (matrixVersion == transformVersion || equal(matrix, transform));
+  }
+
+  /**
+   * Pipelines of the same class get the same program from
+   * {@link ShaderProgramRegistry}, so they can draw each other's triangles.
+   */
+  protected boolean isSameProgram(AnyModePipeline a, AnyModePipeline b) {
+    if (a == b) {
+      return true;
+    }
+
+    return a != null && b != null && a.getClass() == b.getClass() && a.getProgramId() != 0
+        && a.getProgramId() == b.getProgramId();
+  }
+
+  protected void addVertex(FloatBuffer vertices, int first, int index) {
+    int i = first + index * 2;
+    vBuffer.addVertex(vertices.get(i), vertices.get(i + 1));
+  }
+}
@@ -18,11 +18,24 @@ package org.jogamp.glg2d.impl.shader;
 import java.awt.geom.AffineTransform;
 import java.nio.FloatBuffer;
 
+import org.lwjgl.BufferUtils;
+
 /**
- * This class implements a Uniform Buffer Object on OpenGL ES 2.0 compatible
- * hardware.
+ * The transform and color of a {@link GLShaderGraphics2D}, as the shaders see
+ * them. The helpers that own the state register themselves as hooks. On
+ * contexts with uniform buffers the values end up in the
+ * {@link SharedUniformBuffer}, otherwise in each program's own uniforms.
+ * 
+ * <p>
+ * Each state the hooks hand out is stamped with a version from
+ * {@link #nextVersion()}. The same version always means the same values, so
+ * whoever caches them can skip comparing and rewriting them. A version of 0
+ * means unknown, and the values have to be compared.
+ * </p>
  */
 public class UniformBufferObject {
+  private static int lastVersion;
+
   public ColorHook colorHook;
   public TransformHook transformHook;
 
@@ -30,11 +43,68 @@ public class UniformBufferObject {
     FloatBuffer getRGBA();
 
     float getAlpha();
+
+    /**
+     * Gets the version of what {@link #getRGBA()} returns.
+     */
+    int getColorVersion();
   }
 
   public interface TransformHook {
     FloatBuffer getGLMatrixData();
 
     FloatBuffer getGLMatrixData(AffineTransform concat);
+
+    /**
+     * Gets the version of what {@link #getGLMatrixData()} returns.
+     */
+    int getTransformVersion();
+  }
+
+  /**
+   * Gets a version no state has had before. Versions are only handed out on
+   * the OpenGL thread.
+   */
+  public static int nextVersion() {
+    if (++lastVersion == 0) {
+      lastVersion = 1;
+    }
+
+    return lastVersion;
+  }
+
+  /**
+   * Creates a buffer for cached uniform values that won't match any real
+   * values.
+   */
+  static FloatBuffer createUnset(int size) {
+    FloatBuffer buf = BufferUtils.createFloatBuffer(size);
+    unset(buf);
+    return buf;
+  }
+
+  static void unset(FloatBuffer cached) {
+    for (int i = 0; i < cached.capacity(); i++) {
+      cached.put(i, Float.NaN);
+    }
+  }
+
+  /**
+   * Copies {@code src} into {@code cached} if they differ.
+   * 
+   * @return {@code true} if {@code cached} changed
+   */
+  static boolean update(FloatBuffer src, FloatBuffer cached) {
+    int n = cached.capacity();
+    boolean changed = false;
+    for (int i = 0; i < n; i++) {
+      float f = src.get(i);
+      if (f != cached.get(i)) {
+        cached.put(i, f);
+        changed = true;
+      }
+    }
+
+    return changed;
   }
 }
@@ -18,11 +18,9 @@ package org.jogamp.glg2d.impl.shader.text;
 
 import java.nio.FloatBuffer;
 
-import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GLContext;
-import org.lwjgl.util.glu.GLU;
 
+import org.jogamp.glg2d.VertexBuffer;
 import org.jogamp.glg2d.impl.AbstractTesselatorVisitor;
 
 import org.lwjgl.BufferUtils;
@@ -40,16 +38,10 @@ public class CollectingTesselator extends AbstractTesselatorVisitor {
     vBuffer.clear();
   }
 
-  @Override
-  protected void configureTesselator(int windingRule) {
-    super.configureTesselator(windingRule);
-
-    tesselator.gluTessCallback(GLU.GLU_TESS_EDGE_FLAG_DATA, callback);
-  }
-
   @Override
   protected void beginTess(int type) {
     // don't clear the vertex buffer
+    drawMode = type;
   }
 
   @Override
@@ -75,10 +67,21 @@ public class CollectingTesselator extends AbstractTesselatorVisitor {
       triangles.flip();
     }
 
-    public void draw() {
+    /**
+     * Gets the size of the vertex data, in bytes.
+     */
+    public int getByteSize() {
+      return triangles.capacity() * (Float.SIZE / Byte.SIZE);
+    }
+
+    /**
+     * Adds the triangles to {@code buffer}, moved by {@code dx, dy}.
+     */
+    public void addTo(VertexBuffer buffer, float dx, float dy) {
       int numFloats = triangles.limit();
-      GL15.glBufferData(GL15.GL_ARRAY_BUFFER, triangles, GL15.GL_STREAM_DRAW);
-      GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, numFloats / 2);
+      for (int i = 0; i < numFloats; i += 2) {
+        buffer.addVertex(triangles.get(i) + dx, triangles.get(i + 1) + dy);
+      }
     }
   }
 }
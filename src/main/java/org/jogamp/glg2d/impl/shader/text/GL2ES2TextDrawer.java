@@ -17,28 +17,63 @@ package org.jogamp.glg2d.impl.shader.text;
 
 import static org.jogamp.glg2d.impl.AbstractShapeHelper.visitShape;
 
+import java.awt.Font;
 import java.awt.Shape;
 import java.awt.font.GlyphVector;
 import java.awt.geom.Point2D;
+import java.nio.FloatBuffer;
 import java.text.AttributedCharacterIterator;
 
+import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
 
+import org.jogamp.glg2d.GLG2DShapeHelper;
+import org.jogamp.glg2d.GLG2DTransformHelper;
 import org.jogamp.glg2d.GLGraphics2D;
+import org.jogamp.glg2d.VertexBuffer;
+import org.jogamp.glg2d.impl.AbstractMatrixHelper;
 import org.jogamp.glg2d.impl.AbstractTextDrawer;
+import org.jogamp.glg2d.impl.shader.AnyModePipeline;
+import org.jogamp.glg2d.impl.shader.GL2ES2ShapeDrawer;
 import org.jogamp.glg2d.impl.shader.GLShaderGraphics2D;
 import org.jogamp.glg2d.impl.shader.text.CollectingTesselator.Triangles;
 
 public class GL2ES2TextDrawer extends AbstractTextDrawer {
+  protected static final double SCALE_CLASSES_PER_OCTAVE = 4;
+
   protected GLShaderGraphics2D g2d;
   protected GLContext context;
 
+  /**
+   * Only used if the shape helper has no fill pipeline to share, and created
+   * when it's first needed.
+   */
   protected TextPipeline pipeline;
 
+  /**
+   * The pipeline the glyph triangles are added to the batch with, the shape
+   * drawer's fill pipeline if there is one.
+   */
+  protected AnyModePipeline fillPipeline;
+
+  protected CollectingTesselator tess = new CollectingTesselator();
+
+  protected GlyphMeshCache glyphCache = new GlyphMeshCache();
+
+  /**
+   * All the glyphs of the string being drawn.
+   */
+  protected VertexBuffer stringBuffer = new VertexBuffer(1024);
+
   public GL2ES2TextDrawer() {
-    this(new TextPipeline());
+    this(null);
   }
 
+  /**
+   * @param pipeline
+   *          The pipeline to draw with if the shape helper has no fill
+   *          pipeline, or {@code null} to create one when it's needed
+   */
   public GL2ES2TextDrawer(TextPipeline pipeline) {
     this.pipeline = pipeline;
   }
@@ -53,8 +88,24 @@ public class GL2ES2TextDrawer extends AbstractTextDrawer {
     }
 
     context = g2d.getGLContext();
-    if (!pipeline.isSetup()) {
-      pipeline.setup();
+
+    GLG2DShapeHelper shapeHelper = g2d.getShapeHelper();
+    if (shapeHelper instanceof GL2ES2ShapeDrawer) {
+      fillPipeline = ((GL2ES2ShapeDrawer) shapeHelper).getFillPipeline();
+    } else {
+      if (pipeline == null) {
+        pipeline = new TextPipeline();
+      }
+
+      pipeline.setFrameStats(g2d.getFrameStats());
+      fillPipeline = pipeline;
+    }
+
+    tess.setFrameStats(g2d.getFrameStats());
+    glyphCache.setFrameStats(g2d.getFrameStats());
+
+    if (!fillPipeline.isSetup()) {
+      fillPipeline.setup();
     }
 
     super.setG2D(g2d);
@@ -62,7 +113,17 @@ public class GL2ES2TextDrawer extends AbstractTextDrawer {
 
   @Override
   public void dispose() {
-    pipeline.delete();
+    if (pipeline != null) {
+      pipeline.delete();
+    }
+
+    glyphCache.clear();
+    tess.dispose();
+    stringBuffer.release();
+  }
+
+  public GlyphMeshCache getGlyphCache() {
+    return glyphCache;
   }
 
   @Override
@@ -90,35 +151,59 @@ public class GL2ES2TextDrawer extends AbstractTextDrawer {
     drawChars(string.toCharArray(), x, y);
   }
 
+  /**
+   * Merges the triangles of all glyphs, already moved to their positions, and
+   * adds them to the shape batch with the fill pipeline, so strings and fills
+   * in the same color are drawn together.
+   */
   protected void drawChars(char[] string, float x, float y) {
-    pipeline.use(true);
-    pipeline.setColor(g2d.getUniformsObject().colorHook.getRGBA());
-    pipeline.setTransform(g2d.getUniformsObject().transformHook.getGLMatrixData());
-
-    pipeline.bindBuffer();
+    stringBuffer.clear();
 
+    int scaleClass = getScaleClass();
     GlyphVector glyphs = getFont().createGlyphVector(getFontRenderContext(), string);
-    for (int i = 0; i < string.length; i++) {
-      Triangles triangles = getTesselatedGlyph(string[i]);
+    for (int i = 0; i < glyphs.getNumGlyphs(); i++) {
+      Triangles triangles = getTesselatedGlyph(glyphs.getGlyphCode(i), scaleClass);
 
       Point2D pt = glyphs.getGlyphPosition(i);
-      pipeline.setLocation((float) pt.getX() + x, (float) pt.getY() + y);
-
-      triangles.draw();
+      triangles.addTo(stringBuffer, (float) pt.getX() + x, (float) pt.getY() + y);
     }
 
-    pipeline.unbindBuffer();
-    pipeline.use(false);
+    FloatBuffer buf = stringBuffer.getBuffer();
+    if (buf.position() > 0) {
+      buf.flip();
+      g2d.getBatch().add(fillPipeline, g2d.getUniformsObject(), GL11.GL_TRIANGLES, buf);
+    }
   }
 
-  protected Triangles getTesselatedGlyph(char c) {
-    GlyphVector glyphVect = getFont().createGlyphVector(getFontRenderContext(), new char[] { c });
+  protected Triangles getTesselatedGlyph(int glyphCode, int scaleClass) {
+    Font font = getFont();
+    Triangles triangles = glyphCache.get(font, glyphCode, scaleClass);
+    if (triangles != null) {
+      return triangles;
+    }
+
+    GlyphVector glyphVect = font.createGlyphVector(getFontRenderContext(), new int[] { glyphCode });
     Shape s = glyphVect.getGlyphOutline(0);
 
-    CollectingTesselator tess = new CollectingTesselator();
+    // flatten for the scale class, so every glyph in the class is the same
+    tess.setTransformScale((float) Math.pow(2, scaleClass / SCALE_CLASSES_PER_OCTAVE));
     visitShape(s, tess);
-    Triangles triangles = tess.getTesselated();
+    triangles = tess.getTesselated();
 
+    glyphCache.put(font, glyphCode, scaleClass, triangles);
     return triangles;
   }
+
+  /**
+   * Buckets the current transform scale into quarter octaves.
+   */
+  protected int getScaleClass() {
+    GLG2DTransformHelper matrixHelper = g2d.getMatrixHelper();
+    double scale = 1;
+    if (matrixHelper instanceof AbstractMatrixHelper) {
+      scale = ((AbstractMatrixHelper) matrixHelper).getScale();
+    }
+
+    return (int) Math.round(Math.log(scale) / Math.log(2) * SCALE_CLASSES_PER_OCTAVE);
+  }
 }
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader.text;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GLContext;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+import org.jogamp.glg2d.impl.GLStateCache;
+
+/**
+ * A texture that holds rasterized glyphs in its alpha channel, shared by all
+ * text drawers on a context. Glyphs are rasterized with Java2D the first time
+ * they're needed and packed into horizontal shelves. When the atlas is full,
+ * the least recently used shelf that is tall enough is emptied and reused.
+ * Shelves used in the current frame are never evicted, so glyph quads can be
+ * batched across strings until the end of the frame.
+ * 
+ * <p>
+ * Glyphs are rasterized at the device scale, bucketed into eighths of an
+ * octave, so they stay sharp when the text is scaled. Use
+ * {@link #getGlyphAtlas()} to get the atlas for the current context.
+ * </p>
+ */
+public class GlyphAtlas {
+  /**
+   * The width and height of the atlas texture.
+   */
+  public static final int ATLAS_SIZE = 1024;
+
+  /**
+   * Glyphs larger than this, in pixels, aren't put in the atlas.
+   */
+  public static final int MAX_GLYPH_SIZE = 128;
+
+  public static final double SCALE_CLASSES_PER_OCTAVE = 8;
+
+  /**
+   * Empty border around each glyph so linear filtering doesn't pick up the
+   * neighbors.
+   */
+  protected static final int PADDING = 1;
+
+  /**
+   * Shelf heights are rounded up to this so similar glyphs share shelves.
+   */
+  protected static final int SHELF_GRANULARITY = 4;
+
+  private static final Map<ContextCapabilities, GlyphAtlas> ATLASES = new WeakHashMap<ContextCapabilities, GlyphAtlas>();
+
+  protected int textureId;
+
+  protected List<Shelf> shelves = new ArrayList<Shelf>();
+  protected int nextShelfY;
+
+  protected Map<GlyphKey, Glyph> glyphs = new HashMap<GlyphKey, Glyph>();
+  protected GlyphKey lookupKey = new GlyphKey();
+
+  protected BufferedImage raster = new BufferedImage(MAX_GLYPH_SIZE + 2 * PADDING, MAX_GLYPH_SIZE + 2 * PADDING,
+      BufferedImage.TYPE_BYTE_GRAY);
+  protected ByteBuffer uploadBuffer = BufferUtils.createByteBuffer(raster.getWidth() * raster.getHeight());
+
+  protected long frame;
+
+  protected GLG2DFrameStats frameStats = GLG2DFrameStats.DISCARD;
+
+  protected long hits;
+  protected long misses;
+  protected long evictions;
+
+  /**
+   * Gets the glyph atlas for the current OpenGL context, creating it if
+   * necessary.
+   */
+  public static GlyphAtlas getGlyphAtlas() {
+    ContextCapabilities caps = GLContext.getCapabilities();
+    GlyphAtlas atlas = ATLASES.get(caps);
+    if (atlas == null) {
+      atlas = new GlyphAtlas();
+      ATLASES.put(caps, atlas);
+    }
+
+    return atlas;
+  }
+
+  /**
+   * Buckets the transform scale for {@link #getGlyph}.
+   */
+  public static int getScaleClass(double scale) {
+    return (int) Math.round(Math.log(scale) / Math.log(2) * SCALE_CLASSES_PER_OCTAVE);
+  }
+
+  /**
+   * Sets the stats that glyph lookups and uploads are counted in, the ones of
+   * the graphics object that's painting with the atlas.
+   */
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  /**
+   * Marks the start of a frame, for picking shelves to evict.
+   */
+  public void beginFrame() {
+    frame++;
+  }
+
+  /**
+   * Binds the atlas texture to the current texture unit, creating it if
+   * necessary.
+   */
+  public void bind() {
+    if (textureId == 0) {
+      textureId = GL11.glGenTextures();
+      GLStateCache.getGLStateCache().bindTexture(textureId);
+      GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+      GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+      GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+      GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+      GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_ALPHA, ATLAS_SIZE, ATLAS_SIZE, 0, GL11.GL_ALPHA,
+          GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+    } else {
+      GLStateCache.getGLStateCache().bindTexture(textureId);
+    }
+  }
+
+  /**
+   * Gets the glyph, rasterizing it into the atlas if necessary. The atlas must
+   * be bound.
+   * 
+   * @return the glyph, or {@code null} if it can't be put in the atlas
+   */
+  public Glyph getGlyph(Font font, int glyphCode, int scaleClass, boolean antiAlias) {
+    lookupKey.set(font, glyphCode, scaleClass, antiAlias);
+    Glyph glyph = glyphs.get(lookupKey);
+    if (glyph != null) {
+      hits++;
+      frameStats.recordGlyphCacheHit();
+      glyph.shelf.lastUsed = frame;
+      return glyph;
+    }
+
+    misses++;
+    frameStats.recordGlyphCacheMiss();
+
+    double scale = Math.pow(2, scaleClass / SCALE_CLASSES_PER_OCTAVE);
+    Font scaledFont = font.deriveFont(AffineTransform.getScaleInstance(scale, scale));
+    FontRenderContext frc = new FontRenderContext(null, antiAlias, false);
+    GlyphVector vector = scaledFont.createGlyphVector(frc, new int[] { glyphCode });
+    Rectangle bounds = vector.getGlyphPixelBounds(0, frc, 0, 0);
+    if (bounds.width > MAX_GLYPH_SIZE || bounds.height > MAX_GLYPH_SIZE) {
+      return null;
+    }
+
+    glyph = new Glyph();
+    GlyphKey key = new GlyphKey();
+    key.set(font, glyphCode, scaleClass, antiAlias);
+
+    if (bounds.isEmpty()) {
+      // whitespace, nothing to draw
+      glyph.shelf = Shelf.EMPTY;
+      glyphs.put(key, glyph);
+      return glyph;
+    }
+
+    int width = bounds.width + 2 * PADDING;
+    int height = bounds.height + 2 * PADDING;
+    Shelf shelf = allocate(width, height);
+    if (shelf == null) {
+      return null;
+    }
+
+    glyph.shelf = shelf;
+    glyph.x = shelf.x;
+    glyph.y = shelf.y;
+    glyph.width = width;
+    glyph.height = height;
+    shelf.x += width;
+    shelf.lastUsed = frame;
+    shelf.glyphs.add(key);
+
+    glyph.offsetX = (float) ((bounds.x - PADDING) / scale);
+    glyph.offsetY = (float) ((bounds.y - PADDING) / scale);
+    glyph.quadWidth = (float) (width / scale);
+    glyph.quadHeight = (float) (height / scale);
+    glyph.u1 = glyph.x / (float) ATLAS_SIZE;
+    glyph.v1 = glyph.y / (float) ATLAS_SIZE;
+    glyph.u2 = (glyph.x + width) / (float) ATLAS_SIZE;
+    glyph.v2 = (glyph.y + height) / (float) ATLAS_SIZE;
+
+    upload(vector, bounds, glyph, antiAlias);
+
+    glyphs.put(key, glyph);
+    return glyph;
+  }
+
+  protected void upload(GlyphVector vector, Rectangle bounds, Glyph glyph, boolean antiAlias) {
+    Graphics2D g = raster.createGraphics();
+    g.setColor(Color.BLACK);
+    g.fillRect(0, 0, glyph.width, glyph.height);
+    g.setColor(Color.WHITE);
+    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antiAlias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+        : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+    g.drawGlyphVector(vector, PADDING - bounds.x, PADDING - bounds.y);
+    g.dispose();
+
+    byte[] pixels = ((DataBufferByte) raster.getRaster().getDataBuffer()).getData();
+    int stride = raster.getWidth();
+    uploadBuffer.clear();
+    for (int row = 0; row < glyph.height; row++) {
+      uploadBuffer.put(pixels, row * stride, glyph.width);
+    }
+
+    uploadBuffer.flip();
+
+    GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+    GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, glyph.x, glyph.y, glyph.width, glyph.height, GL11.GL_ALPHA,
+        GL11.GL_UNSIGNED_BYTE, uploadBuffer);
+    GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+    frameStats.recordTextureUpload();
+  }
+
+  /**
+   * Finds a shelf with room for the glyph, opening a new shelf or evicting an
+   * old one if necessary.
+   */
+  protected Shelf allocate(int width, int height) {
+    Shelf best = null;
+    for (Shelf shelf : shelves) {
+      if (shelf.height >= height && shelf.height <= height + height / 4 + SHELF_GRANULARITY &&
+          shelf.x + width <= ATLAS_SIZE && (best == null || shelf.height < best.height)) {
+        best = shelf;
+      }
+    }
+
+    if (best != null) {
+      return best;
+    }
+
+    int shelfHeight = (height + SHELF_GRANULARITY - 1) / SHELF_GRANULARITY * SHELF_GRANULARITY;
+    if (nextShelfY + shelfHeight <= ATLAS_SIZE) {
+      Shelf shelf = new Shelf(nextShelfY, shelfHeight);
+      nextShelfY += shelfHeight;
+      shelves.add(shelf);
+      return shelf;
+    }
+
+    // full, empty the least recently used shelf that fits
+    Shelf victim = null;
+    for (Shelf shelf : shelves) {
+      if (shelf.height >= height && shelf.lastUsed < frame &&
+          (victim == null || shelf.lastUsed < victim.lastUsed ||
+          (shelf.lastUsed == victim.lastUsed && shelf.height < victim.height))) {
+        victim = shelf;
+      }
+    }
+
+    if (victim == null) {
+      return null;
+    }
+
+    for (GlyphKey key : victim.glyphs) {
+      glyphs.remove(key);
+    }
+
+    victim.glyphs.clear();
+    victim.x = 0;
+    evictions++;
+    return victim;
+  }
+
+  /**
+   * Deletes the texture and forgets all glyphs.
+   */
+  public void dispose() {
+    if (textureId != 0) {
+      GL11.glDeleteTextures(textureId);
+      GLStateCache.getGLStateCache().textureDeleted(textureId);
+      textureId = 0;
+    }
+
+    glyphs.clear();
+    shelves.clear();
+    nextShelfY = 0;
+  }
+
+  public long getHitCount() {
+    return hits;
+  }
+
+  public long getMissCount() {
+    return misses;
+  }
+
+  public long getEvictionCount() {
+    return evictions;
+  }
+
+  public int getGlyphCount() {
+    return glyphs.size();
+  }
+
+  /**
+   * A glyph in the atlas. Offsets and sizes are in user space at the glyph's
+   * scale, texture coordinates are normalized.
+   */
+  public static class Glyph {
+    public float offsetX;
+    public float offsetY;
+    public float quadWidth;
+    public float quadHeight;
+    public float u1, v1, u2, v2;
+
+    protected int x, y, width, height;
+    protected Shelf shelf;
+
+    /**
+     * Whitespace glyphs don't have any pixels.
+     */
+    public boolean isEmpty() {
+      return width == 0;
+    }
+  }
+
+  protected static class Shelf {
+    static final Shelf EMPTY = new Shelf(0, 0);
+
+    final int y;
+    final int height;
+    int x;
+    long lastUsed;
+    List<GlyphKey> glyphs = new ArrayList<GlyphKey>();
+
+    Shelf(int y, int height) {
+      this.y = y;
+      this.height = height;
+    }
+  }
+
+  protected static class GlyphKey {
+    Font font;
+    int glyphCode;
+    int scaleClass;
+    boolean antiAlias;
+    int hash;
+
+    void set(Font font, int glyphCode, int scaleClass, boolean antiAlias) {
+      this.font = font;
+      this.glyphCode = glyphCode;
+      this.scaleClass = scaleClass;
+      this.antiAlias = antiAlias;
+      hash = ((font.hashCode() * 31 + glyphCode) * 31 + scaleClass) * 2 + (antiAlias ? 1 : 0);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (obj instanceof GlyphKey) {
+        GlyphKey other = (GlyphKey) obj;
+        return other.hash == hash &&
+            other.glyphCode == glyphCode &&
+            other.scaleClass == scaleClass &&
+            other.antiAlias == antiAlias &&
+            other.font.equals(font);
+      } else {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader.text;
+
+import org.jogamp.glg2d.impl.shader.GL2ES2ImagePipeline;
+
+/**
+ * Draws text as textured quads from a {@link GlyphAtlas}. The atlas only has
+ * coverage in its alpha channel, the color comes from the uniform.
+ */
+public class GlyphAtlasPipeline extends GL2ES2ImagePipeline {
+  public GlyphAtlasPipeline() {
+    this("TextureShader.v", "GlyphAtlasShader.f");
+  }
+
+  public GlyphAtlasPipeline(String vertexShaderFileName, String fragmentShaderFileName) {
+    super(vertexShaderFileName, fragmentShaderFileName);
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader.text;
+
+import static org.jogamp.glg2d.GLG2DRenderingHints.KEY_TEXT_RENDERING_MODE;
+import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_TEXT_RENDERING_MODE_DEFAULT;
+import static org.jogamp.glg2d.GLG2DRenderingHints.VALUE_TEXT_RENDERING_MODE_GLYPH_ATLAS;
+import static org.jogamp.glg2d.impl.FloatBufferUtils.copy;
+import static org.jogamp.glg2d.impl.FloatBufferUtils.equal;
+
+import java.awt.Font;
+import java.awt.RenderingHints.Key;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL13;
+
+import org.jogamp.glg2d.GLG2DTransformHelper;
+import org.jogamp.glg2d.GLGraphics2D;
+import org.jogamp.glg2d.VertexBuffer;
+import org.jogamp.glg2d.impl.AbstractMatrixHelper;
+import org.jogamp.glg2d.impl.shader.TriangleBatch;
+import org.jogamp.glg2d.impl.shader.TriangleBatch.PendingDraw;
+import org.jogamp.glg2d.impl.shader.UniformBufferObject;
+import org.jogamp.glg2d.impl.shader.text.GlyphAtlas.Glyph;
+
+/**
+ * Draws text either as tesselated outlines, like {@link GL2ES2TextDrawer}, or
+ * as quads from a {@link GlyphAtlas}, depending on
+ * {@link org.jogamp.glg2d.GLG2DRenderingHints#KEY_TEXT_RENDERING_MODE}.
+ * 
+ * <p>
+ * Atlas quads are not drawn right away. They're collected until the color or
+ * transform changes or something else is drawn, so consecutive strings in the
+ * same style become a single draw call.
+ * </p>
+ */
+public class GlyphAtlasTextDrawer extends GL2ES2TextDrawer implements PendingDraw {
+  /**
+   * Transforms we can draw from the atlas without distorting the glyphs.
+   */
+  protected static final int ATLAS_TRANSFORM_TYPES = AffineTransform.TYPE_TRANSLATION |
+      AffineTransform.TYPE_UNIFORM_SCALE;
+
+  protected GlyphAtlasPipeline atlasPipeline;
+
+  protected Object renderingMode = VALUE_TEXT_RENDERING_MODE_DEFAULT;
+
+  /**
+   * Pending quads, interleaved vertex and texture coordinates.
+   */
+  protected VertexBuffer quads = new VertexBuffer(1024);
+
+  protected FloatBuffer color = BufferUtils.createFloatBuffer(4);
+  protected FloatBuffer transform = BufferUtils.createFloatBuffer(16);
+  protected int colorVersion;
+  protected int transformVersion;
+
+  protected Glyph[] resolved = new Glyph[64];
+
+  public GlyphAtlasTextDrawer() {
+    this(null, new GlyphAtlasPipeline());
+  }
+
+  public GlyphAtlasTextDrawer(TextPipeline pipeline, GlyphAtlasPipeline atlasPipeline) {
+    super(pipeline);
+    this.atlasPipeline = atlasPipeline;
+  }
+
+  @Override
+  public void setG2D(GLGraphics2D g2d) {
+    super.setG2D(g2d);
+
+    if (!atlasPipeline.isSetup()) {
+      atlasPipeline.setup();
+    }
+
+    atlasPipeline.setFrameStats(g2d.getFrameStats());
+
+    quads.clear();
+    GlyphAtlas atlas = GlyphAtlas.getGlyphAtlas();
+    atlas.setFrameStats(g2d.getFrameStats());
+    atlas.beginFrame();
+  }
+
+  @Override
+  public void setHint(Key key, Object value) {
+    super.setHint(key, value);
+
+    if (key == KEY_TEXT_RENDERING_MODE) {
+      renderingMode = value;
+    }
+  }
+
+  @Override
+  public void resetHints() {
+    super.resetHints();
+    renderingMode = VALUE_TEXT_RENDERING_MODE_DEFAULT;
+  }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    atlasPipeline.delete();
+    GlyphAtlas.getGlyphAtlas().dispose();
+    quads.release();
+  }
+
+  @Override
+  protected void drawChars(char[] string, float x, float y) {
+    if (renderingMode != VALUE_TEXT_RENDERING_MODE_GLYPH_ATLAS || !drawCharsFromAtlas(string, x, y)) {
+      super.drawChars(string, x, y);
+    }
+  }
+
+  /**
+   * Adds quads for the string to the pending text.
+   * 
+   * @return {@code false} if the string can't be drawn from the atlas
+   */
+  protected boolean drawCharsFromAtlas(char[] string, float x, float y) {
+    GLG2DTransformHelper matrixHelper = g2d.getMatrixHelper();
+    if (!(matrixHelper instanceof AbstractMatrixHelper)) {
+      return false;
+    }
+
+    AbstractMatrixHelper matrix = (AbstractMatrixHelper) matrixHelper;
+    if ((matrix.getTransformType() & ~ATLAS_TRANSFORM_TYPES) != 0) {
+      return false;
+    }
+
+    Font font = getFont();
+    boolean antiAlias = stack.peek().antiAlias;
+    int scaleClass = GlyphAtlas.getScaleClass(matrix.getScale());
+    GlyphVector glyphs = font.createGlyphVector(getFontRenderContext(), string);
+    int numGlyphs = glyphs.getNumGlyphs();
+
+    // find all the glyphs first so we can still fall back
+    if (resolved.length < numGlyphs) {
+      resolved = new Glyph[Math.max(numGlyphs, resolved.length * 2)];
+    }
+
+    GlyphAtlas atlas = GlyphAtlas.getGlyphAtlas();
+    GL13.glActiveTexture(GL13.GL_TEXTURE0);
+    atlas.bind();
+    for (int i = 0; i < numGlyphs; i++) {
+      resolved[i] = atlas.getGlyph(font, glyphs.getGlyphCode(i), scaleClass, antiAlias);
+      if (resolved[i] == null) {
+        return false;
+      }
+    }
+
+    UniformBufferObject uniforms = g2d.getUniformsObject();
+    FloatBuffer rgba = uniforms.colorHook.getRGBA();
+    FloatBuffer matrixData = uniforms.transformHook.getGLMatrixData();
+    int rgbaVersion = uniforms.colorHook.getColorVersion();
+    int matrixVersion = uniforms.transformHook.getTransformVersion();
+
+    TriangleBatch batch = g2d.getBatch();
+    if (batch.getPending() == this && !((rgbaVersion == colorVersion || equal(rgba, color))
+        && (matrixVersion == transformVersion || equal(matrixData, transform)))) {
+      batch.flush();
+    }
+
+    if (batch.getPending() != this) {
+      batch.setPending(this);
+      copy(rgba, color);
+      copy(matrixData, transform);
+      colorVersion = rgbaVersion;
+      transformVersion = matrixVersion;
+    }
+
+    for (int i = 0; i < numGlyphs; i++) {
+      Glyph glyph = resolved[i];
+      if (glyph.isEmpty()) {
+        continue;
+      }
+
+      Point2D pt = glyphs.getGlyphPosition(i);
+      float x1 = (float) pt.getX() + x + glyph.offsetX;
+      float y1 = (float) pt.getY() + y + glyph.offsetY;
+      float x2 = x1 + glyph.quadWidth;
+      float y2 = y1 + glyph.quadHeight;
+
+      addVertex(x1, y1, glyph.u1, glyph.v1);
+      addVertex(x2, y1, glyph.u2, glyph.v1);
+      addVertex(x2, y2, glyph.u2, glyph.v2);
+
+      addVertex(x1, y1, glyph.u1, glyph.v1);
+      addVertex(x2, y2, glyph.u2, glyph.v2);
+      addVertex(x1, y2, glyph.u1, glyph.v2);
+    }
+
+    return true;
+  }
+
+  protected void addVertex(float x, float y, float u, float v) {
+    quads.addVertex(x, y);
+    quads.addVertex(u, v);
+  }
+
+  @Override
+  public void flushPending() {
+    FloatBuffer buf = quads.getBuffer();
+    if (buf.position() == 0) {
+      return;
+    }
+
+    buf.flip();
+
+    GL13.glActiveTexture(GL13.GL_TEXTURE0);
+    GlyphAtlas.getGlyphAtlas().bind();
+
+    atlasPipeline.use(true);
+    atlasPipeline.setColor(color, colorVersion);
+    atlasPipeline.setTransform(transform, transformVersion);
+    atlasPipeline.setTextureUnit(0);
+    atlasPipeline.drawTriangles(buf);
+    atlasPipeline.use(false);
+
+    quads.clear();
+  }
+
+  @Override
+  public void clearPending() {
+    quads.clear();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl.shader.text;
+
+import java.awt.Font;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jogamp.glg2d.GLG2DFrameStats;
+import org.jogamp.glg2d.impl.shader.text.CollectingTesselator.Triangles;
+
+/**
+ * Keeps tesselated glyphs so the same characters aren't tesselated again
+ * every time they're drawn. Glyphs are keyed by font, glyph code and the
+ * transform scale class, since curves are flattened for the scale they're
+ * drawn at. The cache is bounded by the number of bytes of triangles and drops
+ * the least recently used glyphs first.
+ */
+public class GlyphMeshCache {
+  /**
+   * The default size of the cache, in bytes.
+   */
+  public static final int DEFAULT_MAX_BYTES = 2 << 20;
+
+  protected LinkedHashMap<GlyphKey, Triangles> glyphs = new LinkedHashMap<GlyphKey, Triangles>(64, 0.75f, true);
+
+  /**
+   * Re-used to look up glyphs without allocating.
+   */
+  protected GlyphKey lookupKey = new GlyphKey();
+
+  protected int maxBytes = DEFAULT_MAX_BYTES;
+  protected long bytes;
+
+  protected long hits;
+  protected long misses;
+  protected long evictions;
+
+  protected GLG2DFrameStats frameStats = GLG2DFrameStats.DISCARD;
+
+  /**
+   * Sets the stats that lookups are counted in, as well as the cache's own
+   * counts.
+   */
+  public void setFrameStats(GLG2DFrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  /**
+   * Gets the cached triangles for the glyph, or {@code null} if it isn't
+   * cached.
+   */
+  public Triangles get(Font font, int glyphCode, int scaleClass) {
+    lookupKey.set(font, glyphCode, scaleClass);
+    Triangles triangles = glyphs.get(lookupKey);
+    if (triangles == null) {
+      misses++;
+      frameStats.recordGlyphCacheMiss();
+    } else {
+      hits++;
+      frameStats.recordGlyphCacheHit();
+    }
+
+    return triangles;
+  }
+
+  public void put(Font font, int glyphCode, int scaleClass, Triangles triangles) {
+    GlyphKey key = new GlyphKey();
+    key.set(font, glyphCode, scaleClass);
+
+    Triangles old = glyphs.put(key, triangles);
+    if (old != null) {
+      bytes -= old.getByteSize();
+    }
+
+    bytes += triangles.getByteSize();
+    evict();
+  }
+
+  public void setMaxBytes(int maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void clear() {
+    glyphs.clear();
+    bytes = 0;
+  }
+
+  public long getHitCount() {
+    return hits;
+  }
+
+  public long getMissCount() {
+    return misses;
+  }
+
+  public long getEvictionCount() {
+    return evictions;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public int size() {
+    return glyphs.size();
+  }
+
+  protected void evict() {
+    Iterator<Map.Entry<GlyphKey, Triangles>> it = glyphs.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      bytes -= it.next().getValue().getByteSize();
+      it.remove();
+      evictions++;
+    }
+  }
+
+  protected static class GlyphKey {
+    Font font;
+    int glyphCode;
+    int scaleClass;
+    int hash;
+
+    void set(Font font, int glyphCode, int scaleClass) {
+      this.font = font;
+      this.glyphCode = glyphCode;
+      this.scaleClass = scaleClass;
+      hash = (font.hashCode() * 31 + glyphCode) * 31 + scaleClass;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (obj instanceof GlyphKey) {
+        GlyphKey other = (GlyphKey) obj;
+        return other.hash == hash &&
+            other.glyphCode == glyphCode &&
+            other.scaleClass == scaleClass &&
+            other.font.equals(font);
+      } else {
+        return false;
+      }
+    }
+  }
+}
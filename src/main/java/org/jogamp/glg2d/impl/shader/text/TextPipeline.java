@@ -16,15 +16,10 @@
 package org.jogamp.glg2d.impl.shader.text;
 
 
-import org.lwjgl.opengl.GL20;
-
 import org.jogamp.glg2d.impl.shader.AnyModePipeline;
 
 
 public class TextPipeline extends AnyModePipeline {
-  protected int xOffsetLocation = -1;
-  protected int yOffsetLocation = -1;
-
   public TextPipeline() {
     this("TextShader.v", "FixedFuncShader.f");
   }
@@ -32,22 +27,4 @@ public class TextPipeline extends AnyModePipeline {
   public TextPipeline(String vertexShaderFilename, String fragmentShaderFilename) {
     super(vertexShaderFilename, fragmentShaderFilename);
   }
-
-  public void setLocation(float x, float y) {
-    if (xOffsetLocation >= 0) {
-      GL20.glUniform1f(xOffsetLocation, x);
-    }
-
-    if (yOffsetLocation >= 0) {
-      GL20.glUniform1f(yOffsetLocation, y);
-    }
-  }
-
-  @Override
-  protected void setupUniformsAndAttributes() {
-    super.setupUniformsAndAttributes();
-
-    xOffsetLocation = GL20.glGetUniformLocation(programId, "u_xoffset");
-    yOffsetLocation = GL20.glGetUniformLocation(programId, "u_yoffset");
-  }
 }
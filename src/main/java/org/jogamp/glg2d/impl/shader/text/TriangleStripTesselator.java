@@ -42,11 +42,6 @@ public class TriangleStripTesselator extends AbstractTesselatorVisitor {
     triangleStrips = new ArrayList<TriangleStrip>();
   }
 
-  @Override
-  protected void configureTesselator(int windingRule) {
-    super.configureTesselator(windingRule);
-  }
-
   @Override
   protected void endTess() {
     FloatBuffer buf = vBuffer.getBuffer();
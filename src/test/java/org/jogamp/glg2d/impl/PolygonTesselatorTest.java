@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.jogamp.glg2d.VertexBuffer;
+
+/**
+ * Compares the coverage of the triangles against {@link Path2D#contains} at
+ * sample points away from the edges of the polygon.
+ */
+public class PolygonTesselatorTest {
+  private static final int SAMPLES = 60;
+
+  private static final double EDGE_MARGIN = 1e-3;
+
+  @Test
+  public void selfIntersectingStar() {
+    float[][] star = { { 50, 0, 79, 90, 2, 35, 98, 35, 21, 90 } };
+
+    assertCoverage(star, PathIterator.WIND_NON_ZERO);
+    assertCoverage(star, PathIterator.WIND_EVEN_ODD);
+  }
+
+  @Test
+  public void figureEight() {
+    float[][] bowtie = { { 0, 0, 100, 100, 100, 0, 0, 100 } };
+
+    assertCoverage(bowtie, PathIterator.WIND_NON_ZERO);
+    assertCoverage(bowtie, PathIterator.WIND_EVEN_ODD);
+  }
+
+  @Test
+  public void annulusWithReversedHole() {
+    float[][] annulus = { { 0, 0, 100, 0, 100, 100, 0, 100 }, { 30, 30, 30, 70, 70, 70, 70, 30 } };
+
+    assertCoverage(annulus, PathIterator.WIND_NON_ZERO);
+    assertCoverage(annulus, PathIterator.WIND_EVEN_ODD);
+  }
+
+  @Test
+  public void annulusWithSameOrientationHole() {
+    // only even-odd makes this a hole
+    float[][] annulus = { { 0, 0, 100, 0, 100, 100, 0, 100 }, { 30, 30, 70, 30, 70, 70, 30, 70 } };
+
+    assertCoverage(annulus, PathIterator.WIND_NON_ZERO);
+    assertCoverage(annulus, PathIterator.WIND_EVEN_ODD);
+  }
+
+  @Test
+  public void glyphWithOverlappingContours() {
+    // like an "o" overlapping a stem, with a counter in the "o"
+    float[][] glyph = { { 10, 10, 50, 5, 90, 20, 95, 60, 70, 95, 30, 90, 5, 55 },
+        { 30, 35, 35, 70, 65, 72, 70, 40 }, { 60, 0, 80, 0, 80, 100, 60, 100 } };
+
+    assertCoverage(glyph, PathIterator.WIND_NON_ZERO);
+    assertCoverage(glyph, PathIterator.WIND_EVEN_ODD);
+  }
+
+  @Test
+  public void randomSelfIntersectingPolygons() {
+    Random random = new Random(42);
+    for (int i = 0; i < 50; i++) {
+      int numContours = 1 + random.nextInt(3);
+      float[][] contours = new float[numContours][];
+      for (int c = 0; c < numContours; c++) {
+        contours[c] = new float[2 * (3 + random.nextInt(12))];
+        for (int j = 0; j < contours[c].length; j++) {
+          contours[c][j] = random.nextFloat() * 100;
+        }
+      }
+
+      assertCoverage(contours, PathIterator.WIND_NON_ZERO);
+      assertCoverage(contours, PathIterator.WIND_EVEN_ODD);
+    }
+  }
+
+  @Test
+  public void degenerateContours() {
+    // too few points
+    assertEquals(0, tesselate(new float[][] { { 0, 0, 10, 10 } }, PathIterator.WIND_NON_ZERO).position());
+
+    // no area
+    float[][] collinear = { { 0, 0, 50, 50, 100, 100, 25, 25 } };
+    assertCoverage(collinear, PathIterator.WIND_NON_ZERO);
+    assertCoverage(collinear, PathIterator.WIND_EVEN_ODD);
+
+    // repeated points and horizontal edges
+    float[][] repeated = { { 0, 0, 0, 0, 100, 0, 100, 0, 100, 50, 50, 50, 50, 100, 0, 100, 0, 100 } };
+    assertCoverage(repeated, PathIterator.WIND_NON_ZERO);
+    assertCoverage(repeated, PathIterator.WIND_EVEN_ODD);
+
+    // a contour that traces itself back
+    float[][] backAndForth = { { 0, 0, 100, 0, 100, 100, 100, 0 } };
+    assertCoverage(backAndForth, PathIterator.WIND_NON_ZERO);
+    assertCoverage(backAndForth, PathIterator.WIND_EVEN_ODD);
+  }
+
+  @Test
+  public void reusedForAnotherPolygon() {
+    PolygonTesselator tesselator = new PolygonTesselator();
+    VertexBuffer out = new VertexBuffer(16);
+
+    tesselator.beginPolygon(PathIterator.WIND_NON_ZERO);
+    addContours(tesselator, new float[][] { { 0, 0, 100, 0, 100, 100 } });
+    tesselator.tesselate(out);
+
+    out.clear();
+    float[][] square = { { 10, 10, 20, 10, 20, 20, 10, 20 } };
+    tesselator.beginPolygon(PathIterator.WIND_EVEN_ODD);
+    addContours(tesselator, square);
+    tesselator.tesselate(out);
+
+    assertCoverage(square, PathIterator.WIND_EVEN_ODD, out.getBuffer());
+  }
+
+  private static FloatBuffer tesselate(float[][] contours, int windingRule) {
+    PolygonTesselator tesselator = new PolygonTesselator();
+    VertexBuffer out = new VertexBuffer(16);
+    tesselator.beginPolygon(windingRule);
+    addContours(tesselator, contours);
+    tesselator.tesselate(out);
+    return out.getBuffer();
+  }
+
+  private static void addContours(PolygonTesselator tesselator, float[][] contours) {
+    for (float[] contour : contours) {
+      tesselator.moveTo(contour[0], contour[1]);
+      for (int i = 2; i < contour.length; i += 2) {
+        tesselator.lineTo(contour[i], contour[i + 1]);
+      }
+    }
+  }
+
+  private static void assertCoverage(float[][] contours, int windingRule) {
+    assertCoverage(contours, windingRule, tesselate(contours, windingRule));
+  }
+
+  private static void assertCoverage(float[][] contours, int windingRule, FloatBuffer triangles) {
+    assertEquals("whole triangles", 0, triangles.position() % 6);
+
+    Path2D.Float path = new Path2D.Float(windingRule);
+    for (float[] contour : contours) {
+      path.moveTo(contour[0], contour[1]);
+      for (int i = 2; i < contour.length; i += 2) {
+        path.lineTo(contour[i], contour[i + 1]);
+      }
+      path.closePath();
+    }
+
+    for (int i = 0; i <= SAMPLES; i++) {
+      for (int j = 0; j <= SAMPLES; j++) {
+        // off the grid of the test coordinates
+        double x = -5 + i * 110.0 / SAMPLES + 0.0137;
+        double y = -5 + j * 110.0 / SAMPLES + 0.0071;
+        if (isNearEdge(contours, x, y)) {
+          continue;
+        }
+
+        int expected = path.contains(x, y) ? 1 : 0;
+        assertEquals("coverage at " + x + ", " + y, expected, countCovering(triangles, x, y));
+      }
+    }
+  }
+
+  private static boolean isNearEdge(float[][] contours, double x, double y) {
+    for (float[] contour : contours) {
+      int n = contour.length;
+      for (int i = 0; i < n; i += 2) {
+        double dist = Line2D.ptSegDist(contour[i], contour[i + 1], contour[(i + 2) % n], contour[(i + 3) % n], x, y);
+        if (dist < EDGE_MARGIN) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static int countCovering(FloatBuffer triangles, double x, double y) {
+    int count = 0;
+    for (int i = 0; i + 6 <= triangles.position(); i += 6) {
+      double x1 = triangles.get(i), y1 = triangles.get(i + 1);
+      double x2 = triangles.get(i + 2), y2 = triangles.get(i + 3);
+      double x3 = triangles.get(i + 4), y3 = triangles.get(i + 5);
+
+      double d1 = cross(x1, y1, x2, y2, x, y);
+      double d2 = cross(x2, y2, x3, y3, x, y);
+      double d3 = cross(x3, y3, x1, y1, x, y);
+      boolean hasNeg = d1 < 0 || d2 < 0 || d3 < 0;
+      boolean hasPos = d1 > 0 || d2 > 0 || d3 > 0;
+      if (!(hasNeg && hasPos) && (d1 != 0 || d2 != 0 || d3 != 0)) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private static double cross(double x1, double y1, double x2, double y2, double x, double y) {
+    return (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+  }
+}
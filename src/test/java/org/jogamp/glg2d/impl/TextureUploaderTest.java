@@ -0,0 +1,253 @@
+/*
+ * Copyright 2013 Brandon Borkholder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jogamp.glg2d.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+/**
+ * Checks the bytes {@link TextureUploader} stages and the GL format and type
+ * it picks for each image type. Staging doesn't touch GL, so this runs
+ * without a context.
+ */
+public class TextureUploaderTest {
+  private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+  private static final int[] ARGB = { 0x80112233, 0xff445566, 0x00778899, 0x40aabbcc, 0xffddeeff, 0xc0010203 };
+
+  @Test
+  public void fourByteAbgr() {
+    BufferedImage image = createImage(BufferedImage.TYPE_4BYTE_ABGR, ARGB);
+    TextureUploader uploader = stage(image, 0, 0, 3, 2, true);
+
+    assertEquals(GL11.GL_RGBA, uploader.format);
+    int type = LITTLE_ENDIAN ? GL12.GL_UNSIGNED_INT_8_8_8_8 : GL12.GL_UNSIGNED_INT_8_8_8_8_REV;
+    assertEquals(type, uploader.type);
+    assertBytes(uploader, abgrBytes(ARGB));
+  }
+
+  @Test
+  public void intArgb() {
+    BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB, ARGB);
+    TextureUploader uploader = stage(image, 0, 0, 3, 2, true);
+
+    assertIntFormat(uploader);
+    assertInts(uploader, ARGB);
+  }
+
+  @Test
+  public void intArgbPreIsUnpremultiplied() {
+    int[] argb = { 0x80ff0000, 0xff00ff00, 0x00000000, 0x400000ff };
+    BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB_PRE, argb, 2, 2);
+    TextureUploader uploader = stage(image, 0, 0, 2, 2, true);
+
+    assertIntFormat(uploader);
+    IntBuffer staged = stagedInts(uploader);
+    for (int i = 0; i < argb.length; i++) {
+      assertColor(argb[i], staged.get(i));
+    }
+  }
+
+  @Test
+  public void intRgbForcesAlphaInRgbaTextures() {
+    int[] rgb = { 0x112233, 0x445566, 0x778899, 0xaabbcc };
+    BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB, rgb, 2, 2);
+
+    TextureUploader uploader = stage(image, 0, 0, 2, 2, true);
+    assertIntFormat(uploader);
+    int[] opaque = new int[rgb.length];
+    for (int i = 0; i < rgb.length; i++) {
+      opaque[i] = rgb[i] | 0xff000000;
+    }
+
+    assertInts(uploader, opaque);
+
+    // RGB textures ignore alpha, so the pixels are copied as they are
+    uploader = stage(image, 0, 0, 2, 2, false);
+    assertIntFormat(uploader);
+    assertInts(uploader, rgb);
+  }
+
+  @Test
+  public void threeByteBgr() {
+    int[] rgb = { 0x112233, 0x445566, 0x778899, 0xaabbcc, 0xddeeff, 0x010203 };
+    BufferedImage image = createImage(BufferedImage.TYPE_3BYTE_BGR, rgb);
+    TextureUploader uploader = stage(image, 0, 0, 3, 2, false);
+
+    assertEquals(GL12.GL_BGR, uploader.format);
+    assertEquals(GL11.GL_UNSIGNED_BYTE, uploader.type);
+    byte[] expected = new byte[rgb.length * 3];
+    for (int i = 0; i < rgb.length; i++) {
+      expected[i * 3] = (byte) rgb[i];
+      expected[i * 3 + 1] = (byte) (rgb[i] >> 8);
+      expected[i * 3 + 2] = (byte) (rgb[i] >> 16);
+    }
+
+    assertBytes(uploader, expected);
+  }
+
+  @Test
+  public void byteGray() {
+    int[] gray = { 0x000000, 0x808080, 0xffffff, 0x404040 };
+    BufferedImage image = createImage(BufferedImage.TYPE_BYTE_GRAY, gray, 2, 2);
+    TextureUploader uploader = stage(image, 0, 0, 2, 2, false);
+
+    assertEquals(GL11.GL_LUMINANCE, uploader.format);
+    assertEquals(GL11.GL_UNSIGNED_BYTE, uploader.type);
+    byte[] raster = (byte[]) image.getRaster().getDataElements(0, 0, 2, 2, null);
+    assertBytes(uploader, raster);
+  }
+
+  @Test
+  public void otherTypesAreConverted() {
+    // colors that 565 holds exactly
+    int[] rgb = { 0xff0000, 0x00ff00, 0x0000ff, 0xffffff };
+    BufferedImage image = createImage(BufferedImage.TYPE_USHORT_565_RGB, rgb, 2, 2);
+
+    TextureUploader uploader = new TextureUploader();
+    assertFalse(uploader.isDirect(image));
+
+    uploader = stage(image, 0, 0, 2, 2, false);
+    assertEquals(GL11.GL_RGB, uploader.format);
+    assertEquals(GL11.GL_UNSIGNED_BYTE, uploader.type);
+    byte[] expected = new byte[rgb.length * 3];
+    for (int i = 0; i < rgb.length; i++) {
+      expected[i * 3] = (byte) (rgb[i] >> 16);
+      expected[i * 3 + 1] = (byte) (rgb[i] >> 8);
+      expected[i * 3 + 2] = (byte) rgb[i];
+    }
+
+    assertBytes(uploader, expected);
+
+    uploader = stage(image, 0, 0, 2, 2, true);
+    assertEquals(GL11.GL_RGBA, uploader.format);
+    expected = new byte[rgb.length * 4];
+    for (int i = 0; i < rgb.length; i++) {
+      expected[i * 4] = (byte) (rgb[i] >> 16);
+      expected[i * 4 + 1] = (byte) (rgb[i] >> 8);
+      expected[i * 4 + 2] = (byte) rgb[i];
+      expected[i * 4 + 3] = (byte) 0xff;
+    }
+
+    assertBytes(uploader, expected);
+  }
+
+  @Test
+  public void rectangleOfImage() {
+    BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB, ARGB);
+    TextureUploader uploader = stage(image, 1, 0, 2, 2, true);
+
+    assertInts(uploader, new int[] { ARGB[1], ARGB[2], ARGB[4], ARGB[5] });
+  }
+
+  @Test
+  public void subimageWithTranslatedRaster() {
+    int[] argb = new int[4 * 3];
+    for (int i = 0; i < argb.length; i++) {
+      argb[i] = 0xff000000 | i * 0x010203;
+    }
+
+    BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB, argb, 4, 3);
+    BufferedImage sub = image.getSubimage(1, 1, 2, 2);
+    assertEquals(-1, sub.getRaster().getSampleModelTranslateX());
+    assertEquals(-1, sub.getRaster().getSampleModelTranslateY());
+
+    TextureUploader uploader = new TextureUploader();
+    assertTrue(uploader.isDirect(sub));
+    uploader = stage(sub, 0, 0, 2, 2, true);
+    assertInts(uploader, new int[] { argb[5], argb[6], argb[9], argb[10] });
+
+    // bytes take the other path through the raster offsets
+    image = createImage(BufferedImage.TYPE_4BYTE_ABGR, argb, 4, 3);
+    sub = image.getSubimage(1, 1, 2, 2);
+    uploader = stage(sub, 1, 0, 1, 2, true);
+    assertBytes(uploader, abgrBytes(new int[] { argb[6], argb[10] }));
+  }
+
+  private static BufferedImage createImage(int type, int[] argb) {
+    return createImage(type, argb, 3, 2);
+  }
+
+  private static BufferedImage createImage(int type, int[] argb, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    image.setRGB(0, 0, width, height, argb, 0, width);
+    return image;
+  }
+
+  private static TextureUploader stage(BufferedImage image, int x, int y, int width, int height, boolean alpha) {
+    TextureUploader uploader = new TextureUploader();
+    uploader.stage(image, x, y, width, height, alpha);
+    return uploader;
+  }
+
+  private static byte[] abgrBytes(int[] argb) {
+    byte[] bytes = new byte[argb.length * 4];
+    for (int i = 0; i < argb.length; i++) {
+      bytes[i * 4] = (byte) (argb[i] >> 24);
+      bytes[i * 4 + 1] = (byte) argb[i];
+      bytes[i * 4 + 2] = (byte) (argb[i] >> 8);
+      bytes[i * 4 + 3] = (byte) (argb[i] >> 16);
+    }
+
+    return bytes;
+  }
+
+  private static void assertIntFormat(TextureUploader uploader) {
+    assertEquals(GL12.GL_BGRA, uploader.format);
+    assertEquals(GL12.GL_UNSIGNED_INT_8_8_8_8_REV, uploader.type);
+  }
+
+  private static IntBuffer stagedInts(TextureUploader uploader) {
+    // GL reads the words in native order
+    return uploader.buffer.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  private static void assertInts(TextureUploader uploader, int[] expected) {
+    IntBuffer staged = stagedInts(uploader);
+    assertEquals(expected.length, staged.remaining());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("pixel " + i, Integer.toHexString(expected[i]), Integer.toHexString(staged.get(i)));
+    }
+  }
+
+  private static void assertBytes(TextureUploader uploader, byte[] expected) {
+    assertEquals(0, uploader.buffer.position());
+    assertEquals(expected.length, uploader.buffer.limit());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("byte " + i, expected[i], uploader.buffer.get(i));
+    }
+  }
+
+  /**
+   * Premultiplying rounds, so each channel may be off by one.
+   */
+  private static void assertColor(int expected, int actual) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      int e = (expected >>> shift) & 0xff;
+      int a = (actual >>> shift) & 0xff;
+      assertTrue(Integer.toHexString(expected) + " != " + Integer.toHexString(actual), Math.abs(e - a) <= 1);
+    }
+  }
+}